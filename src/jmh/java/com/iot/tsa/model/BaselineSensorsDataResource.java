@@ -0,0 +1,109 @@
+package com.iot.tsa.model;
+
+import com.iot.tsa.controller.SensorDataController;
+import com.iot.tsa.enums.TimeUnit;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+
+import java.time.Instant;
+import java.util.List;
+
+import static com.iot.tsa.util.TimeFormatter.toZulu;
+import static com.iot.tsa.util.db.Now.RELATIVE_TIME;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * {@link SensorsDataResource} as it was before {@link SensorDataLinks}, every link built through
+ * <tt>linkTo(methodOn(...))</tt>, kept as the baseline of {@link SensorsDataResourceBenchmark}.
+ */
+public class BaselineSensorsDataResource extends CollectionModel<BaselineSensorsDataResource.Row> {
+
+    private final static String[] DEFAULT_AGGREGATE_SELECT_CRITERIA
+            = new String[]{"median(*)", "mean(*)", "max(*)", "min(*)"};
+
+    public BaselineSensorsDataResource(List<Row> data,
+                                       String tenantId,
+                                       String id,
+                                       String from,
+                                       String to,
+                                       String[] selectCriteria,
+                                       Long intervalValue,
+                                       TimeUnit intervalUnit) {
+
+        super(data,
+                linkTo(methodOn(SensorDataController.class)
+                        .findAllByIdAndTenantId(tenantId, id, from, to, selectCriteria,
+                                intervalValue, intervalUnit, null, null))
+                        .withSelfRel()
+                        .expand()
+                        .withType("GET"));
+
+
+        addShortcut("lastMinute", tenantId, id, RELATIVE_TIME.concat("-1m"),
+                null, null);
+        addShortcut("lastMinutesGroupBy", tenantId, id, RELATIVE_TIME.concat("-5m"),
+                DEFAULT_AGGREGATE_SELECT_CRITERIA, TimeUnit.S);
+        addShortcut("lastHourGroupBy", tenantId, id, RELATIVE_TIME.concat("-1h"),
+                DEFAULT_AGGREGATE_SELECT_CRITERIA, TimeUnit.M);
+        addShortcut("lastDayGroupBy", tenantId, id, RELATIVE_TIME.concat("-1d"),
+                DEFAULT_AGGREGATE_SELECT_CRITERIA, TimeUnit.H);
+        addShortcut("lastMonthGroupBy", tenantId, id, RELATIVE_TIME.concat("-30d"),
+                DEFAULT_AGGREGATE_SELECT_CRITERIA, TimeUnit.D);
+
+    }
+
+    private final void addShortcut(String linkName, String tenantId, String id, String from, String[] selectCriteria, TimeUnit timeUnit) {
+        this.add(linkTo(methodOn(SensorDataController.class)
+                        .findAllByIdAndTenantId(
+                                tenantId, id, from, null,
+                                selectCriteria,
+                                timeUnit != null ? timeUnit.getGroupByFactor() : null, timeUnit,
+                                null, null)
+                )
+                        .withRel(linkName)
+                        .expand()
+                        .withType("GET")
+
+        );
+    }
+
+    /**
+     * {@link SensorDataResource} as it was before {@link SensorDataLinks}.
+     */
+    public static class Row extends EntityModel<SensorData> {
+
+        public Row(SensorData sensorData,
+                   Instant from, String tenantId, String id,
+                   String[] selectCriteria,
+                   Long intervalValue, TimeUnit intervalUnit) {
+            super(sensorData);
+
+            if (intervalValue != null && intervalUnit != null) {
+                this.addDrillDown(from, tenantId, id, selectCriteria, intervalValue, intervalUnit);
+            }
+        }
+
+        private final void addDrillDown(Instant from, String tenantId, String id,
+                                        String[] selectCriteria,
+                                        Long intervalValue, TimeUnit intervalUnit) {
+            this.add(
+                    linkTo(methodOn(SensorDataController.class)
+                            .findAllByIdAndTenantId(tenantId, id,
+                                    toZulu(from),
+                                    toZulu(from.plus(intervalValue, intervalUnit.getChronoUnit())),
+                                    intervalUnit.getLowerUnit() != null ? selectCriteria : null,
+                                    intervalUnit.getLowerUnit() != null ?
+                                            intervalUnit.getLowerUnit().getGroupByFactor() : null,
+                                    intervalUnit.getLowerUnit(),
+                                    null, null
+                            )
+                    )
+                            .withRel("drillDown")
+                            .expand()
+                            .withType("GET")
+            );
+
+        }
+    }
+}
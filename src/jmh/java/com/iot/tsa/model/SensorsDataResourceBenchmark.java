@@ -0,0 +1,170 @@
+package com.iot.tsa.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.iot.tsa.enums.TimeUnit;
+import com.iot.tsa.util.arrow.SensorDataColumnsArrowHttpMessageConverter;
+import com.iot.tsa.util.db.ColumnarResultMapper;
+import com.iot.tsa.util.db.CustomInfluxDBResultMapper;
+import com.iot.tsa.util.db.QueryResultFixtures;
+import com.iot.tsa.util.protobuf.SensorDataColumnsProtobufHttpMessageConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.DefaultLinkRelationProvider;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps the mapped rows of a {@link QueryResultFixtures.Shape} into the resource the
+ * <tt>/timeseries/{id}</tt> endpoint returns, and writes it as HAL. Aggregates get a drill down
+ * link per row, raw points do not. The compact resource of the same rows is written too, for
+ * comparison, as JSON and in the binary formats <tt>/timeseries/{id}</tt> negotiates. The size of
+ * every representation is printed when the benchmark is set up.
+ * <p>
+ * Every resource is built within a request of its own, as the controller builds it, so the base
+ * URI {@link SensorDataLinks} resolves once per request is paid for every resource.
+ * <tt>resourceBaseline</tt> builds the same links through <tt>linkTo(methodOn(...))</tt>, as
+ * {@link BaselineSensorsDataResource} did before the templates were compiled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorsDataResourceBenchmark {
+
+    private static final String ID = "1";
+    private static final String FROM = "2020-01-01T00:00:00Z";
+    private static final String TO = "2020-01-02T00:00:00Z";
+
+    @Param({"RAW", "AGGREGATE"})
+    private QueryResultFixtures.Shape shape;
+
+    private ObjectMapper objectMapper;
+    private ObjectMapper cborMapper;
+    private ObjectMapper smileMapper;
+    private SensorDataColumnsProtobufHttpMessageConverter protobufConverter;
+    private SensorDataColumnsArrowHttpMessageConverter arrowConverter;
+    private List<SensorData> data;
+    private String[] selectCriteria;
+    private Long intervalValue;
+    private TimeUnit intervalUnit;
+    private SensorsDataResource resource;
+    private CompactSensorsDataResource compact;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new Jackson2HalModule())
+                .handlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(new DefaultLinkRelationProvider(),
+                        CurieProvider.NONE, MessageResolver.DEFAULTS_ONLY))
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+        smileMapper = Jackson2ObjectMapperBuilder.smile().build();
+        protobufConverter = new SensorDataColumnsProtobufHttpMessageConverter();
+        arrowConverter = new SensorDataColumnsArrowHttpMessageConverter();
+
+        data = new CustomInfluxDBResultMapper().toPOJO(QueryResultFixtures.create(shape, false), SensorData.class);
+        if (shape == QueryResultFixtures.Shape.AGGREGATE) {
+            selectCriteria = new String[]{"mean(*)", "max(*)", "min(*)", "first(*)", "last(*)"};
+            intervalValue = 1L;
+            intervalUnit = TimeUnit.M;
+        }
+        resource = resource();
+        compact = new CompactSensorsDataResource(new ColumnarResultMapper().toColumns(
+                QueryResultFixtures.create(shape, true), QueryResultFixtures.MEASUREMENT,
+                java.util.concurrent.TimeUnit.MILLISECONDS),
+                QueryResultFixtures.TENANT_ID, ID, FROM, TO, selectCriteria, intervalValue, intervalUnit, null, null);
+
+        System.out.printf("%n%s: HAL %,d bytes, compact JSON %,d, CBOR %,d, Smile %,d, Protobuf %,d, Arrow %,d%n",
+                shape, serialize().length, serializeCompact().length, serializeCbor().length, serializeSmile().length,
+                serializeProtobuf().length, serializeArrow().length);
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public SensorsDataResource resource() {
+        newRequest();
+        List<SensorDataResource> ret = new ArrayList<>(data.size());
+        for (SensorData sensorData : data) {
+            ret.add(new SensorDataResource(sensorData, sensorData.getTime(), QueryResultFixtures.TENANT_ID, ID,
+                    selectCriteria, intervalValue, intervalUnit));
+        }
+        return new SensorsDataResource(ret, QueryResultFixtures.TENANT_ID, ID, FROM, TO, selectCriteria,
+                intervalValue, intervalUnit, null, null);
+    }
+
+    @Benchmark
+    public BaselineSensorsDataResource resourceBaseline() {
+        newRequest();
+        List<BaselineSensorsDataResource.Row> ret = new ArrayList<>(data.size());
+        for (SensorData sensorData : data) {
+            ret.add(new BaselineSensorsDataResource.Row(sensorData, sensorData.getTime(),
+                    QueryResultFixtures.TENANT_ID, ID, selectCriteria, intervalValue, intervalUnit));
+        }
+        return new BaselineSensorsDataResource(ret, QueryResultFixtures.TENANT_ID, ID, FROM, TO, selectCriteria,
+                intervalValue, intervalUnit);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(resource);
+    }
+
+    @Benchmark
+    public byte[] serializeCompact() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(compact);
+    }
+
+    @Benchmark
+    public byte[] serializeCbor() throws JsonProcessingException {
+        return cborMapper.writeValueAsBytes(compact);
+    }
+
+    @Benchmark
+    public byte[] serializeSmile() throws JsonProcessingException {
+        return smileMapper.writeValueAsBytes(compact);
+    }
+
+    @Benchmark
+    public byte[] serializeProtobuf() throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        protobufConverter.write(compact, SensorDataColumnsProtobufHttpMessageConverter.APPLICATION_PROTOBUF, message);
+        return message.getBodyAsBytes();
+    }
+
+    @Benchmark
+    public byte[] serializeArrow() throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        arrowConverter.write(compact, SensorDataColumnsArrowHttpMessageConverter.APPLICATION_ARROW_STREAM, message);
+        return message.getBodyAsBytes();
+    }
+
+    private static void newRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/timeseries/" + ID);
+        request.setServerName("tsa.example.com");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+}
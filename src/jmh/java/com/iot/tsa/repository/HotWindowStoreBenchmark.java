@@ -0,0 +1,131 @@
+package com.iot.tsa.repository;
+
+import com.iot.tsa.config.HotWindowProperties;
+import com.iot.tsa.enums.TimeUnit;
+import com.iot.tsa.model.SensorData;
+import com.iot.tsa.model.SensorDataColumns;
+import com.iot.tsa.util.db.QueryCriteria;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.influxdb.dto.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.iot.tsa.util.TimeFormatter.toZulu;
+
+/**
+ * Answers the queries of the shortcut links from a {@link HotWindowStore} holding a day of
+ * points every 10 seconds with four fields, the size of <tt>ResultMapperBenchmark</tt>'s raw
+ * day, without InfluxDB. A sensor is only answered from the time it was first written, so the
+ * day is written from the time the benchmark is set up on and queried by absolute times.
+ * <p>
+ * The bytes held per point are printed when the benchmark is set up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotWindowStoreBenchmark {
+
+    private static final int POINTS = 8_640;
+    private static final long STEP_MILLIS = 10_000L;
+    private static final String[] AGGREGATES = {"median(*)", "mean(*)", "max(*)", "min(*)"};
+
+    private HotWindowStore store;
+    private QueryCriteria lastMinute;
+    private QueryCriteria lastHourGroupBy;
+    private QueryCriteria lastDayGroupBy;
+    private QueryCriteria lastDay;
+
+    @Setup
+    public void setUp() {
+        HotWindowProperties properties = new HotWindowProperties();
+        properties.setEnabled(true);
+        properties.setSingleWriter(true);
+        properties.setWindow(Duration.ofDays(2));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        store = new HotWindowStore(properties, meterRegistry);
+
+        long start = System.currentTimeMillis() + STEP_MILLIS;
+        Random random = new Random(42);
+        List<Point> points = new ArrayList<>(POINTS);
+        double temperature = 45.0;
+        for (int i = 0; i < POINTS; i++) {
+            temperature = Math.round((temperature + random.nextGaussian() * 0.1) * 10) / 10.0;
+            points.add(Point.measurement("sensorData")
+                    .tag("tenantId", "1")
+                    .tag("id", "1")
+                    .time(start + i * STEP_MILLIS + random.nextInt(20), java.util.concurrent.TimeUnit.MILLISECONDS)
+                    .addField("temperature", temperature)
+                    .addField("memory", 12.5)
+                    .addField("cpu", Math.round(random.nextDouble() * 1000) / 10.0)
+                    .addField("load", (double) random.nextInt(8))
+                    .build());
+        }
+        store.append(points);
+
+        long end = start + POINTS * STEP_MILLIS;
+        lastMinute = criteria(end - Duration.ofMinutes(1).toMillis(), end, null, null, null);
+        lastHourGroupBy = criteria(end - Duration.ofHours(1).toMillis(), end, AGGREGATES, 1L, TimeUnit.M);
+        lastDayGroupBy = criteria(start, end, AGGREGATES, 1L, TimeUnit.H);
+        lastDay = criteria(start, end, null, null, null);
+
+        SensorDataColumns day = store.findColumnsByCriteria(lastDay);
+        long bytes = (long) meterRegistry.get("tsa.hotwindow.bytes").gauge().value();
+        System.out.printf("%n%,d points of 4 fields: %,d bytes held, %.2f bytes per point%n",
+                day.size(), bytes, (double) bytes / day.size());
+    }
+
+    @Benchmark
+    public List<SensorData> lastMinute() {
+        return store.findAllByCriteria(lastMinute);
+    }
+
+    @Benchmark
+    public List<SensorData> lastHourGroupBy() {
+        return store.findAllByCriteria(lastHourGroupBy);
+    }
+
+    @Benchmark
+    public List<SensorData> lastDayGroupBy() {
+        return store.findAllByCriteria(lastDayGroupBy);
+    }
+
+    @Benchmark
+    public List<SensorData> lastDay() {
+        return store.findAllByCriteria(lastDay);
+    }
+
+    @Benchmark
+    public SensorDataColumns lastDayColumns() {
+        return store.findColumnsByCriteria(lastDay);
+    }
+
+    private static QueryCriteria criteria(long from, long to, String[] selectCriteria,
+                                          Long intervalValue, TimeUnit intervalUnit) {
+        return new QueryCriteria.Builder()
+                .tenantId("1")
+                .id("1")
+                .from(toZulu(Instant.ofEpochMilli(from)))
+                .to(toZulu(Instant.ofEpochMilli(to)))
+                .selectCriteria(selectCriteria)
+                .intervalValue(intervalValue)
+                .intervalUnit(intervalUnit)
+                .build();
+    }
+}
@@ -0,0 +1,165 @@
+package com.iot.tsa.util.db;
+
+import com.iot.tsa.enums.TimeUnit;
+import org.influxdb.dto.BoundParameterQuery;
+import org.influxdb.dto.Query;
+import org.influxdb.querybuilder.SelectQueryImpl;
+import org.influxdb.querybuilder.SelectionQueryImpl;
+import org.influxdb.querybuilder.WhereQueryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.influxdb.querybuilder.BuiltQuery.QueryBuilder.eq;
+import static org.influxdb.querybuilder.BuiltQuery.QueryBuilder.gte;
+import static org.influxdb.querybuilder.BuiltQuery.QueryBuilder.lte;
+import static org.influxdb.querybuilder.BuiltQuery.QueryBuilder.select;
+import static org.influxdb.querybuilder.BuiltQuery.QueryBuilder.time;
+
+/**
+ * Builds the query of the criteria behind every {@link QueryResultFixtures.Shape}:
+ * <ul>
+ * <li><tt>request</tt> is what a request pays, parsing the select criteria and binding a cached template,</li>
+ * <li><tt>toQuery</tt> only binds the cached template,</li>
+ * <li><tt>compile</tt> builds the text of the template, as every query did before templates were cached,</li>
+ * <li><tt>baseline</tt> is what a request paid before, the query text built with the values in it.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryCriteriaBenchmark {
+
+    @Param({"RAW", "AGGREGATE", "LAST"})
+    private QueryResultFixtures.Shape shape;
+
+    private QueryCriteria criteria;
+    private QueryCriteria.Shape template;
+
+    @Setup
+    public void setUp() {
+        criteria = builder(shape).build();
+        template = new QueryCriteria.Shape(criteria);
+    }
+
+    @Benchmark
+    public Query request() {
+        return builder(shape).build().toQuery();
+    }
+
+    @Benchmark
+    public Query toQuery() {
+        return criteria.toQuery();
+    }
+
+    @Benchmark
+    public String compile() {
+        return QueryCriteria.compile(template);
+    }
+
+    @Benchmark
+    public Query baseline() {
+        return baseline(builder(shape).build(), selectCriteria(shape));
+    }
+
+    /**
+     * <tt>QueryCriteria.toQuery()</tt> as it was before templates were cached.
+     */
+    private static Query baseline(QueryCriteria criteria, String[] selectCriteria) {
+        SelectionQueryImpl selection = select();
+
+        if (selectCriteria != null) {
+            for (String expression : selectCriteria) {
+                selection.raw(expression);
+            }
+        }
+
+        WhereQueryImpl query = selection
+                .from("tsa", QueryResultFixtures.MEASUREMENT)
+                .where()
+                .and(eq("tenantId", criteria.getTenantId()));
+
+        if (criteria.getId() != null) {
+            query.and(eq("id", criteria.getId()));
+        }
+
+        if (criteria.getFrom() != null) {
+            if (Now.isRelativeTime(criteria.getFrom())) {
+                query = query.and(gte("time", new Now(criteria.getFrom())));
+            } else {
+                query = query.and(gte("time", criteria.getFrom()));
+            }
+        }
+        if (criteria.getTo() != null) {
+            if (Now.isRelativeTime(criteria.getTo())) {
+                query = query.and(lte("time", new Now(criteria.getTo())));
+            } else {
+                query = query.and(lte("time", criteria.getTo()));
+            }
+        }
+
+        SelectQueryImpl selectQuery = null;
+
+        if (criteria.getGroupByCriteria() != null) {
+            selectQuery = query.groupBy(criteria.getGroupByCriteria());
+        } else if (criteria.getIntervalValue() != null && criteria.getIntervalUnit() != null) {
+            selectQuery = query.groupBy(time(criteria.getIntervalValue(), criteria.getIntervalUnit().getUnit()));
+        }
+
+        return BoundParameterQuery.QueryBuilder
+                .newQuery((selectQuery != null ? selectQuery : query).buildQueryString().toString())
+                .forDatabase("tsa")
+                .create();
+    }
+
+    private static String[] selectCriteria(QueryResultFixtures.Shape shape) {
+        switch (shape) {
+            case AGGREGATE:
+                return new String[]{"mean(*)", "max(*)", "min(*)", "first(*)", "last(*)"};
+            case LAST:
+                return new String[]{"last(*)"};
+            default:
+                return null;
+        }
+    }
+
+    private static QueryCriteria.Builder builder(QueryResultFixtures.Shape shape) {
+        QueryCriteria.Builder builder = new QueryCriteria.Builder()
+                .database("tsa")
+                .table(QueryResultFixtures.MEASUREMENT)
+                .tenantId(QueryResultFixtures.TENANT_ID);
+        switch (shape) {
+            case RAW:
+                return builder
+                        .id("1")
+                        .from("2020-01-01T00:00:00Z")
+                        .to("2020-01-02T00:00:00Z");
+            case AGGREGATE:
+                return builder
+                        .id("1")
+                        .from("2020-01-01T00:00:00Z")
+                        .to("2020-01-02T00:00:00Z")
+                        .selectCriteria(selectCriteria(shape))
+                        .intervalValue(1L)
+                        .intervalUnit(TimeUnit.M);
+            case LAST:
+                return builder
+                        .from("now() - 30d")
+                        .selectCriteria(selectCriteria(shape))
+                        .groupByCriteria(new String[]{"tenantId", "id"});
+            default:
+                throw new IllegalArgumentException(shape.name());
+        }
+    }
+}
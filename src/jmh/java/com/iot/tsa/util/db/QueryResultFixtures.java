@@ -0,0 +1,140 @@
+package com.iot.tsa.util.db;
+
+import org.influxdb.dto.QueryResult;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic {@link QueryResult}s shaped like the ones InfluxDB returns to the repository. The
+ * values are what the client parses the JSON response into: <tt>time</tt> is a RFC3339 string, or
+ * a <tt>Double</tt> of epoch millis when the query has a precision, and every number is a
+ * <tt>Double</tt>.
+ */
+public final class QueryResultFixtures {
+
+    public static final String MEASUREMENT = "sensorData";
+    public static final String TENANT_ID = "1";
+
+    private static final long START = Instant.parse("2020-01-01T00:00:00Z").toEpochMilli();
+    private static final String[] AGGREGATES = {"mean", "max", "min", "first", "last"};
+
+    public enum Shape {
+
+        /**
+         * <tt>select * from sensorData where ...</tt>: one series of a day of points every 10 seconds
+         * with a wide set of fields, some of them missing.
+         */
+        RAW(8_640, 24),
+
+        /**
+         * <tt>select mean(*), max(*), min(*), first(*), last(*) ... group by time(1m)</tt>: one
+         * series of a day of buckets, a few of them empty.
+         */
+        AGGREGATE(1_440, 6),
+
+        /**
+         * <tt>select last(*) ... group by tenantId, id</tt>: one single row series per sensor, with
+         * the tags of the sensor.
+         */
+        LAST(500, 8);
+
+        private final int size;
+        private final int fields;
+
+        Shape(int size, int fields) {
+            this.size = size;
+            this.fields = fields;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+
+    private QueryResultFixtures() {
+    }
+
+    /**
+     * @param epoch whether <tt>time</tt> is epoch millis, as with a {@link java.util.concurrent.TimeUnit}
+     *              precision, rather than RFC3339
+     */
+    public static QueryResult create(Shape shape, boolean epoch) {
+        Random random = new Random(42L);
+        List<QueryResult.Series> series;
+        switch (shape) {
+            case RAW:
+                series = Collections.singletonList(series(null, fields(shape.fields, null), shape.size,
+                        10_000L, 0.05, epoch, random));
+                break;
+            case AGGREGATE:
+                series = Collections.singletonList(series(null, aggregateFields(shape.fields), shape.size,
+                        60_000L, 0.01, epoch, random));
+                break;
+            case LAST:
+                series = new ArrayList<>(shape.size);
+                for (int id = 0; id < shape.size; id++) {
+                    Map<String, String> tags = new HashMap<>();
+                    tags.put("tenantId", TENANT_ID);
+                    tags.put("id", Integer.toString(id));
+                    series.add(series(tags, fields(shape.fields, "last"), 1, 0L, 0.0, epoch, random));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(shape.name());
+        }
+
+        QueryResult.Result result = new QueryResult.Result();
+        result.setSeries(series);
+        QueryResult queryResult = new QueryResult();
+        queryResult.setResults(Collections.singletonList(result));
+        return queryResult;
+    }
+
+    private static QueryResult.Series series(Map<String, String> tags, List<String> fields, int size, long step,
+                                             double missing, boolean epoch, Random random) {
+        List<String> columns = new ArrayList<>(fields.size() + 1);
+        columns.add("time");
+        columns.addAll(fields);
+
+        List<List<Object>> values = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            long time = START + row * step;
+            Object[] value = new Object[columns.size()];
+            value[0] = epoch ? (Object) (double) time : Instant.ofEpochMilli(time).toString();
+            for (int column = 1; column < value.length; column++) {
+                value[column] = random.nextDouble() < missing ? null : Math.round(random.nextGaussian() * 1000) / 100.0;
+            }
+            values.add(Arrays.asList(value));
+        }
+
+        QueryResult.Series series = new QueryResult.Series();
+        series.setName(MEASUREMENT);
+        series.setTags(tags);
+        series.setColumns(columns);
+        series.setValues(values);
+        return series;
+    }
+
+    private static List<String> fields(int count, String function) {
+        List<String> fields = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            fields.add(function != null ? function + "_field" + i : "field" + i);
+        }
+        return fields;
+    }
+
+    private static List<String> aggregateFields(int count) {
+        List<String> fields = new ArrayList<>(count * AGGREGATES.length);
+        for (String function : AGGREGATES) {
+            fields.addAll(fields(count, function));
+        }
+        return fields;
+    }
+}
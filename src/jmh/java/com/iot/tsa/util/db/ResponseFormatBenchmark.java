@@ -0,0 +1,140 @@
+package com.iot.tsa.util.db;
+
+import com.iot.tsa.model.SensorData;
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import okio.Buffer;
+import org.influxdb.dto.QueryResult;
+import org.influxdb.msgpack.MessagePackTraverser;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Decodes the response of a large <tt>/timeseries/{id}</tt> query as the client does in each
+ * <tt>tsa.influxdb-client.response-format</tt>: JSON through Moshi with RFC3339 times, and
+ * MessagePack through the client's traverser with epoch millis times. The <tt>toPOJO</tt>
+ * benchmarks add the mapping into {@link SensorData} rows.
+ * <p>
+ * The bytes on the wire of every shape, plain and gzipped, are printed when the benchmark is set up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseFormatBenchmark {
+
+    private static final JsonAdapter<QueryResult> ADAPTER = new Moshi.Builder().build().adapter(QueryResult.class);
+
+    @Param({"RAW", "AGGREGATE", "LAST"})
+    private QueryResultFixtures.Shape shape;
+
+    private byte[] json;
+    private byte[] messagePack;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = ADAPTER.toJson(QueryResultFixtures.create(shape, false)).getBytes("UTF-8");
+        messagePack = messagePack(QueryResultFixtures.create(shape, true));
+        System.out.printf("%n%s: JSON %,d bytes (%,d gzipped), MessagePack %,d bytes (%,d gzipped)%n",
+                shape, json.length, gzipped(json), messagePack.length, gzipped(messagePack));
+    }
+
+    @Benchmark
+    public QueryResult decodeJson() throws IOException {
+        return ADAPTER.fromJson(new Buffer().write(json));
+    }
+
+    @Benchmark
+    public QueryResult decodeMessagePack() {
+        return new MessagePackTraverser().parse(new ByteArrayInputStream(messagePack));
+    }
+
+    @Benchmark
+    public List<SensorData> toPOJOJson() throws IOException {
+        return new CustomInfluxDBResultMapper().toPOJO(decodeJson(), SensorData.class);
+    }
+
+    @Benchmark
+    public List<SensorData> toPOJOMessagePack() {
+        return new CustomInfluxDBResultMapper().toPOJO(decodeMessagePack(), SensorData.class, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Encodes the result as InfluxDB does for <tt>Accept: application/x-msgpack</tt>, with the
+     * time as an integer as when the query has a precision.
+     */
+    private static byte[] messagePack(QueryResult queryResult) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MessagePacker packer = MessagePack.newDefaultPacker(out)) {
+            packer.packMapHeader(1).packString("results");
+            packer.packArrayHeader(queryResult.getResults().size());
+            int statementId = 0;
+            for (QueryResult.Result result : queryResult.getResults()) {
+                packer.packMapHeader(2)
+                        .packString("statement_id").packInt(statementId++)
+                        .packString("series").packArrayHeader(result.getSeries().size());
+                for (QueryResult.Series series : result.getSeries()) {
+                    pack(packer, series);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void pack(MessagePacker packer, QueryResult.Series series) throws IOException {
+        Map<String, String> tags = series.getTags();
+        packer.packMapHeader(tags != null ? 4 : 3).packString("name").packString(series.getName());
+        if (tags != null) {
+            packer.packString("tags").packMapHeader(tags.size());
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                packer.packString(tag.getKey()).packString(tag.getValue());
+            }
+        }
+        packer.packString("columns").packArrayHeader(series.getColumns().size());
+        for (String column : series.getColumns()) {
+            packer.packString(column);
+        }
+        packer.packString("values").packArrayHeader(series.getValues().size());
+        for (List<Object> row : series.getValues()) {
+            packer.packArrayHeader(row.size());
+            packer.packLong(((Number) row.get(0)).longValue());
+            for (int i = 1; i < row.size(); i++) {
+                Object value = row.get(i);
+                if (value == null) {
+                    packer.packNil();
+                } else {
+                    packer.packDouble(((Number) value).doubleValue());
+                }
+            }
+        }
+    }
+
+    private static int gzipped(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,71 @@
+package com.iot.tsa.util.db;
+
+import com.iot.tsa.model.SensorData;
+import com.iot.tsa.model.SensorDataColumns;
+import org.influxdb.dto.QueryResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps every {@link QueryResultFixtures.Shape} into {@link SensorData} rows, as the
+ * <tt>/timeseries</tt> endpoints do from epoch millis and the streamed ones from RFC3339, and into
+ * {@link SensorDataColumns}, as the <tt>/compact</tt> ones do. The <tt>Baseline</tt> benchmarks map
+ * the same rows with {@link BaselineInfluxDBResultMapper}, the mapper before mapping plans.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultMapperBenchmark {
+
+    @Param({"RAW", "AGGREGATE", "LAST"})
+    private QueryResultFixtures.Shape shape;
+
+    private QueryResult rfc3339;
+    private QueryResult epoch;
+
+    @Setup
+    public void setUp() {
+        rfc3339 = QueryResultFixtures.create(shape, false);
+        epoch = QueryResultFixtures.create(shape, true);
+    }
+
+    @Benchmark
+    public List<SensorData> toPOJO() {
+        return new CustomInfluxDBResultMapper().toPOJO(rfc3339, SensorData.class);
+    }
+
+    @Benchmark
+    public List<SensorData> toPOJOEpoch() {
+        return new CustomInfluxDBResultMapper().toPOJO(epoch, SensorData.class, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public List<SensorData> toPOJOBaseline() {
+        return new BaselineInfluxDBResultMapper().toPOJO(rfc3339, SensorData.class);
+    }
+
+    @Benchmark
+    public List<SensorData> toPOJOEpochBaseline() {
+        return new BaselineInfluxDBResultMapper().toPOJO(epoch, SensorData.class, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public SensorDataColumns toColumns() {
+        return new ColumnarResultMapper().toColumns(epoch, QueryResultFixtures.MEASUREMENT, TimeUnit.MILLISECONDS);
+    }
+}
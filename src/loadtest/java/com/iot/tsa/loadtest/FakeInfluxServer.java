@@ -0,0 +1,323 @@
+package com.iot.tsa.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Stands in for the InfluxDB HTTP API, so the service can be loaded without a database. Every
+ * select is answered after the configured latency with generated series of the configured size:
+ * one series per sensor for a <tt>last(*)</tt>, a single one for anything else. The responses are
+ * generated once and then replayed, so the stand-in costs as little as possible of the machine
+ * the service is measured on. Queries asking for <tt>application/x-msgpack</tt> are answered in
+ * MessagePack, like InfluxDB 1.4 and later. Writes are only counted.
+ */
+public class FakeInfluxServer implements AutoCloseable {
+
+    private static final long START = Instant.parse("2020-01-01T00:00:00Z").toEpochMilli();
+    private static final long STEP = 10_000L;
+    private static final byte[] EMPTY = "{\"results\":[{\"statement_id\":0}]}".getBytes(StandardCharsets.UTF_8);
+    private static final String APPLICATION_JSON = "application/json";
+    private static final String APPLICATION_MSGPACK = "application/x-msgpack";
+    private static final byte TIMESTAMP_EXT_TYPE = 5;
+    private static final Pattern TENANT_ID = Pattern.compile("\"tenantId\"\\s*:\\s*\"([^\"]*)\"");
+
+    private final int sensors;
+    private final int rows;
+    private final int fields;
+    private final long latencyMillis;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ConcurrentMap<String, byte[]> responses = new ConcurrentHashMap<>();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong points = new AtomicLong();
+
+    public FakeInfluxServer(int sensors, int rows, int fields, Duration latency) throws IOException {
+        this.sensors = sensors;
+        this.rows = rows;
+        this.fields = fields;
+        this.latencyMillis = latency.toMillis();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/ping", exchange -> respond(exchange, 204, null, null));
+        this.server.createContext("/write", this::write);
+        this.server.createContext("/query", this::query);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * How many queries were answered.
+     */
+    public long getQueries() {
+        return queries.get();
+    }
+
+    /**
+     * How many points were written.
+     */
+    public long getPoints() {
+        return points.get();
+    }
+
+    private void write(HttpExchange exchange) throws IOException {
+        InputStream body = exchange.getRequestBody();
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            body = new GZIPInputStream(body);
+        }
+        long lines = 0;
+        boolean empty = true;
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = body.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    if (!empty) {
+                        lines++;
+                    }
+                    empty = true;
+                } else {
+                    empty = false;
+                }
+            }
+        }
+        points.addAndGet(empty ? lines : lines + 1);
+        respond(exchange, 204, null, null);
+    }
+
+    private void query(HttpExchange exchange) throws IOException {
+        Map<String, String> params = params(exchange.getRequestURI().getRawQuery());
+        params.putAll(params(new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8)));
+        String q = params.getOrDefault("q", "");
+        String upper = q.trim().toUpperCase();
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        boolean messagePack = accept != null && accept.contains(APPLICATION_MSGPACK);
+        String contentType = messagePack ? APPLICATION_MSGPACK : APPLICATION_JSON;
+        if (!upper.startsWith("SELECT")) {
+            respond(exchange, 200, contentType, messagePack ? emptyMessagePack() : EMPTY);
+            return;
+        }
+
+        boolean epoch = params.containsKey("epoch");
+        boolean last = upper.contains("LAST(*)");
+        String tenantId = "";
+        if (last) {
+            Matcher matcher = TENANT_ID.matcher(params.getOrDefault("params", ""));
+            tenantId = matcher.find() ? matcher.group(1) : "";
+        }
+        String key = (last ? "last:" : "points:") + contentType + ":" + epoch + ":" + tenantId;
+        String tenant = tenantId;
+        byte[] response = responses.computeIfAbsent(key, k -> messagePack
+                ? (last ? lastMessagePack(tenant, epoch) : pointsMessagePack(epoch))
+                : (last ? last(tenant, epoch) : points(epoch)));
+
+        try {
+            TimeUnit.MILLISECONDS.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queries.incrementAndGet();
+        respond(exchange, 200, contentType, response);
+    }
+
+    private byte[] points(boolean epoch) {
+        StringBuilder sb = new StringBuilder("{\"results\":[{\"statement_id\":0,\"series\":[");
+        series(sb, null, rows, epoch);
+        return sb.append("]}]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] last(String tenantId, boolean epoch) {
+        StringBuilder sb = new StringBuilder("{\"results\":[{\"statement_id\":0,\"series\":[");
+        for (int id = 1; id <= sensors; id++) {
+            if (id > 1) {
+                sb.append(',');
+            }
+            series(sb, "{\"id\":\"" + id + "\",\"tenantId\":\"" + tenantId + "\"}", 1, epoch);
+        }
+        return sb.append("]}]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void series(StringBuilder sb, String tags, int size, boolean epoch) {
+        sb.append("{\"name\":\"sensorData\",");
+        if (tags != null) {
+            sb.append("\"tags\":").append(tags).append(',');
+        }
+        sb.append("\"columns\":[\"time\"");
+        for (int field = 0; field < fields; field++) {
+            sb.append(",\"field").append(field).append('"');
+        }
+        sb.append("],\"values\":[");
+        for (int row = 0; row < size; row++) {
+            if (row > 0) {
+                sb.append(',');
+            }
+            long time = START + row * STEP;
+            sb.append('[');
+            if (epoch) {
+                sb.append(time);
+            } else {
+                sb.append('"').append(Instant.ofEpochMilli(time)).append('"');
+            }
+            for (int field = 0; field < fields; field++) {
+                sb.append(',').append((row * 31 + field * 17) % 1000 / 10.0);
+            }
+            sb.append(']');
+        }
+        sb.append("]}");
+    }
+
+    private byte[] pointsMessagePack(boolean epoch) {
+        return messagePack(packer -> {
+            packer.packArrayHeader(1);
+            series(packer, null, rows, epoch);
+        });
+    }
+
+    private byte[] lastMessagePack(String tenantId, boolean epoch) {
+        return messagePack(packer -> {
+            packer.packArrayHeader(sensors);
+            for (int id = 1; id <= sensors; id++) {
+                Map<String, String> tags = new HashMap<>();
+                tags.put("id", Integer.toString(id));
+                tags.put("tenantId", tenantId);
+                series(packer, tags, 1, epoch);
+            }
+        });
+    }
+
+    private static byte[] emptyMessagePack() {
+        return messagePack(null);
+    }
+
+    /**
+     * A single statement result, whose series are packed by <tt>series</tt> when there are any.
+     */
+    private static byte[] messagePack(SeriesPacker series) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MessagePacker packer = MessagePack.newDefaultPacker(out)) {
+            packer.packMapHeader(1).packString("results").packArrayHeader(1);
+            packer.packMapHeader(series != null ? 2 : 1).packString("statement_id").packInt(0);
+            if (series != null) {
+                packer.packString("series");
+                series.pack(packer);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private void series(MessagePacker packer, Map<String, String> tags, int size, boolean epoch) throws IOException {
+        packer.packMapHeader(tags != null ? 4 : 3).packString("name").packString("sensorData");
+        if (tags != null) {
+            packer.packString("tags").packMapHeader(tags.size());
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                packer.packString(tag.getKey()).packString(tag.getValue());
+            }
+        }
+        packer.packString("columns").packArrayHeader(fields + 1).packString("time");
+        for (int field = 0; field < fields; field++) {
+            packer.packString("field" + field);
+        }
+        packer.packString("values").packArrayHeader(size);
+        for (int row = 0; row < size; row++) {
+            long time = START + row * STEP;
+            packer.packArrayHeader(fields + 1);
+            if (epoch) {
+                packer.packLong(time);
+            } else {
+                // without a precision InfluxDB sends the time as a timestamp extension
+                byte[] timestamp = ByteBuffer.allocate(12)
+                        .putLong(Math.floorDiv(time, 1000L))
+                        .putInt((int) Math.floorMod(time, 1000L) * 1_000_000)
+                        .array();
+                packer.packExtensionTypeHeader(TIMESTAMP_EXT_TYPE, timestamp.length).writePayload(timestamp);
+            }
+            for (int field = 0; field < fields; field++) {
+                packer.packDouble((row * 31 + field * 17) % 1000 / 10.0);
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().add("X-Influxdb-Version", "1.7.9");
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            exchange.getResponseHeaders().add("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    private static Map<String, String> params(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                        URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private interface SeriesPacker {
+
+        void pack(MessagePacker packer) throws IOException;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
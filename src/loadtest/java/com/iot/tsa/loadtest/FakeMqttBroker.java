@@ -0,0 +1,166 @@
+package com.iot.tsa.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for an MQTT broker with a single subscriber, so the MQTT ingestion can be loaded
+ * without one. It speaks just enough MQTT 3.1.1 to accept the connection and the subscription
+ * of the service, then publishes generated sensor payloads at QoS 0 as fast as the socket takes
+ * them.
+ */
+public class FakeMqttBroker implements AutoCloseable {
+
+    private static final int CONNECT = 1;
+    private static final int SUBSCRIBE = 8;
+    private static final int PINGREQ = 12;
+    private static final int DISCONNECT = 14;
+    private static final long START = 1577836800000L;
+
+    private final ServerSocket serverSocket;
+    private final CountDownLatch subscribed = new CountDownLatch(1);
+    private final Thread acceptor;
+    private volatile Socket socket;
+    private volatile OutputStream out;
+    private volatile String topic;
+
+    public FakeMqttBroker() throws IOException {
+        this.serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(this::serve, "fake-mqtt-broker");
+        this.acceptor.setDaemon(true);
+    }
+
+    public void start() {
+        acceptor.start();
+    }
+
+    public String getUrl() {
+        return "tcp://localhost:" + serverSocket.getLocalPort();
+    }
+
+    /**
+     * Publishes the payloads of <tt>sensors</tt> sensors of <tt>tenants</tt> tenants in turns,
+     * once the service has subscribed.
+     *
+     * @return whether the service subscribed in time
+     */
+    public boolean publish(int messages, int tenants, int sensors, int fields, long timeoutMillis)
+            throws IOException, InterruptedException {
+        if (!subscribed.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < messages; i++) {
+            sb.setLength(0);
+            sb.append("{\"id\":\"").append(i % sensors + 1)
+                    .append("\",\"tenantId\":\"").append(i % tenants + 1)
+                    .append("\",\"timestamp\":").append(START + i);
+            for (int field = 0; field < fields; field++) {
+                sb.append(",\"field").append(field).append("\":").append((i * 31 + field * 17) % 1000 / 10.0);
+            }
+            byte[] payload = sb.append('}').toString().getBytes(StandardCharsets.UTF_8);
+            synchronized (this) {
+                out.write(0x30);
+                writeLength(out, 2 + topicBytes.length + payload.length);
+                out.write(topicBytes.length >> 8);
+                out.write(topicBytes.length);
+                out.write(topicBytes);
+                out.write(payload);
+            }
+        }
+        synchronized (this) {
+            out.flush();
+        }
+        return true;
+    }
+
+    private void serve() {
+        try {
+            socket = serverSocket.accept();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new BufferedOutputStream(socket.getOutputStream());
+            while (true) {
+                int header = in.read();
+                if (header < 0) {
+                    return;
+                }
+                byte[] body = new byte[readLength(in)];
+                in.readFully(body);
+                switch (header >> 4) {
+                    case CONNECT:
+                        send(0x20, 0, 0);
+                        break;
+                    case SUBSCRIBE:
+                        int length = (body[2] & 0xff) << 8 | (body[3] & 0xff);
+                        topic = new String(body, 4, length, StandardCharsets.UTF_8);
+                        send(0x90, body[0], body[1], 0);
+                        subscribed.countDown();
+                        break;
+                    case PINGREQ:
+                        send(0xd0);
+                        break;
+                    case DISCONNECT:
+                        return;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    private synchronized void send(int header, int... body) throws IOException {
+        out.write(header);
+        out.write(body.length);
+        for (int b : body) {
+            out.write(b);
+        }
+        out.flush();
+    }
+
+    private static int readLength(InputStream in) throws IOException {
+        int multiplier = 1;
+        int length = 0;
+        int b;
+        do {
+            b = in.read();
+            if (b < 0) {
+                throw new IOException("Connection closed");
+            }
+            length += (b & 127) * multiplier;
+            multiplier *= 128;
+        } while ((b & 128) != 0);
+        return length;
+    }
+
+    private static void writeLength(OutputStream out, int length) throws IOException {
+        do {
+            int b = length % 128;
+            length /= 128;
+            if (length > 0) {
+                b |= 128;
+            }
+            out.write(b);
+        } while (length > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        if (socket != null) {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.iot.tsa.loadtest;
+
+import com.iot.tsa.TimeSeriesAggregationApplication;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads the service end to end against a {@link FakeInfluxServer}, and reports the latency
+ * percentiles, the throughput and the allocation rate of every endpoint:
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--loadtest.concurrency=32 --loadtest.rows=5000"
+ * </pre>
+ * Every <tt>--loadtest.*</tt> argument is a {@link LoadTestProperties} property, all the other
+ * arguments go to the service, like <tt>--tsa.admission.enabled=true</tt>. The service runs in
+ * this JVM, so the allocation rate is the one of every thread but the clients: the service and
+ * the stand-ins, which replay prepared responses.
+ * <p>
+ * The clients wait for every response before sending the next request, so the latencies are the
+ * ones of a service that keeps up, a saturated one shows up as a lower throughput. Once the
+ * requests are done, the MQTT ingestion is loaded through a {@link FakeMqttBroker} when
+ * <tt>--loadtest.mqtt-messages</tt> is set.
+ * <p>
+ * Exits with 1 if any request failed.
+ */
+public final class LoadTest {
+
+    private static final String X_TENANT_ID = "X-TenantId";
+    private static final long MQTT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private final LoadTestProperties properties;
+    private final String baseUrl;
+    private final Map<LoadTestProperties.Endpoint, Stats> stats = new EnumMap<>(LoadTestProperties.Endpoint.class);
+    private volatile boolean recording;
+    private volatile boolean stopped;
+
+    private LoadTest(LoadTestProperties properties, String baseUrl) {
+        this.properties = properties;
+        this.baseUrl = baseUrl;
+        for (LoadTestProperties.Endpoint endpoint : properties.getEndpoints()) {
+            stats.put(endpoint, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource arguments = new SimpleCommandLinePropertySource(args);
+        LoadTestProperties properties = new Binder(ConfigurationPropertySources.from(arguments))
+                .bind("loadtest", LoadTestProperties.class)
+                .orElseGet(LoadTestProperties::new);
+
+        boolean failed;
+        try (FakeInfluxServer influx = new FakeInfluxServer(properties.getSensors(), properties.getRows(),
+                properties.getFields(), properties.getLatency());
+             FakeMqttBroker broker = new FakeMqttBroker()) {
+            influx.start();
+            broker.start();
+
+            Map<String, Object> defaults = new LinkedHashMap<>();
+            defaults.put("server.port", 0);
+            defaults.put("spring.main.banner-mode", "off");
+            defaults.put("logging.level.root", "WARN");
+            defaults.put("spring.influxdb.url", influx.getUrl());
+            defaults.put("tsa.admission.enabled", false);
+            defaults.put("tsa.mqtt.enabled", properties.getMqttMessages() > 0);
+            defaults.put("tsa.mqtt.url", broker.getUrl());
+            List<String> applicationArgs = new ArrayList<>(Arrays.asList(args));
+            defaults.forEach((name, value) -> {
+                if (!arguments.containsProperty(name)) {
+                    applicationArgs.add("--" + name + "=" + value);
+                }
+            });
+
+            try (ConfigurableApplicationContext context = SpringApplication.run(
+                    TimeSeriesAggregationApplication.class, applicationArgs.toArray(new String[0]))) {
+                String port = context.getEnvironment().getProperty("local.server.port");
+                LoadTest loadTest = new LoadTest(properties, "http://localhost:" + port);
+                failed = loadTest.run(influx);
+                if (properties.getMqttMessages() > 0) {
+                    loadTest.runMqtt(influx, broker);
+                }
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * @return whether any request failed
+     */
+    private boolean run(FakeInfluxServer influx) throws InterruptedException {
+        if (properties.getEndpoints().isEmpty() || properties.getDuration().isZero()) {
+            return false;
+        }
+        System.out.printf("%d clients, %s warmup, %s measured, endpoints %s%n", properties.getConcurrency(),
+                properties.getWarmup(), properties.getDuration(), properties.getEndpoints());
+        System.out.printf("InfluxDB stand-in: %d rows of %d fields, %d sensors, %s latency%n",
+                properties.getRows(), properties.getFields(), properties.getSensors(), properties.getLatency());
+
+        List<Thread> clients = new ArrayList<>();
+        Set<Long> clientIds = new HashSet<>();
+        for (int i = 0; i < properties.getConcurrency(); i++) {
+            Thread client = new Thread(this::send, "load-test-client-" + i);
+            client.setDaemon(true);
+            clients.add(client);
+            clientIds.add(client.getId());
+        }
+        clients.forEach(Thread::start);
+
+        TimeUnit.MILLISECONDS.sleep(properties.getWarmup().toMillis());
+        Map<Long, Long> allocatedBefore = allocatedBytes(clientIds);
+        long[] gcBefore = gc();
+        long queriesBefore = influx.getQueries();
+        long start = System.nanoTime();
+        recording = true;
+
+        TimeUnit.MILLISECONDS.sleep(properties.getDuration().toMillis());
+        recording = false;
+        long elapsed = System.nanoTime() - start;
+        Map<Long, Long> allocatedAfter = allocatedBytes(clientIds);
+        long[] gcAfter = gc();
+        long queries = influx.getQueries() - queriesBefore;
+        stopped = true;
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        long allocated = 0L;
+        for (Map.Entry<Long, Long> entry : allocatedAfter.entrySet()) {
+            allocated += entry.getValue() - allocatedBefore.getOrDefault(entry.getKey(), 0L);
+        }
+        return report(elapsed, allocated, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], queries);
+    }
+
+    private void send() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<LoadTestProperties.Endpoint> endpoints = properties.getEndpoints();
+        byte[] buffer = new byte[8192];
+        for (int i = random.nextInt(endpoints.size()); !stopped; i++) {
+            LoadTestProperties.Endpoint endpoint = endpoints.get(i % endpoints.size());
+            String tenantId = Integer.toString(random.nextInt(properties.getTenants()) + 1);
+            String id = Integer.toString(random.nextInt(properties.getSensors()) + 1);
+            String path = endpoint.path(id, properties.getTimeSeriesQuery());
+
+            boolean measured = recording;
+            long start = System.nanoTime();
+            long bytes = 0L;
+            String error = null;
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+                connection.setRequestProperty(X_TENANT_ID, tenantId);
+                connection.setRequestProperty("Accept", "application/hal+json, application/json");
+                int status = connection.getResponseCode();
+                try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                    int read;
+                    while (in != null && (read = in.read(buffer)) > 0) {
+                        bytes += read;
+                    }
+                }
+                if (status != 200) {
+                    error = status + " " + path;
+                }
+            } catch (IOException e) {
+                error = e + " " + path;
+            }
+            if (measured) {
+                stats.get(endpoint).record(System.nanoTime() - start, bytes, error);
+            }
+        }
+    }
+
+    private boolean report(long elapsedNanos, long allocatedBytes, long gcCount, long gcMillis, long queries) {
+        double seconds = elapsedNanos / 1e9;
+        long requests = 0L;
+        boolean failed = false;
+        System.out.printf("%n%-12s %10s %8s %12s %10s %10s %10s %10s %12s%n", "endpoint", "requests", "errors",
+                "throughput", "p50 ms", "p99 ms", "p999 ms", "max ms", "avg bytes");
+        for (Map.Entry<LoadTestProperties.Endpoint, Stats> entry : stats.entrySet()) {
+            Stats endpoint = entry.getValue();
+            Histogram latencies = endpoint.latencies;
+            long count = latencies.getTotalCount();
+            requests += count;
+            System.out.printf("%-12s %10d %8d %10.1f/s %10.2f %10.2f %10.2f %10.2f %12d%n",
+                    entry.getKey().getLabel(), count, endpoint.errors.sum(), count / seconds,
+                    millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMaxValue()),
+                    count == 0 ? 0L : endpoint.bytes.sum() / count);
+            if (endpoint.errors.sum() > 0) {
+                failed = true;
+                System.out.printf("%-12s first error: %s%n", "", endpoint.firstError.get());
+            }
+        }
+        System.out.printf("%n%d requests, %.1f requests/s, %d InfluxDB queries%n", requests, requests / seconds,
+                queries);
+        System.out.printf("allocated %.1f MB/s, %.1f KB/request%n", allocatedBytes / seconds / (1 << 20),
+                requests == 0 ? 0.0 : allocatedBytes / (double) requests / (1 << 10));
+        System.out.printf("%d collections, %d ms in GC%n", gcCount, gcMillis);
+        return failed;
+    }
+
+    private void runMqtt(FakeInfluxServer influx, FakeMqttBroker broker) throws IOException, InterruptedException {
+        int messages = properties.getMqttMessages();
+        long pointsBefore = influx.getPoints();
+        long start = System.nanoTime();
+        if (!broker.publish(messages, properties.getTenants(), properties.getSensors(), properties.getFields(),
+                MQTT_TIMEOUT_MILLIS)) {
+            System.out.println("\nmqtt: the service did not subscribe");
+            return;
+        }
+        long published = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(MQTT_TIMEOUT_MILLIS);
+        while (influx.getPoints() - pointsBefore < messages && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        long elapsed = System.nanoTime() - start;
+        long written = influx.getPoints() - pointsBefore;
+        System.out.printf("%nmqtt: %d messages published in %.0f ms, %d points written in %.0f ms, %.0f messages/s%n",
+                messages, (published - start) / 1e6, written, elapsed / 1e6, written / (elapsed / 1e9));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * The bytes allocated so far by every live thread but the excluded ones.
+     */
+    private static Map<Long, Long> allocatedBytes(Set<Long> excluded) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] ids = threads.getAllThreadIds();
+        long[] allocated = threads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> bytes = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] >= 0 && !excluded.contains(ids[i])) {
+                bytes.put(ids[i], allocated[i]);
+            }
+        }
+        return bytes;
+    }
+
+    private static long[] gc() {
+        long count = 0L;
+        long millis = 0L;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0L, gc.getCollectionCount());
+            millis += Math.max(0L, gc.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    private static final class Stats {
+
+        private final Histogram latencies = new ConcurrentHistogram(3);
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final AtomicReference<String> firstError = new AtomicReference<>();
+
+        void record(long nanos, long bytes, String error) {
+            latencies.recordValue(nanos);
+            this.bytes.add(bytes);
+            if (error != null) {
+                errors.increment();
+                firstError.compareAndSet(null, error);
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.iot.tsa.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The <tt>--loadtest.*</tt> arguments of a {@link LoadTest}.
+ */
+public class LoadTestProperties {
+
+    /**
+     * How many requests are in flight at the same time, every one of them waits for its response
+     * before sending the next.
+     */
+    private int concurrency = 16;
+
+    /**
+     * How long to send requests before measuring, so the JIT and the caches are warm.
+     */
+    private Duration warmup = Duration.ofSeconds(10);
+
+    /**
+     * How long to measure.
+     */
+    private Duration duration = Duration.ofSeconds(30);
+
+    /**
+     * The endpoints every client requests in turns.
+     */
+    private List<Endpoint> endpoints = Arrays.asList(Endpoint.values());
+
+    /**
+     * The query string of the <tt>/timeseries/{id}</tt> requests.
+     */
+    private String timeSeriesQuery = "from=2020-01-01T00:00:00Z&to=2020-01-02T00:00:00Z";
+
+    /**
+     * How many tenants the requests are spread over.
+     */
+    private int tenants = 1;
+
+    /**
+     * How many sensors the requests are spread over, also the number of series of a
+     * <tt>last(*)</tt> result.
+     */
+    private int sensors = 100;
+
+    /**
+     * How many rows every series of the InfluxDB stand-in has.
+     */
+    private int rows = 1000;
+
+    /**
+     * How many fields every row of the InfluxDB stand-in has.
+     */
+    private int fields = 6;
+
+    /**
+     * How long the InfluxDB stand-in takes to answer a query.
+     */
+    private Duration latency = Duration.ofMillis(5);
+
+    /**
+     * How many messages the MQTT broker stand-in publishes once the requests are done, none to
+     * leave the subscriber disabled.
+     */
+    private int mqttMessages = 0;
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(Duration warmup) {
+        this.warmup = warmup;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public void setDuration(Duration duration) {
+        this.duration = duration;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(List<Endpoint> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public String getTimeSeriesQuery() {
+        return timeSeriesQuery;
+    }
+
+    public void setTimeSeriesQuery(String timeSeriesQuery) {
+        this.timeSeriesQuery = timeSeriesQuery;
+    }
+
+    public int getTenants() {
+        return tenants;
+    }
+
+    public void setTenants(int tenants) {
+        this.tenants = tenants;
+    }
+
+    public int getSensors() {
+        return sensors;
+    }
+
+    public void setSensors(int sensors) {
+        this.sensors = sensors;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public void setRows(int rows) {
+        this.rows = rows;
+    }
+
+    public int getFields() {
+        return fields;
+    }
+
+    public void setFields(int fields) {
+        this.fields = fields;
+    }
+
+    public Duration getLatency() {
+        return latency;
+    }
+
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    public int getMqttMessages() {
+        return mqttMessages;
+    }
+
+    public void setMqttMessages(int mqttMessages) {
+        this.mqttMessages = mqttMessages;
+    }
+
+    public enum Endpoint {
+
+        TIME_SERIES("time-series"),
+        LAST_VALUES("last-values"),
+        LAST_VALUE("last-value");
+
+        private final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        String path(String id, String timeSeriesQuery) {
+            switch (this) {
+                case TIME_SERIES:
+                    return "/timeseries/" + id + (timeSeriesQuery.isEmpty() ? "" : "?" + timeSeriesQuery);
+                case LAST_VALUES:
+                    return "/timeseries/lastvalues";
+                default:
+                    return "/timeseries/lastvalue/" + id;
+            }
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.iot.tsa.command;
 
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.data.influxdb.InfluxDBTemplate;
 import org.springframework.stereotype.Component;
 
 @Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
 public class DatabaseInitializerCommand implements CommandLineRunner {
 
     private final InfluxDBTemplate influxDBTemplate;
@@ -0,0 +1,139 @@
+package com.iot.tsa.command;
+
+import com.iot.tsa.config.RollupProperties;
+import com.iot.tsa.enums.TimeUnit;
+import com.iot.tsa.model.SensorData;
+import com.iot.tsa.repository.RollupTiers;
+import com.iot.tsa.util.db.Rollup;
+import org.influxdb.InfluxDBException;
+import org.influxdb.annotation.Measurement;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.QueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.influxdb.InfluxDBTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Fills every rollup tier that does not have a continuous query yet with the recent history,
+ * then creates its continuous query, off the startup thread. The continuous query marks a
+ * completed backfill: a backfill that fails is retried from its start, overwriting the buckets
+ * it already wrote, and a tier is only read from once it has one.
+ */
+@Component
+@ConditionalOnProperty(prefix = "tsa.rollup", name = "enabled", havingValue = "true")
+public class RollupInitializerCommand implements CommandLineRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RollupInitializerCommand.class);
+
+    private static final String MEASUREMENT_NAME = SensorData.class.getAnnotation(Measurement.class).name();
+
+    private final InfluxDBTemplate<?> influxDBTemplate;
+    private final RollupProperties properties;
+    private final RollupTiers tiers;
+    private final ScheduledExecutorService initializer;
+
+    public RollupInitializerCommand(InfluxDBTemplate<?> influxDBTemplate,
+                                    RollupProperties properties,
+                                    RollupTiers tiers) {
+        this.influxDBTemplate = influxDBTemplate;
+        this.properties = properties;
+        this.tiers = tiers;
+        this.initializer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rollup-initializer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void run(String... args) {
+        initializer.execute(this::initialize);
+    }
+
+    private void initialize() {
+        try {
+            String database = influxDBTemplate.getDatabase();
+            String retentionPolicy = influxDBTemplate.getRetentionPolicy();
+            Set<String> existing = continuousQueries(database);
+
+            for (TimeUnit unit : TimeUnit.values()) {
+                if (!existing.contains(Rollup.continuousQueryName(MEASUREMENT_NAME, unit))) {
+                    backfill(database, retentionPolicy, unit);
+                    execute(Rollup.createContinuousQuery(database, retentionPolicy, MEASUREMENT_NAME, unit),
+                            database);
+                    LOGGER.info("Created rollup {}", Rollup.table(MEASUREMENT_NAME, unit));
+                }
+                tiers.markReady(unit);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to initialize the rollups, retrying in {}", properties.getRetryInterval(), e);
+            initializer.schedule(this::initialize, properties.getRetryInterval().toMillis(),
+                    java.util.concurrent.TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Aggregates the history a chunk at a time, each chunk made of whole buckets. It starts on the
+     * first bucket boundary within the backfill period, a partial bucket would be written as if
+     * it were whole, and the last chunk has no end so points written meanwhile are not missed.
+     */
+    private void backfill(String database, String retentionPolicy, TimeUnit unit) {
+        long bucket = Rollup.bucket(unit).toMillis();
+        long chunk = Math.max((properties.getBackfillChunk().toMillis() + bucket - 1) / bucket, 1L) * bucket;
+        long now = System.currentTimeMillis();
+        long from = Math.floorDiv(now - properties.getBackfill().toMillis() + bucket - 1, bucket) * bucket;
+
+        for (; from < now; from += chunk) {
+            Long to = from + chunk < now ? Long.valueOf(from + chunk) : null;
+            execute(Rollup.backfill(database, retentionPolicy, MEASUREMENT_NAME, unit, from, to), database);
+        }
+    }
+
+    private Set<String> continuousQueries(String database) {
+        Set<String> names = new HashSet<>();
+        QueryResult result = execute("SHOW CONTINUOUS QUERIES", database);
+        for (QueryResult.Result queryResult : result.getResults()) {
+            if (queryResult.getSeries() == null) {
+                continue;
+            }
+            for (QueryResult.Series series : queryResult.getSeries()) {
+                int name = series.getColumns().indexOf("name");
+                if (!database.equals(series.getName()) || name < 0 || series.getValues() == null) {
+                    continue;
+                }
+                for (List<Object> row : series.getValues()) {
+                    names.add(String.valueOf(row.get(name)));
+                }
+            }
+        }
+        return names;
+    }
+
+    private QueryResult execute(String command, String database) {
+        QueryResult result = influxDBTemplate.getConnection().query(new Query(command, database));
+        if (result.hasError()) {
+            throw new InfluxDBException(result.getError());
+        }
+        for (QueryResult.Result statement : result.getResults()) {
+            if (statement.hasError()) {
+                throw new InfluxDBException(statement.getError());
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void close() {
+        initializer.shutdownNow();
+    }
+}
@@ -0,0 +1,117 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.admission")
+public class AdmissionProperties {
+
+    /**
+     * Limit the queries of every tenant to its budget.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Estimated points a tenant may read in a burst.
+     */
+    private long capacity = 10_000_000L;
+
+    /**
+     * Estimated points per second added back to the budget of a tenant.
+     */
+    private long refillRate = 1_000_000L;
+
+    /**
+     * Queries of a tenant running at the same time.
+     */
+    private int maxConcurrent = 8;
+
+    /**
+     * How long a query waits for budget or for a running query of its tenant to finish before it
+     * is rejected.
+     */
+    private Duration maxWait = Duration.ofSeconds(2);
+
+    /**
+     * Points per second a sensor is assumed to write, to estimate how many points a time range holds.
+     */
+    private double pointsPerSecond = 1.0;
+
+    /**
+     * Time range assumed for queries without a start.
+     */
+    private Duration defaultRange = Duration.ofDays(30);
+
+    /**
+     * Tenants without a query for this long forget their budget, it is full again anyway. A
+     * budget is kept as long as any query of its tenant runs.
+     */
+    private Duration expireAfterAccess = Duration.ofMinutes(10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity) {
+        this.capacity = capacity;
+    }
+
+    public long getRefillRate() {
+        return refillRate;
+    }
+
+    public void setRefillRate(long refillRate) {
+        this.refillRate = refillRate;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public double getPointsPerSecond() {
+        return pointsPerSecond;
+    }
+
+    public void setPointsPerSecond(double pointsPerSecond) {
+        this.pointsPerSecond = pointsPerSecond;
+    }
+
+    public Duration getDefaultRange() {
+        return defaultRange;
+    }
+
+    public void setDefaultRange(Duration defaultRange) {
+        this.defaultRange = defaultRange;
+    }
+
+    public Duration getExpireAfterAccess() {
+        return expireAfterAccess;
+    }
+
+    public void setExpireAfterAccess(Duration expireAfterAccess) {
+        this.expireAfterAccess = expireAfterAccess;
+    }
+}
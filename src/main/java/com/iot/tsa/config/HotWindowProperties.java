@@ -0,0 +1,82 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.hot-window")
+public class HotWindowProperties {
+
+    /**
+     * Keep the most recent points written through this instance compressed in memory and answer
+     * raw and <tt>group by time(...)</tt> queries of a sensor within that window without InfluxDB.
+     * It also needs {@link #singleWriter}.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Acknowledges that this instance is the only writer of the sensors it is queried for: no
+     * other instance, nor any client writing to InfluxDB directly, writes their points. The
+     * store answers from memory as if it held every point, so the points of another writer would
+     * silently be missing from the answers. Without it the store stays off even when enabled.
+     */
+    private boolean singleWriter = false;
+
+    /**
+     * How far back from now the points of every sensor are kept.
+     */
+    private Duration window = Duration.ofDays(1);
+
+    /**
+     * The span of time of the points compressed together, older points are dropped a block at a
+     * time.
+     */
+    private Duration blockDuration = Duration.ofHours(2);
+
+    /**
+     * Sensors kept at most, the points of further sensors are only in InfluxDB.
+     */
+    private int maxSeries = 10000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isSingleWriter() {
+        return singleWriter;
+    }
+
+    public void setSingleWriter(boolean singleWriter) {
+        this.singleWriter = singleWriter;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public Duration getBlockDuration() {
+        return blockDuration;
+    }
+
+    public void setBlockDuration(Duration blockDuration) {
+        this.blockDuration = blockDuration;
+    }
+
+    public int getMaxSeries() {
+        return maxSeries;
+    }
+
+    public void setMaxSeries(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+}
@@ -0,0 +1,78 @@
+package com.iot.tsa.config;
+
+import org.influxdb.InfluxDB;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.influxdb-client")
+public class InfluxDBClientProperties {
+
+    /**
+     * Format InfluxDB answers queries in. <tt>MSGPACK</tt> is smaller on the wire and decoded
+     * without parsing text, it needs InfluxDB 1.4 or later.
+     */
+    private InfluxDB.ResponseFormat responseFormat = InfluxDB.ResponseFormat.JSON;
+
+    /**
+     * Idle connections to InfluxDB kept open for the next queries.
+     */
+    private int maxIdleConnections = 16;
+
+    /**
+     * How long an idle connection is kept open.
+     */
+    private Duration keepAlive = Duration.ofMinutes(5);
+
+    /**
+     * Asynchronous requests, the streamed queries, running at the same time. Further ones wait.
+     */
+    private int maxRequests = 64;
+
+    /**
+     * Asynchronous requests running at the same time against InfluxDB, the only host.
+     */
+    private int maxRequestsPerHost = 64;
+
+    public InfluxDB.ResponseFormat getResponseFormat() {
+        return responseFormat;
+    }
+
+    public void setResponseFormat(InfluxDB.ResponseFormat responseFormat) {
+        this.responseFormat = responseFormat;
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    public Duration getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(Duration keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public void setMaxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+}
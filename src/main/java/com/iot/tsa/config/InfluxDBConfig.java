@@ -14,8 +14,9 @@ import org.springframework.data.influxdb.converter.PointConverter;
 @EnableConfigurationProperties(InfluxDBProperties.class)
 public class InfluxDBConfig {
     @Bean
-    public InfluxDBConnectionFactory connectionFactory(final InfluxDBProperties properties) {
-        return new InfluxDBConnectionFactory(properties);
+    public InfluxDBConnectionFactory connectionFactory(final InfluxDBProperties properties,
+                                                       final InfluxDBClientProperties clientProperties) {
+        return new TunedInfluxDBConnectionFactory(properties, clientProperties);
     }
 
     @Bean
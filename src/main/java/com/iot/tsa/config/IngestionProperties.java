@@ -0,0 +1,106 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.ingestion")
+public class IngestionProperties {
+
+    /**
+     * Points held in memory waiting to be written to InfluxDB, writes are rejected once it is full.
+     */
+    private int bufferCapacity = 50000;
+
+    /**
+     * Points written to InfluxDB per request, reaching it also triggers a flush.
+     */
+    private int batchSize = 5000;
+
+    /**
+     * Maximum time a point waits in the buffer.
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    /**
+     * Sent as Retry-After when the buffer is full.
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    /**
+     * How many times a batch InfluxDB failed to write is written again before its points are
+     * dropped. The flusher waits meanwhile, so the buffer fills and further writes are rejected.
+     */
+    private int writeRetries = 3;
+
+    /**
+     * How long to wait before writing a failed batch again, doubled after every further failure.
+     */
+    private Duration retryBackoff = Duration.ofMillis(500);
+
+    /**
+     * Keys of JSON payloads that are not measurements, skipped rather than stored as fields.
+     */
+    private Set<String> ignoredKeys = new HashSet<>(Collections.singletonList("token"));
+
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+
+    public void setBufferCapacity(int bufferCapacity) {
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public int getWriteRetries() {
+        return writeRetries;
+    }
+
+    public void setWriteRetries(int writeRetries) {
+        this.writeRetries = writeRetries;
+    }
+
+    public Duration getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(Duration retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    public Set<String> getIgnoredKeys() {
+        return ignoredKeys;
+    }
+
+    public void setIgnoredKeys(Set<String> ignoredKeys) {
+        this.ignoredKeys = ignoredKeys;
+    }
+}
@@ -0,0 +1,92 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.last-value-cache")
+public class LastValueCacheProperties {
+
+    /**
+     * Serve /lastvalues and /lastvalue/{id} from memory instead of querying InfluxDB every time.
+     */
+    private boolean enabled = true;
+
+    /**
+     * How old the cached values of a tenant may get before the next request refreshes them.
+     */
+    private Duration staleness = Duration.ofSeconds(5);
+
+    /**
+     * How far before the newest point read the next refresh starts reading, to pick up points
+     * written late or with a lagging device clock.
+     */
+    private Duration lateness = Duration.ofSeconds(30);
+
+    /**
+     * How often a tenant is loaded again with the full query rather than refreshed, dropping the
+     * sensors without points anymore and picking up points written later than the lateness.
+     */
+    private Duration rebuildInterval = Duration.ofMinutes(10);
+
+    /**
+     * Tenants cached at most, the ones asked for least often are dropped and loaded again on their
+     * next request.
+     */
+    private long maximumTenants = 10000;
+
+    /**
+     * How long the values of a tenant nobody asked for stay cached.
+     */
+    private Duration expireAfterAccess = Duration.ofMinutes(10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getStaleness() {
+        return staleness;
+    }
+
+    public void setStaleness(Duration staleness) {
+        this.staleness = staleness;
+    }
+
+    public Duration getLateness() {
+        return lateness;
+    }
+
+    public void setLateness(Duration lateness) {
+        this.lateness = lateness;
+    }
+
+    public Duration getRebuildInterval() {
+        return rebuildInterval;
+    }
+
+    public void setRebuildInterval(Duration rebuildInterval) {
+        this.rebuildInterval = rebuildInterval;
+    }
+
+    public long getMaximumTenants() {
+        return maximumTenants;
+    }
+
+    public void setMaximumTenants(long maximumTenants) {
+        this.maximumTenants = maximumTenants;
+    }
+
+    public Duration getExpireAfterAccess() {
+        return expireAfterAccess;
+    }
+
+    public void setExpireAfterAccess(Duration expireAfterAccess) {
+        this.expireAfterAccess = expireAfterAccess;
+    }
+}
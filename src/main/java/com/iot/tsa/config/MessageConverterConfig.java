@@ -0,0 +1,24 @@
+package com.iot.tsa.config;
+
+import com.iot.tsa.util.arrow.SensorDataColumnsArrowHttpMessageConverter;
+import com.iot.tsa.util.protobuf.SensorDataColumnsProtobufHttpMessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Converters added to the ones Spring Boot registers, which already include CBOR and Smile since
+ * their Jackson formats are on the classpath.
+ */
+@Configuration
+public class MessageConverterConfig {
+
+    @Bean
+    public SensorDataColumnsProtobufHttpMessageConverter sensorDataColumnsProtobufHttpMessageConverter() {
+        return new SensorDataColumnsProtobufHttpMessageConverter();
+    }
+
+    @Bean
+    public SensorDataColumnsArrowHttpMessageConverter sensorDataColumnsArrowHttpMessageConverter() {
+        return new SensorDataColumnsArrowHttpMessageConverter();
+    }
+}
@@ -0,0 +1,136 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.mqtt")
+public class MqttProperties {
+
+    /**
+     * Subscribe to the sensor topic and write what the devices publish to InfluxDB.
+     */
+    private boolean enabled = false;
+
+    private String url = "tcp://localhost:1883";
+
+    private String clientId = "iot-tsa";
+
+    private String username;
+
+    private String password;
+
+    private String topic = "/sensor";
+
+    private int qos = 1;
+
+    /**
+     * Messages received but not parsed yet. Once it is full the MQTT client stops acknowledging
+     * messages and the broker holds the rest.
+     */
+    private int queueCapacity = 10000;
+
+    private int parserThreads = 2;
+
+    /**
+     * How long a parsed message waits for room in the ingestion buffer before a warning is
+     * logged, it keeps waiting until there is room or the application shuts down.
+     */
+    private Duration offerTimeout = Duration.ofSeconds(10);
+
+    /**
+     * How long to wait before retrying the first connection to the broker, later ones are
+     * retried by the client itself.
+     */
+    private Duration connectRetryInterval = Duration.ofSeconds(5);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public int getQos() {
+        return qos;
+    }
+
+    public void setQos(int qos) {
+        this.qos = qos;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    public void setParserThreads(int parserThreads) {
+        this.parserThreads = parserThreads;
+    }
+
+    public Duration getOfferTimeout() {
+        return offerTimeout;
+    }
+
+    public void setOfferTimeout(Duration offerTimeout) {
+        this.offerTimeout = offerTimeout;
+    }
+
+    public Duration getConnectRetryInterval() {
+        return connectRetryInterval;
+    }
+
+    public void setConnectRetryInterval(Duration connectRetryInterval) {
+        this.connectRetryInterval = connectRetryInterval;
+    }
+}
@@ -0,0 +1,65 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.query-cache")
+public class QueryCacheProperties {
+
+    /**
+     * Keep the closed buckets of <tt>group by time(...)</tt> queries over a range relative to
+     * <tt>now()</tt>, like the shortcut links, and only query the buckets still open.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Cached series, one per tenant, sensor, select and interval.
+     */
+    private long maximumSize = 10000;
+
+    /**
+     * How long a series nobody asked for stays cached.
+     */
+    private Duration expireAfterAccess = Duration.ofMinutes(10);
+
+    /**
+     * How long after its end a bucket is still considered open, to pick up points written late
+     * or with a lagging device clock.
+     */
+    private Duration lateness = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getExpireAfterAccess() {
+        return expireAfterAccess;
+    }
+
+    public void setExpireAfterAccess(Duration expireAfterAccess) {
+        this.expireAfterAccess = expireAfterAccess;
+    }
+
+    public Duration getLateness() {
+        return lateness;
+    }
+
+    public void setLateness(Duration lateness) {
+        this.lateness = lateness;
+    }
+}
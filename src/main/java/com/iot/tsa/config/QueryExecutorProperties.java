@@ -0,0 +1,48 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.query-executor")
+public class QueryExecutorProperties {
+
+    /**
+     * Sub-queries run against InfluxDB at the same time, across all requests.
+     */
+    private int threads = 16;
+
+    /**
+     * Sub-queries waiting for a thread. Once it is full new requests are rejected with 503.
+     */
+    private int queueCapacity = 1000;
+
+    /**
+     * Sensors a single batch request may ask for.
+     */
+    private int maxSeries = 100;
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getMaxSeries() {
+        return maxSeries;
+    }
+
+    public void setMaxSeries(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+}
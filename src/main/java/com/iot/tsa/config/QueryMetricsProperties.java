@@ -0,0 +1,53 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.query-metrics")
+public class QueryMetricsProperties {
+
+    /**
+     * Time every stage of the queries.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Also time the query stages per tenant with <tt>tsa.tenant.query</tt>, every tenant of
+     * {@link #tenants} adds its own time series.
+     */
+    private boolean tenantTag = false;
+
+    /**
+     * The tenants timed on their own with {@link #tenantTag}, the tenant comes from a header any
+     * caller sets so every other one is tagged <tt>other</tt>.
+     */
+    private Set<String> tenants = new HashSet<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isTenantTag() {
+        return tenantTag;
+    }
+
+    public void setTenantTag(boolean tenantTag) {
+        this.tenantTag = tenantTag;
+    }
+
+    public Set<String> getTenants() {
+        return tenants;
+    }
+
+    public void setTenants(Set<String> tenants) {
+        this.tenants = tenants;
+    }
+}
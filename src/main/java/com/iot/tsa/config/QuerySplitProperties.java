@@ -0,0 +1,50 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.query-split")
+public class QuerySplitProperties {
+
+    /**
+     * Split wide time ranges into sub-ranges queried in parallel.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The most sub-ranges a query is split into.
+     */
+    private int maxParts = 4;
+
+    /**
+     * The narrowest a sub-range may be, narrower queries are not worth the extra round trips.
+     */
+    private Duration minRange = Duration.ofDays(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxParts() {
+        return maxParts;
+    }
+
+    public void setMaxParts(int maxParts) {
+        this.maxParts = maxParts;
+    }
+
+    public Duration getMinRange() {
+        return minRange;
+    }
+
+    public void setMinRange(Duration minRange) {
+        this.minRange = minRange;
+    }
+}
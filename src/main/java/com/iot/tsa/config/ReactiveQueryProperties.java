@@ -0,0 +1,50 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.reactive")
+public class ReactiveQueryProperties {
+
+    /**
+     * Serve <tt>/reactive/timeseries</tt>, whose queries wait for InfluxDB without holding a
+     * request thread.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Connections to InfluxDB open at the same time, further queries wait for one to be free.
+     */
+    private int maxConnections = 500;
+
+    /**
+     * The largest InfluxDB response, or chunk of a streamed one, held in memory.
+     */
+    private DataSize maxResponseSize = DataSize.ofMegabytes(64);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public DataSize getMaxResponseSize() {
+        return maxResponseSize;
+    }
+
+    public void setMaxResponseSize(DataSize maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+}
@@ -0,0 +1,65 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.rollup")
+public class RollupProperties {
+
+    /**
+     * Keep a pre-aggregated measurement per time unit with continuous queries and read
+     * <tt>group by time(...)</tt> queries of a whole tier bucket from it.
+     */
+    private boolean enabled = false;
+
+    /**
+     * How much raw history is aggregated into a tier before its continuous query is created.
+     */
+    private Duration backfill = Duration.ofDays(30);
+
+    /**
+     * The range of raw history aggregated by each backfill query, rounded up to whole buckets
+     * of the tier.
+     */
+    private Duration backfillChunk = Duration.ofDays(1);
+
+    /**
+     * How long to wait before retrying a backfill that failed, it starts over from its first chunk.
+     */
+    private Duration retryInterval = Duration.ofMinutes(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getBackfill() {
+        return backfill;
+    }
+
+    public void setBackfill(Duration backfill) {
+        this.backfill = backfill;
+    }
+
+    public Duration getBackfillChunk() {
+        return backfillChunk;
+    }
+
+    public void setBackfillChunk(Duration backfillChunk) {
+        this.backfillChunk = backfillChunk;
+    }
+
+    public Duration getRetryInterval() {
+        return retryInterval;
+    }
+
+    public void setRetryInterval(Duration retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+}
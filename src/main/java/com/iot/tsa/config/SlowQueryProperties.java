@@ -0,0 +1,63 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.slow-query")
+public class SlowQueryProperties {
+
+    /**
+     * Record the queries slower than the threshold.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Queries taking at least this long, from building the InfluxQL to mapping the result, are recorded.
+     */
+    private Duration threshold = Duration.ofSeconds(1);
+
+    /**
+     * The most recent slow queries kept, older ones are overwritten.
+     */
+    private int capacity = 256;
+
+    /**
+     * Also log every slow query.
+     */
+    private boolean log = false;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public boolean isLog() {
+        return log;
+    }
+
+    public void setLog(boolean log) {
+        this.log = log;
+    }
+}
@@ -0,0 +1,35 @@
+package com.iot.tsa.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "tsa.stream")
+public class StreamProperties {
+
+    /**
+     * Number of points InfluxDB sends per chunk.
+     */
+    private int chunkSize = 5000;
+
+    /**
+     * Chunks buffered between InfluxDB and the HTTP response before reading from InfluxDB blocks.
+     */
+    private int maxPendingChunks = 4;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getMaxPendingChunks() {
+        return maxPendingChunks;
+    }
+
+    public void setMaxPendingChunks(int maxPendingChunks) {
+        this.maxPendingChunks = maxPendingChunks;
+    }
+}
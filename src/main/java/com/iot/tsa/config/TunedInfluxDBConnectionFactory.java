@@ -0,0 +1,63 @@
+package com.iot.tsa.config;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDBFactory;
+import org.springframework.data.influxdb.InfluxDBConnectionFactory;
+import org.springframework.data.influxdb.InfluxDBProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InfluxDBConnectionFactory} whose connection uses the pool, dispatcher limits and response
+ * format of {@link InfluxDBClientProperties}, instead of the OkHttp defaults and JSON.
+ */
+public class TunedInfluxDBConnectionFactory extends InfluxDBConnectionFactory {
+
+    private final InfluxDBClientProperties clientProperties;
+    private volatile InfluxDB connection;
+
+    public TunedInfluxDBConnectionFactory(InfluxDBProperties properties, InfluxDBClientProperties clientProperties) {
+        super(properties);
+        this.clientProperties = clientProperties;
+    }
+
+    @Override
+    public InfluxDB getConnection() {
+        InfluxDB connection = this.connection;
+        if (connection == null) {
+            synchronized (this) {
+                connection = this.connection;
+                if (connection == null) {
+                    this.connection = connection = connect();
+                }
+            }
+        }
+        return connection;
+    }
+
+    private InfluxDB connect() {
+        InfluxDBProperties properties = getProperties();
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(clientProperties.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(clientProperties.getMaxRequestsPerHost());
+
+        OkHttpClient.Builder client = new OkHttpClient.Builder()
+                .connectTimeout(properties.getConnectTimeout(), TimeUnit.SECONDS)
+                .writeTimeout(properties.getWriteTimeout(), TimeUnit.SECONDS)
+                .readTimeout(properties.getReadTimeout(), TimeUnit.SECONDS)
+                .connectionPool(new ConnectionPool(clientProperties.getMaxIdleConnections(),
+                        clientProperties.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher);
+
+        InfluxDB connection = InfluxDBFactory.connect(properties.getUrl(), properties.getUsername(),
+                properties.getPassword(), client, clientProperties.getResponseFormat());
+        if (properties.isGzip()) {
+            connection.enableGzip();
+        }
+        return connection;
+    }
+}
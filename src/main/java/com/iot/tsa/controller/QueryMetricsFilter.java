@@ -0,0 +1,162 @@
+package com.iot.tsa.controller;
+
+import com.iot.tsa.enums.TimeUnit;
+import com.iot.tsa.exception.InvalidQueryException;
+import com.iot.tsa.repository.QueryMetrics;
+import com.iot.tsa.util.db.SelectExpression;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Times the serialization of the time series responses and counts their bytes, see
+ * {@link QueryMetrics}. The serialization starts when the controller has returned the resource,
+ * which {@link SerializationStart} marks right before the body is written, and ends when the
+ * request leaves this filter. Streamed responses are written after that and are not measured.
+ */
+@Component
+public class QueryMetricsFilter extends OncePerRequestFilter {
+
+    private static final String SERIALIZATION_START = QueryMetricsFilter.class.getName() + ".serializationStart";
+    private static final String PATH = "/timeseries";
+
+    private final QueryMetrics queryMetrics;
+
+    public QueryMetricsFilter(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !queryMetrics.isEnabled()
+                || !request.getRequestURI().startsWith(request.getContextPath() + PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        CountingResponse countingResponse = new CountingResponse(response);
+        filterChain.doFilter(request, countingResponse);
+
+        Object start = request.getAttribute(SERIALIZATION_START);
+        Object endpoint = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (start == null || endpoint == null || request.isAsyncStarted()) {
+            return;
+        }
+        Tags tags = tags(request);
+        queryMetrics.render(QueryMetrics.SERIALIZE, endpoint.toString(), tags, (Long) start);
+        queryMetrics.response(endpoint.toString(), tags, countingResponse.bytes);
+    }
+
+    private Tags tags(HttpServletRequest request) {
+        TimeUnit intervalUnit = null;
+        String unit = request.getParameter("intervalUnit");
+        if (unit != null) {
+            try {
+                intervalUnit = TimeUnit.valueOf(unit);
+            } catch (IllegalArgumentException e) {
+                // rejected by the controller, never serialized
+            }
+        }
+        List<SelectExpression> select;
+        try {
+            select = SelectExpression.parse(request.getParameterValues("selectCriteria"));
+        } catch (InvalidQueryException e) {
+            select = null;
+        }
+        return queryMetrics.tags(request.getHeader("X-TenantId"), intervalUnit, select);
+    }
+
+    /**
+     * Marks when the controller has returned, right before the body is serialized.
+     */
+    @ControllerAdvice(assignableTypes = SensorDataController.class)
+    static class SerializationStart implements ResponseBodyAdvice<Object> {
+
+        @Override
+        public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+            return true;
+        }
+
+        @Override
+        public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                      Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                      ServerHttpRequest request, ServerHttpResponse response) {
+            if (request instanceof ServletServerHttpRequest) {
+                ((ServletServerHttpRequest) request).getServletRequest()
+                        .setAttribute(SERIALIZATION_START, System.nanoTime());
+            }
+            return body;
+        }
+    }
+
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+
+        private long bytes;
+        private ServletOutputStream outputStream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        delegate.setWriteListener(writeListener);
+                    }
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        bytes++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        bytes += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+                };
+            }
+            return outputStream;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.iot.tsa.controller;
+
+import com.iot.tsa.exception.QueryThrottledException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Over budget queries, blocking or reactive, are rejected with the time the tenant should retry
+ * after, like writes rejected by a full ingestion buffer.
+ */
+@RestControllerAdvice(assignableTypes = {SensorDataController.class, ReactiveSensorDataController.class})
+public class QueryThrottledExceptionHandler {
+
+    @ExceptionHandler(QueryThrottledException.class)
+    public ResponseEntity<Void> handleQueryThrottled(QueryThrottledException e) {
+        long seconds = (e.getRetryAfter().toMillis() + 999L) / 1000L;
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1L, seconds)))
+                .build();
+    }
+}
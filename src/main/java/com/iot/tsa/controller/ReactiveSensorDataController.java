@@ -0,0 +1,164 @@
+package com.iot.tsa.controller;
+
+import com.iot.tsa.enums.Downsampling;
+import com.iot.tsa.enums.TimeUnit;
+import com.iot.tsa.model.LastSensorsDataResource;
+import com.iot.tsa.model.SensorData;
+import com.iot.tsa.model.SensorDataResource;
+import com.iot.tsa.model.SensorsDataResource;
+import com.iot.tsa.repository.QueryMetrics;
+import com.iot.tsa.service.QueryAdmissionControl;
+import com.iot.tsa.service.ReactiveSensorDataService;
+import com.iot.tsa.util.db.QueryCriteria;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * The endpoints of {@link SensorDataController} whose queries wait for InfluxDB without holding
+ * a request thread: the handlers return as soon as the query is sent, and the response is written
+ * once InfluxDB answered.
+ */
+@RestController
+@RequestMapping("/reactive/timeseries")
+@ConditionalOnProperty(prefix = "tsa.reactive", name = "enabled", havingValue = "true")
+public class ReactiveSensorDataController {
+
+
+    private static final String X_TENANT_ID = "X-TenantId";
+
+    static final String TIME_SERIES = "/reactive/timeseries/{id}";
+
+    private final ReactiveSensorDataService service;
+    private final QueryMetrics queryMetrics;
+
+    public ReactiveSensorDataController(ReactiveSensorDataService service,
+                                        QueryMetrics queryMetrics) {
+        this.service = service;
+        this.queryMetrics = queryMetrics;
+    }
+
+    @GetMapping("/{id}")
+    public Mono<SensorsDataResource> findAllByIdAndTenantId(HttpServletRequest request,
+                                                            @RequestHeader(X_TENANT_ID) String tenantId,
+                                                            @PathVariable String id,
+                                                            @RequestParam(required = false) String from,
+                                                            @RequestParam(required = false) String to,
+                                                            @RequestParam(required = false) String[] selectCriteria,
+                                                            @RequestParam(required = false) Long intervalValue,
+                                                            @RequestParam(required = false) TimeUnit intervalUnit,
+                                                            @RequestParam(required = false) Integer maxPoints,
+                                                            @RequestParam(required = false) Downsampling downsampling) {
+
+        QueryCriteria criteria = new QueryCriteria.Builder()
+                .id(id)
+                .tenantId(tenantId)
+                .selectCriteria(selectCriteria)
+                .intervalValue(intervalValue)
+                .intervalUnit(intervalUnit)
+                .from(from)
+                .to(to)
+                .build();
+
+        return service.findAllByCriteria(criteria, maxPoints, downsampling)
+                .collectList()
+                .map(data -> withRequest(request, () -> {
+                    long start = System.nanoTime();
+                    List<SensorDataResource> ret =
+                            data.stream()
+                                    .map(sensorData ->
+                                            new SensorDataResource(
+                                                    sensorData,
+                                                    sensorData.getTime(),
+                                                    tenantId, id, selectCriteria,
+                                                    intervalValue, intervalUnit
+                                            )
+                                    )
+                                    .collect(Collectors.toList());
+
+                    SensorsDataResource resource = new SensorsDataResource(ret, tenantId, id, from, to,
+                            selectCriteria, intervalValue, intervalUnit, maxPoints, downsampling);
+                    queryMetrics.render(QueryMetrics.WRAP, TIME_SERIES, queryMetrics.tags(criteria), start);
+                    return resource;
+                }));
+
+    }
+
+    /**
+     * The points as a stream of JSON documents, written as the chunks of InfluxDB are mapped.
+     */
+    @GetMapping(value = "/{id}/stream", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Flux<SensorData> streamAllByIdAndTenantId(@RequestHeader(X_TENANT_ID) String tenantId,
+                                                     @PathVariable String id,
+                                                     @RequestParam(required = false) String from,
+                                                     @RequestParam(required = false) String to,
+                                                     @RequestParam(required = false) String[] selectCriteria,
+                                                     @RequestParam(required = false) Long intervalValue,
+                                                     @RequestParam(required = false) TimeUnit intervalUnit) {
+
+        QueryCriteria criteria = new QueryCriteria.Builder()
+                .id(id)
+                .tenantId(tenantId)
+                .selectCriteria(selectCriteria)
+                .intervalValue(intervalValue)
+                .intervalUnit(intervalUnit)
+                .from(from)
+                .to(to)
+                .build();
+
+        // admitted before the response is committed, an over budget query still gets its 429
+        QueryAdmissionControl.Permit admission = service.admit(criteria);
+        return Flux.using(() -> admission, permit -> service.streamAllByCriteria(criteria),
+                QueryAdmissionControl.Permit::close);
+
+    }
+
+    @GetMapping("/lastvalues")
+    public Mono<LastSensorsDataResource> findAllLastValueByTenantId(HttpServletRequest request,
+                                                                    @RequestHeader(X_TENANT_ID) String tenantId) {
+
+        return service.findAllLastValueByTenantId(tenantId)
+                .collectList()
+                .map(data -> withRequest(request, () -> new LastSensorsDataResource(data, tenantId)));
+
+
+    }
+
+    @GetMapping("/lastvalue/{id}")
+    public Mono<LastSensorsDataResource> findAllLastValueByTenantIdAndId(
+            HttpServletRequest request,
+            @RequestHeader(X_TENANT_ID) String tenantId,
+            @PathVariable String id) {
+
+        return service.findAllLastValueByTenantIdAndId(tenantId, id)
+                .collectList()
+                .map(data -> withRequest(request, () -> new LastSensorsDataResource(data, tenantId, id)));
+
+
+    }
+
+    /**
+     * Builds a resource on the thread the query completed on. The links are relative to the
+     * request, which is not bound to that thread, and whose attributes were closed when the
+     * handler returned.
+     */
+    private static <T> T withRequest(HttpServletRequest request, Supplier<T> resource) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            return resource.get();
+        } finally {
+            RequestContextHolder.setRequestAttributes(attributes);
+        }
+    }
+}
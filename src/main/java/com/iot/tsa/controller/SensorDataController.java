@@ -1,13 +1,25 @@
 package com.iot.tsa.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.tsa.enums.Downsampling;
 import com.iot.tsa.enums.TimeUnit;
+import com.iot.tsa.model.BatchSensorsDataResource;
+import com.iot.tsa.model.CompactSensorsDataResource;
 import com.iot.tsa.model.LastSensorsDataResource;
 import com.iot.tsa.model.SensorData;
+import com.iot.tsa.model.SensorDataColumns;
 import com.iot.tsa.model.SensorDataResource;
 import com.iot.tsa.model.SensorsDataResource;
+import com.iot.tsa.repository.QueryMetrics;
+import com.iot.tsa.service.QueryAdmissionControl;
 import com.iot.tsa.service.SensorDataService;
+import com.iot.tsa.util.arrow.SensorDataColumnsArrowHttpMessageConverter;
 import com.iot.tsa.util.db.QueryCriteria;
+import com.iot.tsa.util.protobuf.SensorDataColumnsProtobufHttpMessageConverter;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -18,10 +30,22 @@ public class SensorDataController {
 
 
     private static final String X_TENANT_ID = "X-TenantId";
+    private static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    static final String TIME_SERIES = "/timeseries/{id}";
+    static final String BATCH = "/timeseries";
+    static final String COMPACT = "/timeseries/{id}/compact";
+
     private final SensorDataService service;
+    private final ObjectMapper objectMapper;
+    private final QueryMetrics queryMetrics;
 
-    public SensorDataController(SensorDataService service) {
+    public SensorDataController(SensorDataService service,
+                                ObjectMapper objectMapper,
+                                QueryMetrics queryMetrics) {
         this.service = service;
+        this.objectMapper = objectMapper;
+        this.queryMetrics = queryMetrics;
     }
 
     @GetMapping("/{id}")
@@ -31,7 +55,9 @@ public class SensorDataController {
                                                       @RequestParam(required = false) String to,
                                                       @RequestParam(required = false) String[] selectCriteria,
                                                       @RequestParam(required = false) Long intervalValue,
-                                                      @RequestParam(required = false) TimeUnit intervalUnit) {
+                                                      @RequestParam(required = false) TimeUnit intervalUnit,
+                                                      @RequestParam(required = false) Integer maxPoints,
+                                                      @RequestParam(required = false) Downsampling downsampling) {
 
         QueryCriteria criteria = new QueryCriteria.Builder()
                 .id(id)
@@ -43,8 +69,9 @@ public class SensorDataController {
                 .to(to)
                 .build();
 
-        List<SensorData> data = service.findAllByCriteria(criteria);
+        List<SensorData> data = service.findAllByCriteria(criteria, maxPoints, downsampling);
 
+        long start = System.nanoTime();
         List<SensorDataResource> ret =
                 data.stream()
                         .map(sensorData ->
@@ -57,7 +84,144 @@ public class SensorDataController {
                         )
                         .collect(Collectors.toList());
 
-        return new SensorsDataResource(ret, tenantId, id, from, to, selectCriteria, intervalValue, intervalUnit);
+        SensorsDataResource resource = new SensorsDataResource(ret, tenantId, id, from, to, selectCriteria,
+                intervalValue, intervalUnit, maxPoints, downsampling);
+        queryMetrics.render(QueryMetrics.WRAP, TIME_SERIES, queryMetrics.tags(criteria), start);
+        return resource;
+
+    }
+
+    /**
+     * The binary representations of {@link #findAllByIdAndTenantId}, negotiated with
+     * <tt>Accept</tt>. They encode the columns of {@link #findCompactByIdAndTenantId}, which are
+     * much smaller than a resource per point: CBOR and Smile the compact document, Protobuf the
+     * <tt>Series</tt> message of <tt>sensor_data.proto</tt>, Arrow an IPC stream of the columns.
+     */
+    @GetMapping(value = "/{id}", produces = {MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE,
+            SensorDataColumnsProtobufHttpMessageConverter.APPLICATION_PROTOBUF_VALUE,
+            SensorDataColumnsArrowHttpMessageConverter.APPLICATION_ARROW_STREAM_VALUE})
+    public CompactSensorsDataResource findBinaryByIdAndTenantId(@RequestHeader(X_TENANT_ID) String tenantId,
+                                                                @PathVariable String id,
+                                                                @RequestParam(required = false) String from,
+                                                                @RequestParam(required = false) String to,
+                                                                @RequestParam(required = false) String[] selectCriteria,
+                                                                @RequestParam(required = false) Long intervalValue,
+                                                                @RequestParam(required = false) TimeUnit intervalUnit,
+                                                                @RequestParam(required = false) Integer maxPoints,
+                                                                @RequestParam(required = false) Downsampling downsampling) {
+
+        return findCompactByIdAndTenantId(tenantId, id, from, to, selectCriteria, intervalValue, intervalUnit,
+                maxPoints, downsampling);
+
+    }
+
+    @GetMapping
+    public BatchSensorsDataResource findAllByIdsAndTenantId(@RequestHeader(X_TENANT_ID) String tenantId,
+                                                            @RequestParam(required = false) String[] ids,
+                                                            @RequestParam(required = false) String from,
+                                                            @RequestParam(required = false) String to,
+                                                            @RequestParam(required = false) String[] selectCriteria,
+                                                            @RequestParam(required = false) Long intervalValue,
+                                                            @RequestParam(required = false) TimeUnit intervalUnit,
+                                                            @RequestParam(required = false) Integer maxPoints,
+                                                            @RequestParam(required = false) Downsampling downsampling) {
+
+        QueryCriteria criteria = new QueryCriteria.Builder()
+                .tenantId(tenantId)
+                .selectCriteria(selectCriteria)
+                .intervalValue(intervalValue)
+                .intervalUnit(intervalUnit)
+                .from(from)
+                .to(to)
+                .build();
+
+        List<SensorData> data = service.findAllByIdsAndCriteria(ids, criteria, maxPoints, downsampling);
+
+        long start = System.nanoTime();
+        List<SensorDataResource> ret =
+                data.stream()
+                        .map(sensorData ->
+                                new SensorDataResource(
+                                        sensorData,
+                                        sensorData.getTime(),
+                                        tenantId, String.valueOf(sensorData.getExtraFields().get("id")),
+                                        selectCriteria, intervalValue, intervalUnit
+                                )
+                        )
+                        .collect(Collectors.toList());
+
+        BatchSensorsDataResource resource = new BatchSensorsDataResource(ret, tenantId, ids, from, to,
+                selectCriteria, intervalValue, intervalUnit, maxPoints, downsampling);
+        queryMetrics.render(QueryMetrics.WRAP, BATCH, queryMetrics.tags(criteria), start);
+        return resource;
+
+    }
+
+    @GetMapping("/{id}/compact")
+    public CompactSensorsDataResource findCompactByIdAndTenantId(@RequestHeader(X_TENANT_ID) String tenantId,
+                                                                 @PathVariable String id,
+                                                                 @RequestParam(required = false) String from,
+                                                                 @RequestParam(required = false) String to,
+                                                                 @RequestParam(required = false) String[] selectCriteria,
+                                                                 @RequestParam(required = false) Long intervalValue,
+                                                                 @RequestParam(required = false) TimeUnit intervalUnit,
+                                                                 @RequestParam(required = false) Integer maxPoints,
+                                                                 @RequestParam(required = false) Downsampling downsampling) {
+
+        QueryCriteria criteria = new QueryCriteria.Builder()
+                .id(id)
+                .tenantId(tenantId)
+                .selectCriteria(selectCriteria)
+                .intervalValue(intervalValue)
+                .intervalUnit(intervalUnit)
+                .from(from)
+                .to(to)
+                .build();
+
+        SensorDataColumns columns = service.findColumnsByCriteria(criteria, maxPoints, downsampling);
+
+        long start = System.nanoTime();
+        CompactSensorsDataResource resource = new CompactSensorsDataResource(columns,
+                tenantId, id, from, to, selectCriteria, intervalValue, intervalUnit, maxPoints, downsampling);
+        queryMetrics.render(QueryMetrics.WRAP, COMPACT, queryMetrics.tags(criteria), start);
+        return resource;
+
+    }
+
+    @GetMapping(value = "/{id}/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody streamAllByIdAndTenantId(@RequestHeader(X_TENANT_ID) String tenantId,
+                                                          @PathVariable String id,
+                                                          @RequestParam(required = false) String from,
+                                                          @RequestParam(required = false) String to,
+                                                          @RequestParam(required = false) String[] selectCriteria,
+                                                          @RequestParam(required = false) Long intervalValue,
+                                                          @RequestParam(required = false) TimeUnit intervalUnit) {
+
+        QueryCriteria criteria = new QueryCriteria.Builder()
+                .id(id)
+                .tenantId(tenantId)
+                .selectCriteria(selectCriteria)
+                .intervalValue(intervalValue)
+                .intervalUnit(intervalUnit)
+                .from(from)
+                .to(to)
+                .build();
+
+        // admitted before the response is committed, an over budget query still gets its 429
+        QueryAdmissionControl.Permit admission = service.admit(criteria);
+        return outputStream -> {
+            try (QueryAdmissionControl.Permit permit = admission;
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                service.streamAllByCriteria(criteria, chunk -> {
+                    for (SensorData sensorData : chunk) {
+                        generator.writeObject(sensorData);
+                    }
+                    generator.flush();
+                });
+                generator.writeEndArray();
+            }
+        };
 
     }
 
@@ -80,5 +244,4 @@ public class SensorDataController {
 
 
     }
-
 }
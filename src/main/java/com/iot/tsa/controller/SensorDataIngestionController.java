@@ -0,0 +1,93 @@
+package com.iot.tsa.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.tsa.exception.InvalidPayloadException;
+import com.iot.tsa.service.SensorDataIngestionService;
+import com.iot.tsa.config.IngestionProperties;
+import com.iot.tsa.util.db.LineProtocolParser;
+import com.iot.tsa.util.json.SensorDataPointParser;
+import org.influxdb.dto.Point;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/timeseries")
+public class SensorDataIngestionController {
+
+    private static final String X_TENANT_ID = "X-TenantId";
+    private final SensorDataIngestionService service;
+    private final IngestionProperties properties;
+    private final SensorDataPointParser jsonParser;
+    private final LineProtocolParser lineProtocolParser;
+
+    public SensorDataIngestionController(SensorDataIngestionService service,
+                                         IngestionProperties properties,
+                                         ObjectMapper objectMapper) {
+        this.service = service;
+        this.properties = properties;
+        this.jsonParser = new SensorDataPointParser(objectMapper.getFactory(), properties.getIgnoredKeys());
+        this.lineProtocolParser = new LineProtocolParser(SensorDataPointParser.MEASUREMENT);
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> write(@RequestHeader(X_TENANT_ID) String tenantId,
+                                      InputStream body) throws IOException {
+
+        return enqueue(jsonParser.parse(body, tenantId));
+
+    }
+
+    @PostMapping(consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<Void> writeLineProtocol(@RequestHeader(X_TENANT_ID) String tenantId,
+                                                  @RequestBody String body,
+                                                  @RequestParam(defaultValue = "n") String precision) {
+
+        return enqueue(lineProtocolParser.parse(body, tenantId, toTimeUnit(precision)));
+
+    }
+
+    private ResponseEntity<Void> enqueue(List<Point> points) {
+        if (!service.fits(points.size())) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        if (!service.offer(points)) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER,
+                            String.valueOf(Math.max(1L, properties.getRetryAfter().getSeconds())))
+                    .build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * Same precision names as the InfluxDB <tt>/write</tt> endpoint.
+     */
+    private static TimeUnit toTimeUnit(String precision) {
+        switch (precision) {
+            case "n":
+            case "ns":
+                return TimeUnit.NANOSECONDS;
+            case "u":
+            case "us":
+                return TimeUnit.MICROSECONDS;
+            case "ms":
+                return TimeUnit.MILLISECONDS;
+            case "s":
+                return TimeUnit.SECONDS;
+            case "m":
+                return TimeUnit.MINUTES;
+            case "h":
+                return TimeUnit.HOURS;
+            default:
+                throw new InvalidPayloadException("Unknown precision '" + precision + "'");
+        }
+    }
+}
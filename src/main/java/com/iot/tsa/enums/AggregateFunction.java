@@ -0,0 +1,59 @@
+package com.iot.tsa.enums;
+
+public enum AggregateFunction {
+
+    MEAN("mean", false, 1),
+    MEDIAN("median", false, 4),
+    MIN("min", false, 1),
+    MAX("max", false, 1),
+    FIRST("first", false, 1),
+    LAST("last", false, 1),
+    COUNT("count", false, 1),
+    SUM("sum", false, 1),
+    PERCENTILE("percentile", true, 4),
+    STDDEV("stddev", false, 2);
+
+    private final String function;
+    private final boolean argument;
+    private final int cost;
+
+    AggregateFunction(String function, boolean argument, int cost) {
+        this.function = function;
+        this.argument = argument;
+        this.cost = cost;
+    }
+
+    /**
+     * The InfluxQL name of the function.
+     */
+    public String getFunction() {
+        return function;
+    }
+
+    /**
+     * Whether the function takes a number after the field, like <tt>percentile(*, 95)</tt>.
+     */
+    public boolean hasArgument() {
+        return argument;
+    }
+
+    /**
+     * What computing the function costs relative to reading the points, functions that sort
+     * every bucket cost more.
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * @return the function with the given InfluxQL name, ignoring case, <tt>null</tt> when there is none
+     */
+    public static AggregateFunction of(String function) {
+        for (AggregateFunction value : values()) {
+            if (value.function.equalsIgnoreCase(function)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,14 @@
+package com.iot.tsa.enums;
+
+public enum Downsampling {
+
+    /**
+     * Largest-Triangle-Three-Buckets, keeps the visual shape of the series.
+     */
+    LTTB,
+
+    /**
+     * Minimum and maximum of every field per bucket, keeps the peaks.
+     */
+    MIN_MAX
+}
@@ -0,0 +1,16 @@
+package com.iot.tsa.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidPayloadException extends RuntimeException {
+
+    public InvalidPayloadException(String message) {
+        super(message);
+    }
+
+    public InvalidPayloadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,24 @@
+package com.iot.tsa.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class QueryThrottledException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public QueryThrottledException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * When the tenant can expect the query to be admitted.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
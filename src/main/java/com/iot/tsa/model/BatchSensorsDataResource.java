@@ -0,0 +1,28 @@
+package com.iot.tsa.model;
+
+import com.iot.tsa.enums.Downsampling;
+import com.iot.tsa.enums.TimeUnit;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.IanaLinkRelations;
+
+import java.util.List;
+
+public class BatchSensorsDataResource extends CollectionModel<SensorDataResource> {
+
+    public BatchSensorsDataResource(List<SensorDataResource> data,
+                                    String tenantId,
+                                    String[] ids,
+                                    String from,
+                                    String to,
+                                    String[] selectCriteria,
+                                    Long intervalValue,
+                                    TimeUnit intervalUnit,
+                                    Integer maxPoints,
+                                    Downsampling downsampling) {
+
+        super(data,
+                SensorDataLinks.batch(IanaLinkRelations.SELF, ids, from, to, selectCriteria,
+                        intervalValue, intervalUnit, maxPoints, downsampling));
+
+    }
+}
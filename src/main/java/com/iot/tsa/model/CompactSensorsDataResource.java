@@ -0,0 +1,36 @@
+package com.iot.tsa.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.iot.tsa.enums.Downsampling;
+import com.iot.tsa.enums.TimeUnit;
+import com.iot.tsa.util.json.SensorDataColumnsSerializer;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.RepresentationModel;
+
+public class CompactSensorsDataResource extends RepresentationModel<CompactSensorsDataResource> {
+
+    private final SensorDataColumns data;
+
+    public CompactSensorsDataResource(SensorDataColumns data,
+                                      String tenantId,
+                                      String id,
+                                      String from,
+                                      String to,
+                                      String[] selectCriteria,
+                                      Long intervalValue,
+                                      TimeUnit intervalUnit,
+                                      Integer maxPoints,
+                                      Downsampling downsampling) {
+        this.data = data;
+
+        this.add(SensorDataLinks.compact(IanaLinkRelations.SELF, id, from, to, selectCriteria,
+                intervalValue, intervalUnit, maxPoints, downsampling));
+
+        this.add(SensorDataLinks.compactShortcuts(id));
+    }
+
+    @JsonSerialize(using = SensorDataColumnsSerializer.class)
+    public SensorDataColumns getData() {
+        return data;
+    }
+}
@@ -0,0 +1,191 @@
+package com.iot.tsa.model;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Columnar representation of a {@link SensorData} query result: one shared <tt>long[]</tt> of
+ * epoch millis and one <tt>double[]</tt> per field, indexed by the shared column dictionary.
+ * Booleans are stored as 1 and 0, missing and other non numeric values as {@link Double#NaN}.
+ * The {@link #TAGS} and the fields holding strings but no number are left out, rather than
+ * showing up as columns of nulls.
+ */
+public class SensorDataColumns {
+
+    /**
+     * The tags of a sensor, which InfluxDB returns as columns of a raw query along the fields.
+     */
+    public static final Set<String> TAGS
+            = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("tenantId", "id")));
+
+    private final String[] columns;
+    private final long[] times;
+    private final double[][] values;
+
+    public SensorDataColumns(String[] columns, long[] times, double[][] values) {
+        if (columns.length != values.length) {
+            throw new IllegalArgumentException("Expected " + columns.length + " value columns, got " + values.length);
+        }
+        for (double[] column : values) {
+            if (column.length != times.length) {
+                throw new IllegalArgumentException("Every value column must have " + times.length + " rows");
+            }
+        }
+        this.columns = columns;
+        this.times = times;
+        this.values = values;
+    }
+
+    public static SensorDataColumns empty() {
+        return new SensorDataColumns(new String[0], new long[0], new double[0][]);
+    }
+
+    /**
+     * The columnar form of already mapped rows, with a column per field of any row in name order.
+     */
+    public static SensorDataColumns of(List<SensorData> data) {
+        Set<String> names = new TreeSet<>();
+        Set<String> numeric = new HashSet<>();
+        Set<String> text = new HashSet<>();
+        for (SensorData sensorData : data) {
+            if (sensorData.getExtraFields() != null) {
+                for (Map.Entry<String, Object> field : sensorData.getExtraFields().entrySet()) {
+                    names.add(field.getKey());
+                    if (isNumeric(field.getValue())) {
+                        numeric.add(field.getKey());
+                    } else if (field.getValue() != null) {
+                        text.add(field.getKey());
+                    }
+                }
+            }
+        }
+        names.removeAll(TAGS);
+        text.removeAll(numeric);
+        names.removeAll(text);
+        String[] columns = names.toArray(new String[0]);
+        long[] times = new long[data.size()];
+        double[][] values = new double[columns.length][data.size()];
+        for (int row = 0; row < times.length; row++) {
+            SensorData sensorData = data.get(row);
+            times[row] = sensorData.getTime() != null ? sensorData.getTime().toEpochMilli() : 0L;
+            for (int column = 0; column < columns.length; column++) {
+                Object value = sensorData.getExtraFields() != null
+                        ? sensorData.getExtraFields().get(columns[column]) : null;
+                values[column][row] = toDouble(value);
+            }
+        }
+        return new SensorDataColumns(columns, times, values);
+    }
+
+    /**
+     * Whether a value is stored as a number, a {@link Number} or a {@link Boolean}.
+     */
+    public static boolean isNumeric(Object value) {
+        return value instanceof Number || value instanceof Boolean;
+    }
+
+    public static double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1.0 : 0.0;
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Appends the rows of consecutive results, the columns are the union of theirs.
+     */
+    public static SensorDataColumns concat(List<SensorDataColumns> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        Set<String> names = new LinkedHashSet<>();
+        int size = 0;
+        for (SensorDataColumns part : parts) {
+            names.addAll(Arrays.asList(part.columns));
+            size += part.size();
+        }
+        String[] columns = names.toArray(new String[0]);
+        long[] times = new long[size];
+        double[][] values = new double[columns.length][size];
+        int offset = 0;
+        for (SensorDataColumns part : parts) {
+            System.arraycopy(part.times, 0, times, offset, part.size());
+            for (int column = 0; column < columns.length; column++) {
+                int index = part.indexOf(columns[column]);
+                if (index >= 0) {
+                    System.arraycopy(part.values[index], 0, values[column], offset, part.size());
+                } else {
+                    Arrays.fill(values[column], offset, offset + part.size(), Double.NaN);
+                }
+            }
+            offset += part.size();
+        }
+        return new SensorDataColumns(columns, times, values);
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    public int indexOf(String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public long[] getTimes() {
+        return times;
+    }
+
+    public double[] getValues(int column) {
+        return values[column];
+    }
+
+    public double[][] getValues() {
+        return values;
+    }
+
+    /**
+     * Materializes the rows as {@link SensorData}, <tt>NaN</tt> cells become <tt>null</tt>. Only meant for
+     * small results, the whole point of this class is to avoid one map per row.
+     */
+    public void toSensorData(List<SensorData> result) {
+        for (int row = 0; row < times.length; row++) {
+            SensorData sensorData = new SensorData();
+            sensorData.setTime(Instant.ofEpochMilli(times[row]));
+            Map<String, Object> fields = new HashMap<>();
+            for (int column = 0; column < columns.length; column++) {
+                double value = values[column][row];
+                fields.put(columns[column], Double.isNaN(value) ? null : value);
+            }
+            sensorData.setExtraFields(fields);
+            result.add(sensorData);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SensorDataColumns{" +
+                "columns=" + Arrays.toString(columns) +
+                ", size=" + times.length +
+                '}';
+    }
+}
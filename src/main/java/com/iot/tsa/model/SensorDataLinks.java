@@ -0,0 +1,237 @@
+package com.iot.tsa.model;
+
+import com.iot.tsa.controller.SensorDataController;
+import com.iot.tsa.enums.Downsampling;
+import com.iot.tsa.enums.TimeUnit;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.LinkRelation;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static com.iot.tsa.util.db.Now.RELATIVE_TIME;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * Link templates for the {@link SensorDataController} resources. Building a link through
+ * <tt>linkTo(methodOn(...))</tt> creates a proxy and resolves the URI template on every call, so
+ * every link whose shape does not depend on the request is compiled once, relative to the
+ * servlet mapping, and only expanded with the sensor id and the current base URI per request.
+ */
+public final class SensorDataLinks {
+
+    private final static String[] DEFAULT_AGGREGATE_SELECT_CRITERIA
+            = new String[]{"median(*)", "mean(*)", "max(*)", "min(*)"};
+
+    private static final String ID_PLACEHOLDER = "__sensorDataLinksId__";
+    private static final String TENANT_ID_PLACEHOLDER = "__sensorDataLinksTenantId__";
+    private static final String BASE_URI_ATTRIBUTE = SensorDataLinks.class.getName() + ".baseUri";
+    private static final String GET = "GET";
+
+    private static final Map<String, String> TIME_SERIES_SHORTCUTS;
+    private static final Map<String, String> COMPACT_SHORTCUTS;
+    private static final String TIME_SERIES;
+    private static final String COMPACT;
+    private static final String BATCH;
+    private static final String LAST_VALUES;
+    private static final String LAST_VALUE;
+
+    static {
+        // the templates must be relative to the servlet mapping whichever thread loads this class,
+        // so they are compiled without the current request
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        RequestContextHolder.resetRequestAttributes();
+        try {
+            TIME_SERIES_SHORTCUTS = compileShortcuts(shortcut -> methodOn(SensorDataController.class)
+                    .findAllByIdAndTenantId(TENANT_ID_PLACEHOLDER, ID_PLACEHOLDER, shortcut.from, null,
+                            shortcut.selectCriteria, shortcut.intervalValue(), shortcut.timeUnit, null, null));
+            COMPACT_SHORTCUTS = compileShortcuts(shortcut -> methodOn(SensorDataController.class)
+                    .findCompactByIdAndTenantId(TENANT_ID_PLACEHOLDER, ID_PLACEHOLDER, shortcut.from, null,
+                            shortcut.selectCriteria, shortcut.intervalValue(), shortcut.timeUnit, null, null));
+            TIME_SERIES = compile(methodOn(SensorDataController.class)
+                    .findAllByIdAndTenantId(TENANT_ID_PLACEHOLDER, ID_PLACEHOLDER, null, null, null, null, null, null, null));
+            COMPACT = compile(methodOn(SensorDataController.class)
+                    .findCompactByIdAndTenantId(TENANT_ID_PLACEHOLDER, ID_PLACEHOLDER, null, null, null, null, null, null, null));
+            BATCH = compile(methodOn(SensorDataController.class)
+                    .findAllByIdsAndTenantId(TENANT_ID_PLACEHOLDER, null, null, null, null, null, null, null, null));
+            LAST_VALUES = compile(methodOn(SensorDataController.class)
+                    .findAllLastValueByTenantId(TENANT_ID_PLACEHOLDER));
+            LAST_VALUE = compile(methodOn(SensorDataController.class)
+                    .findAllLastValueByTenantIdAndId(TENANT_ID_PLACEHOLDER, ID_PLACEHOLDER));
+        } finally {
+            RequestContextHolder.setRequestAttributes(attributes);
+        }
+    }
+
+    private SensorDataLinks() {
+    }
+
+    /**
+     * The shortcut links to <tt>/timeseries/{id}</tt>.
+     */
+    public static List<Link> timeSeriesShortcuts(String id) {
+        return expandAll(TIME_SERIES_SHORTCUTS, id);
+    }
+
+    /**
+     * The shortcut links to <tt>/timeseries/{id}/compact</tt>.
+     */
+    public static List<Link> compactShortcuts(String id) {
+        return expandAll(COMPACT_SHORTCUTS, id);
+    }
+
+    public static Link timeSeries(LinkRelation rel, String id, String from, String to, String[] selectCriteria,
+                                  Long intervalValue, TimeUnit intervalUnit) {
+        return timeSeries(rel, id, from, to, selectCriteria, intervalValue, intervalUnit, null, null);
+    }
+
+    public static Link timeSeries(LinkRelation rel, String id, String from, String to, String[] selectCriteria,
+                                  Long intervalValue, TimeUnit intervalUnit,
+                                  Integer maxPoints, Downsampling downsampling) {
+        return link(rel, withQuery(expand(TIME_SERIES, id), from, to, selectCriteria, intervalValue, intervalUnit,
+                maxPoints, downsampling));
+    }
+
+    public static Link compact(LinkRelation rel, String id, String from, String to, String[] selectCriteria,
+                               Long intervalValue, TimeUnit intervalUnit,
+                               Integer maxPoints, Downsampling downsampling) {
+        return link(rel, withQuery(expand(COMPACT, id), from, to, selectCriteria, intervalValue, intervalUnit,
+                maxPoints, downsampling));
+    }
+
+    public static Link batch(LinkRelation rel, String[] ids, String from, String to, String[] selectCriteria,
+                             Long intervalValue, TimeUnit intervalUnit,
+                             Integer maxPoints, Downsampling downsampling) {
+        StringBuilder sb = new StringBuilder(baseUri()).append(BATCH);
+        if (ids != null && ids.length > 0) {
+            appendParam(sb, '?', "ids", StringUtils.arrayToCommaDelimitedString(ids));
+        }
+        return link(rel, withQuery(sb.toString(), from, to, selectCriteria, intervalValue, intervalUnit,
+                maxPoints, downsampling));
+    }
+
+    public static Link lastValues(LinkRelation rel) {
+        return link(rel, baseUri() + LAST_VALUES);
+    }
+
+    public static Link lastValue(LinkRelation rel, String id) {
+        return link(rel, expand(LAST_VALUE, id));
+    }
+
+    private static List<Link> expandAll(Map<String, String> templates, String id) {
+        List<Link> links = new ArrayList<>(templates.size());
+        for (Map.Entry<String, String> template : templates.entrySet()) {
+            links.add(link(LinkRelation.of(template.getKey()), expand(template.getValue(), id)));
+        }
+        return links;
+    }
+
+    private static Link link(LinkRelation rel, String href) {
+        return new Link(href, rel).withType(GET);
+    }
+
+    private static String expand(String template, String id) {
+        return baseUri() + template.replace(ID_PLACEHOLDER, UriUtils.encodePath(id, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends the query the same way <tt>linkTo(methodOn(...))</tt> renders it: absent parameters
+     * are left out and arrays are comma separated.
+     */
+    private static String withQuery(String href, String from, String to, String[] selectCriteria,
+                                    Long intervalValue, TimeUnit intervalUnit,
+                                    Integer maxPoints, Downsampling downsampling) {
+        StringBuilder sb = new StringBuilder(href);
+        char separator = href.indexOf('?') < 0 ? '?' : '&';
+        separator = appendParam(sb, separator, "from", from);
+        separator = appendParam(sb, separator, "to", to);
+        if (selectCriteria != null && selectCriteria.length > 0) {
+            separator = appendParam(sb, separator, "selectCriteria",
+                    StringUtils.arrayToCommaDelimitedString(selectCriteria));
+        }
+        separator = appendParam(sb, separator, "intervalValue",
+                intervalValue != null ? intervalValue.toString() : null);
+        separator = appendParam(sb, separator, "intervalUnit", intervalUnit != null ? intervalUnit.name() : null);
+        separator = appendParam(sb, separator, "maxPoints", maxPoints != null ? maxPoints.toString() : null);
+        appendParam(sb, separator, "downsampling", downsampling != null ? downsampling.name() : null);
+        return sb.toString();
+    }
+
+    private static char appendParam(StringBuilder sb, char separator, String name, String value) {
+        if (value == null) {
+            return separator;
+        }
+        sb.append(separator)
+                .append(name)
+                .append('=')
+                .append(UriUtils.encodeQueryParam(value, StandardCharsets.UTF_8));
+        return '&';
+    }
+
+    /**
+     * The base URI of the current servlet mapping, resolved once per request.
+     */
+    private static String baseUri() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return "";
+        }
+        String baseUri = (String) attributes.getAttribute(BASE_URI_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (baseUri == null) {
+            baseUri = ServletUriComponentsBuilder.fromCurrentServletMapping().toUriString();
+            attributes.setAttribute(BASE_URI_ATTRIBUTE, baseUri, RequestAttributes.SCOPE_REQUEST);
+        }
+        return baseUri;
+    }
+
+    private static Map<String, String> compileShortcuts(Function<Shortcut, Object> invocation) {
+        Map<String, String> templates = new LinkedHashMap<>();
+        for (Shortcut shortcut : Shortcut.values()) {
+            templates.put(shortcut.rel, compile(invocation.apply(shortcut)));
+        }
+        return Collections.unmodifiableMap(templates);
+    }
+
+    private static String compile(Object invocation) {
+        return linkTo(invocation).withSelfRel().expand().getHref();
+    }
+
+    private enum Shortcut {
+        LAST_MINUTE("lastMinute", RELATIVE_TIME.concat("-1m"), null, null),
+        LAST_MINUTES_GROUP_BY("lastMinutesGroupBy", RELATIVE_TIME.concat("-5m"),
+                DEFAULT_AGGREGATE_SELECT_CRITERIA, TimeUnit.S),
+        LAST_HOUR_GROUP_BY("lastHourGroupBy", RELATIVE_TIME.concat("-1h"),
+                DEFAULT_AGGREGATE_SELECT_CRITERIA, TimeUnit.M),
+        LAST_DAY_GROUP_BY("lastDayGroupBy", RELATIVE_TIME.concat("-1d"),
+                DEFAULT_AGGREGATE_SELECT_CRITERIA, TimeUnit.H),
+        LAST_MONTH_GROUP_BY("lastMonthGroupBy", RELATIVE_TIME.concat("-30d"),
+                DEFAULT_AGGREGATE_SELECT_CRITERIA, TimeUnit.D);
+
+        private final String rel;
+        private final String from;
+        private final String[] selectCriteria;
+        private final TimeUnit timeUnit;
+
+        Shortcut(String rel, String from, String[] selectCriteria, TimeUnit timeUnit) {
+            this.rel = rel;
+            this.from = from;
+            this.selectCriteria = selectCriteria;
+            this.timeUnit = timeUnit;
+        }
+
+        Long intervalValue() {
+            return timeUnit != null ? timeUnit.getGroupByFactor() : null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.iot.tsa.model;
+
+import java.time.Instant;
+
+/**
+ * A query recorded by the slow query log, with the InfluxQL as sent and where its time went.
+ */
+public class SlowQuery {
+
+    private final Instant time;
+    private final String tenantId;
+    private final String query;
+    private final String parameters;
+    private final double durationMillis;
+    private final double serverMillis;
+    private final double mapMillis;
+    private final int series;
+    private final int rows;
+
+    public SlowQuery(Instant time, String tenantId, String query, String parameters,
+                     double durationMillis, double serverMillis, double mapMillis, int series, int rows) {
+        this.time = time;
+        this.tenantId = tenantId;
+        this.query = query;
+        this.parameters = parameters;
+        this.durationMillis = durationMillis;
+        this.serverMillis = serverMillis;
+        this.mapMillis = mapMillis;
+        this.series = series;
+        this.rows = rows;
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    /**
+     * The InfluxQL, with the <tt>$name</tt> placeholders of its {@link #getParameters() parameters}.
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * The JSON of the bound parameters.
+     */
+    public String getParameters() {
+        return parameters;
+    }
+
+    /**
+     * From building the InfluxQL to mapping the result.
+     */
+    public double getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * The InfluxDB round trip, including reading the response.
+     */
+    public double getServerMillis() {
+        return serverMillis;
+    }
+
+    /**
+     * Mapping the result to the model.
+     */
+    public double getMapMillis() {
+        return mapMillis;
+    }
+
+    public int getSeries() {
+        return series;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,750 @@
+package com.iot.tsa.repository;
+
+import com.iot.tsa.config.HotWindowProperties;
+import com.iot.tsa.enums.AggregateFunction;
+import com.iot.tsa.model.SensorData;
+import com.iot.tsa.model.SensorDataColumns;
+import com.iot.tsa.util.db.Now;
+import com.iot.tsa.util.db.PointAccessor;
+import com.iot.tsa.util.db.QueryCriteria;
+import com.iot.tsa.util.db.SelectExpression;
+import com.iot.tsa.util.gorilla.GorillaBlock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.influxdb.annotation.Measurement;
+import org.influxdb.dto.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The most recent points of every sensor written through this instance, in memory as
+ * {@link GorillaBlock}s, so that raw and <tt>group by time(...)</tt> queries of a sensor over the
+ * last minutes to the last day, the ranges of the shortcut links, are answered without InfluxDB.
+ * <p>
+ * A sensor is only answered from memory for a range it is known to hold every point of: from the
+ * moment it was first written through this instance, and only after any point it could not keep.
+ * Points out of order, with a time already held, below a millisecond, with tags other than the
+ * tenant and the id, or with a field that is not a floating point number are left to InfluxDB,
+ * and so are the queries reaching back before them. Queries selecting every field only return the
+ * fields of the sensor, not the empty columns InfluxDB adds for the fields of other series.
+ * <p>
+ * The points are appended once InfluxDB accepted them. Point times are assumed not to be ahead of
+ * the clock of this instance.
+ * <p>
+ * This instance must be the single writer of the sensors it is queried for, points written by
+ * anyone else are not seen, so the store only runs when
+ * {@link HotWindowProperties#isSingleWriter()} says so.
+ */
+@Component
+public class HotWindowStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotWindowStore.class);
+
+    private static final String MEASUREMENT_NAME = SensorData.class.getAnnotation(Measurement.class).name();
+    private static final String TENANT_ID = "tenantId";
+    private static final String ID = "id";
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final long MAX_BUCKETS = 1_000_000L;
+
+    private final HotWindowProperties properties;
+    private final ConcurrentMap<Key, Series> series = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private volatile long sweptAt;
+
+    public HotWindowStore(HotWindowProperties properties,
+                          MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.hits = meterRegistry.counter("tsa.hotwindow.requests", "result", "hit");
+        this.misses = meterRegistry.counter("tsa.hotwindow.requests", "result", "miss");
+        Gauge.builder("tsa.hotwindow.series", series, Map::size).register(meterRegistry);
+        Gauge.builder("tsa.hotwindow.bytes", this, HotWindowStore::getBytes).register(meterRegistry);
+        if (properties.isEnabled() && !properties.isSingleWriter()) {
+            LOGGER.warn("The hot window is enabled but stays off until tsa.hot-window.single-writer confirms "
+                    + "this instance is the only writer of its sensors");
+        }
+    }
+
+    /**
+     * Appends points InfluxDB accepted, the points of each sensor in time order.
+     */
+    public void append(List<Point> points) {
+        if (!isActive()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long oldest = now - properties.getWindow().toMillis();
+        long blockMillis = properties.getBlockDuration().toMillis();
+
+        Map<Key, List<Row>> rows = new HashMap<>();
+        for (Point point : points) {
+            if (!MEASUREMENT_NAME.equals(PointAccessor.measurement(point))) {
+                continue;
+            }
+            Map<String, String> tags = PointAccessor.tags(point);
+            String tenantId = tags.get(TENANT_ID);
+            String id = tags.get(ID);
+            if (tenantId != null && id != null) {
+                rows.computeIfAbsent(new Key(tenantId, id), key -> new ArrayList<>()).add(Row.of(point, tags, now));
+            }
+        }
+
+        for (Map.Entry<Key, List<Row>> entry : rows.entrySet()) {
+            List<Row> seriesRows = entry.getValue();
+            seriesRows.sort(Comparator.comparingLong(row -> row.time));
+            Series current;
+            while ((current = series(entry.getKey(), now)) != null) {
+                synchronized (current) {
+                    // dropped by a sweep meanwhile, the points go to the sensor added in its place
+                    if (current.dropped) {
+                        continue;
+                    }
+                    for (Row row : seriesRows) {
+                        current.append(row, oldest, blockMillis);
+                    }
+                    current.evict(oldest);
+                    break;
+                }
+            }
+        }
+        sweep(now, oldest, blockMillis);
+    }
+
+    /**
+     * @return the points of the criteria, <tt>null</tt> when they are not all held in memory
+     */
+    public List<SensorData> findAllByCriteria(QueryCriteria criteria) {
+        Result result = query(criteria);
+        return result != null ? result.toSensorData(criteria) : null;
+    }
+
+    /**
+     * @return the points of the criteria, <tt>null</tt> when they are not all held in memory
+     */
+    public SensorDataColumns findColumnsByCriteria(QueryCriteria criteria) {
+        Result result = query(criteria);
+        return result != null ? result.toColumns() : null;
+    }
+
+    private boolean isActive() {
+        return properties.isEnabled() && properties.isSingleWriter();
+    }
+
+    private Result query(QueryCriteria criteria) {
+        if (!isActive()) {
+            return null;
+        }
+        Selection selection = Selection.of(criteria);
+        long now = System.currentTimeMillis();
+        Long from = criteria.getFrom() != null ? Now.toEpochMillis(criteria.getFrom(), now) : null;
+        Long to = criteria.getTo() != null ? Now.toEpochMillis(criteria.getTo(), now) : null;
+        if (selection == null || StringUtils.isEmpty(criteria.getId()) || criteria.getTenantId() == null
+                || from == null || (criteria.getTo() != null && to == null)) {
+            misses.increment();
+            return null;
+        }
+        long last;
+        if (to != null) {
+            last = criteria.isToExclusive() ? to - 1 : to;
+        } else {
+            // a group by time(...) without an upper bound ends now
+            last = selection.isAggregate() ? now : Long.MAX_VALUE;
+        }
+        if (selection.isAggregate() && last >= from
+                && (floor(last, selection.interval) - floor(from, selection.interval)) / selection.interval >= MAX_BUCKETS) {
+            misses.increment();
+            return null;
+        }
+
+        Series current = series.get(new Key(criteria.getTenantId(), criteria.getId()));
+        if (current == null) {
+            misses.increment();
+            return null;
+        }
+        List<GorillaBlock> blocks;
+        synchronized (current) {
+            if (current.dropped || from < Math.max(current.coveredFrom, now - properties.getWindow().toMillis())) {
+                misses.increment();
+                return null;
+            }
+            blocks = current.blocks(from);
+        }
+        hits.increment();
+
+        Result points = decode(blocks, from, last);
+        return selection.isAggregate() ? aggregate(points, selection, from, last) : select(points, selection);
+    }
+
+    /**
+     * The points of the blocks from <tt>from</tt> to <tt>last</tt>, inclusive, with the fields in
+     * name order.
+     */
+    private static Result decode(List<GorillaBlock> blocks, long from, long last) {
+        List<GorillaBlock.Points> decoded = new ArrayList<>(blocks.size());
+        Set<String> names = new TreeSet<>();
+        int size = 0;
+        for (GorillaBlock block : blocks) {
+            if (block.getFirstTime() > last) {
+                break;
+            }
+            GorillaBlock.Points points = block.decode();
+            decoded.add(points);
+            names.addAll(Arrays.asList(points.getFields()));
+            size += points.getTimes().length;
+        }
+
+        String[] fields = names.toArray(new String[0]);
+        long[] times = new long[size];
+        double[][] values = new double[fields.length][size];
+        for (double[] column : values) {
+            Arrays.fill(column, Double.NaN);
+        }
+        int row = 0;
+        for (GorillaBlock.Points points : decoded) {
+            long[] blockTimes = points.getTimes();
+            int start = lowerBound(blockTimes, from);
+            int end = lowerBound(blockTimes, last == Long.MAX_VALUE ? last : last + 1);
+            if (start >= end) {
+                continue;
+            }
+            System.arraycopy(blockTimes, start, times, row, end - start);
+            String[] blockFields = points.getFields();
+            for (int field = 0; field < blockFields.length; field++) {
+                int column = Arrays.binarySearch(fields, blockFields[field]);
+                System.arraycopy(points.getValues()[field], start, values[column], row, end - start);
+            }
+            row += end - start;
+        }
+        if (row < size) {
+            times = Arrays.copyOf(times, row);
+            for (int column = 0; column < values.length; column++) {
+                values[column] = Arrays.copyOf(values[column], row);
+            }
+        }
+        return new Result(fields, times, values, false);
+    }
+
+    /**
+     * The raw points: every field along with the tags, as <tt>SELECT *</tt> returns them, or the
+     * rows of the selected fields having a value for any of them.
+     */
+    private static Result select(Result points, Selection selection) {
+        if (selection.fields == null) {
+            Set<String> names = new TreeSet<>(Arrays.asList(points.columns));
+            names.add(TENANT_ID);
+            names.add(ID);
+            String[] columns = names.toArray(new String[0]);
+            double[][] values = new double[columns.length][];
+            for (int column = 0; column < columns.length; column++) {
+                int index = Arrays.binarySearch(points.columns, columns[column]);
+                if (index >= 0) {
+                    values[column] = points.values[index];
+                } else {
+                    values[column] = new double[points.times.length];
+                    Arrays.fill(values[column], Double.NaN);
+                }
+            }
+            return new Result(columns, points.times, values, true);
+        }
+
+        String[] columns = selection.fields;
+        double[][] selected = new double[columns.length][];
+        for (int column = 0; column < columns.length; column++) {
+            int index = Arrays.binarySearch(points.columns, columns[column]);
+            if (index >= 0) {
+                selected[column] = points.values[index];
+            } else {
+                selected[column] = new double[points.times.length];
+                Arrays.fill(selected[column], Double.NaN);
+            }
+        }
+        int[] rows = new int[points.times.length];
+        int size = 0;
+        for (int row = 0; row < points.times.length; row++) {
+            for (double[] column : selected) {
+                if (!Double.isNaN(column[row])) {
+                    rows[size++] = row;
+                    break;
+                }
+            }
+        }
+        long[] times = new long[size];
+        double[][] values = new double[columns.length][size];
+        for (int i = 0; i < size; i++) {
+            times[i] = points.times[rows[i]];
+            for (int column = 0; column < columns.length; column++) {
+                values[column][i] = selected[column][rows[i]];
+            }
+        }
+        return new Result(columns, times, values, false);
+    }
+
+    /**
+     * The buckets of <tt>group by time(...)</tt> with the default <tt>fill(null)</tt>: every bucket
+     * from the one holding <tt>from</tt> to the one holding <tt>last</tt>, as long as any of them
+     * has a point, with a <tt>function_field</tt> column per function and field.
+     */
+    private static Result aggregate(Result points, Selection selection, long from, long last) {
+        if (points.times.length == 0) {
+            return new Result(new String[0], new long[0], new double[0][], false);
+        }
+        long interval = selection.interval;
+        long first = floor(from, interval);
+        int buckets = (int) ((floor(last, interval) - first) / interval + 1);
+        String[] fields = points.columns;
+        SelectExpression[] expressions = selection.expressions;
+
+        String[] columns = new String[expressions.length * fields.length];
+        for (int expression = 0; expression < expressions.length; expression++) {
+            for (int field = 0; field < fields.length; field++) {
+                columns[expression * fields.length + field]
+                        = expressions[expression].getFunction().getFunction() + "_" + fields[field];
+            }
+        }
+        long[] times = new long[buckets];
+        double[][] values = new double[columns.length][buckets];
+
+        double[] bucketValues = new double[points.times.length];
+        double[] sorted = new double[points.times.length];
+        int row = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            times[bucket] = first + bucket * interval;
+            int start = row;
+            while (row < points.times.length && points.times[row] < times[bucket] + interval) {
+                row++;
+            }
+            for (int field = 0; field < fields.length; field++) {
+                int count = 0;
+                for (int i = start; i < row; i++) {
+                    double value = points.values[field][i];
+                    if (!Double.isNaN(value)) {
+                        bucketValues[count++] = value;
+                    }
+                }
+                boolean isSorted = false;
+                for (int expression = 0; expression < expressions.length; expression++) {
+                    AggregateFunction function = expressions[expression].getFunction();
+                    if (!isSorted && (function == AggregateFunction.MEDIAN || function == AggregateFunction.PERCENTILE)) {
+                        System.arraycopy(bucketValues, 0, sorted, 0, count);
+                        Arrays.sort(sorted, 0, count);
+                        isSorted = true;
+                    }
+                    values[expression * fields.length + field][bucket]
+                            = apply(expressions[expression], bucketValues, sorted, count);
+                }
+            }
+        }
+        return new Result(columns, times, values, false);
+    }
+
+    /**
+     * The function over the values of a bucket, as InfluxDB computes it, {@link Double#NaN} for
+     * <tt>null</tt>.
+     *
+     * @param values the values in time order
+     * @param sorted the same values in increasing order, only filled for the functions needing it
+     */
+    private static double apply(SelectExpression expression, double[] values, double[] sorted, int count) {
+        if (expression.getFunction() == AggregateFunction.COUNT) {
+            // count() fills the buckets without points with 0 rather than null
+            return count;
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        switch (expression.getFunction()) {
+            case MEAN:
+                return sum(values, count) / count;
+            case MEDIAN:
+                if (count % 2 == 1) {
+                    return sorted[count / 2];
+                }
+                double low = sorted[count / 2 - 1];
+                return low + (sorted[count / 2] - low) / 2;
+            case MIN:
+                double min = values[0];
+                for (int i = 1; i < count; i++) {
+                    min = Math.min(min, values[i]);
+                }
+                return min;
+            case MAX:
+                double max = values[0];
+                for (int i = 1; i < count; i++) {
+                    max = Math.max(max, values[i]);
+                }
+                return max;
+            case FIRST:
+                return values[0];
+            case LAST:
+                return values[count - 1];
+            case SUM:
+                return sum(values, count);
+            case PERCENTILE:
+                int index = (int) Math.floor(count * expression.getArgument() / 100 + 0.5) - 1;
+                return index >= 0 && index < count ? sorted[index] : Double.NaN;
+            case STDDEV:
+                if (count < 2) {
+                    return Double.NaN;
+                }
+                double mean = sum(values, count) / count;
+                double variance = 0;
+                for (int i = 0; i < count; i++) {
+                    variance += (values[i] - mean) * (values[i] - mean);
+                }
+                return Math.sqrt(variance / (count - 1));
+            default:
+                throw new IllegalArgumentException("Unsupported function " + expression.getFunction());
+        }
+    }
+
+    private static double sum(double[] values, int count) {
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * The index of the first time at or after <tt>time</tt>.
+     */
+    private static int lowerBound(long[] times, long time) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long floor(long time, long interval) {
+        return Math.floorDiv(time, interval) * interval;
+    }
+
+    private Series series(Key key, long now) {
+        Series current = series.get(key);
+        if (current != null) {
+            return current;
+        }
+        if (series.size() >= properties.getMaxSeries()) {
+            return null;
+        }
+        return series.computeIfAbsent(key, k -> new Series(now));
+    }
+
+    /**
+     * Drops, once per block duration, the sensors without points in the window anymore.
+     */
+    private void sweep(long now, long oldest, long blockMillis) {
+        if (now - sweptAt < blockMillis) {
+            return;
+        }
+        sweptAt = now;
+        for (Iterator<Series> iterator = series.values().iterator(); iterator.hasNext(); ) {
+            Series current = iterator.next();
+            synchronized (current) {
+                current.evict(oldest);
+                if (current.isEmpty()) {
+                    current.dropped = true;
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private long getBytes() {
+        long bytes = 0;
+        for (Series current : series.values()) {
+            bytes += current.bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * What a query asks for: the raw fields, or functions of every field by <tt>time(...)</tt>.
+     */
+    private static final class Selection {
+
+        /**
+         * The raw fields selected, <tt>null</tt> for every field.
+         */
+        private final String[] fields;
+        private final SelectExpression[] expressions;
+        private final long interval;
+
+        private Selection(String[] fields, SelectExpression[] expressions, long interval) {
+            this.fields = fields;
+            this.expressions = expressions;
+            this.interval = interval;
+        }
+
+        /**
+         * @return the selection, <tt>null</tt> when the query is not one answered from memory
+         */
+        static Selection of(QueryCriteria criteria) {
+            if (!ObjectUtils.isEmpty(criteria.getGroupByCriteria())) {
+                return null;
+            }
+            List<SelectExpression> select = criteria.getSelect();
+            boolean aggregate = !select.isEmpty() && select.get(0).isAggregate();
+            boolean interval = criteria.getIntervalValue() != null && criteria.getIntervalValue() > 0
+                    && criteria.getIntervalUnit() != null;
+            if (aggregate != interval) {
+                return null;
+            }
+
+            if (aggregate) {
+                // columns named twice come out with a suffix
+                if (new HashSet<>(select).size() < select.size()) {
+                    return null;
+                }
+                for (SelectExpression expression : select) {
+                    if (expression.getField() != null) {
+                        return null;
+                    }
+                }
+                return new Selection(null, select.toArray(new SelectExpression[0]),
+                        criteria.getIntervalUnit().getChronoUnit().getDuration().toMillis()
+                                * criteria.getIntervalValue());
+            }
+
+            if (select.isEmpty() || (select.size() == 1 && select.get(0).getField() == null)) {
+                return new Selection(null, null, 0L);
+            }
+            Set<String> fields = new HashSet<>();
+            for (SelectExpression expression : select) {
+                String field = expression.getField();
+                // tags, every field along with others, and columns named twice come out differently
+                if (field == null || TENANT_ID.equals(field) || ID.equals(field) || !fields.add(field)) {
+                    return null;
+                }
+            }
+            String[] names = new String[select.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = select.get(i).getField();
+            }
+            return new Selection(names, null, 0L);
+        }
+
+        boolean isAggregate() {
+            return expressions != null;
+        }
+    }
+
+    /**
+     * Rows in time order with a <tt>double[]</tt> per column, {@link Double#NaN} for <tt>null</tt>.
+     */
+    private static final class Result {
+
+        private final String[] columns;
+        private final long[] times;
+        private final double[][] values;
+        private final boolean tags;
+
+        Result(String[] columns, long[] times, double[][] values, boolean tags) {
+            this.columns = columns;
+            this.times = times;
+            this.values = values;
+            this.tags = tags;
+        }
+
+        /**
+         * The columns without the tags, as the columnar result mapper leaves them out.
+         */
+        SensorDataColumns toColumns() {
+            if (!tags) {
+                return new SensorDataColumns(columns, times, values);
+            }
+            List<String> fields = new ArrayList<>(columns.length);
+            List<double[]> fieldValues = new ArrayList<>(columns.length);
+            for (int column = 0; column < columns.length; column++) {
+                if (!SensorDataColumns.TAGS.contains(columns[column])) {
+                    fields.add(columns[column]);
+                    fieldValues.add(values[column]);
+                }
+            }
+            return new SensorDataColumns(fields.toArray(new String[0]), times, fieldValues.toArray(new double[0][]));
+        }
+
+        /**
+         * The rows as the result mapper maps them: every column of every row, <tt>null</tt> where
+         * it has no value, and the tags as strings.
+         */
+        List<SensorData> toSensorData(QueryCriteria criteria) {
+            List<SensorData> data = new ArrayList<>(times.length);
+            for (int row = 0; row < times.length; row++) {
+                Map<String, Object> fields = new HashMap<>((int) (columns.length / 0.75f) + 1);
+                for (int column = 0; column < columns.length; column++) {
+                    double value = values[column][row];
+                    fields.put(columns[column], Double.isNaN(value) ? null : value);
+                }
+                if (tags) {
+                    fields.put(TENANT_ID, criteria.getTenantId());
+                    fields.put(ID, criteria.getId());
+                }
+                SensorData sensorData = new SensorData();
+                sensorData.setTime(Instant.ofEpochMilli(times[row]));
+                sensorData.setExtraFields(fields);
+                data.add(sensorData);
+            }
+            return data;
+        }
+    }
+
+    /**
+     * A point to append, without fields when it cannot be kept.
+     */
+    private static final class Row {
+
+        private final long time;
+        private final Map<String, Double> fields;
+
+        private Row(long time, Map<String, Double> fields) {
+            this.time = time;
+            this.fields = fields;
+        }
+
+        static Row of(Point point, Map<String, String> tags, long now) {
+            Long nanos = PointAccessor.epochNanos(point);
+            if (nanos == null) {
+                // InfluxDB takes its own time on write
+                return new Row(now, null);
+            }
+            long time = Math.floorDiv(nanos, NANOS_PER_MILLI);
+            if (Math.floorMod(nanos, NANOS_PER_MILLI) != 0 || tags.size() != 2) {
+                return new Row(time, null);
+            }
+            Map<String, Object> pointFields = PointAccessor.fields(point);
+            Map<String, Double> fields = new LinkedHashMap<>((int) (pointFields.size() / 0.75f) + 1);
+            for (Map.Entry<String, Object> field : pointFields.entrySet()) {
+                Object value = field.getValue();
+                if (!(value instanceof Double) || Double.isNaN((Double) value) || Double.isInfinite((Double) value)) {
+                    return new Row(time, null);
+                }
+                fields.put(field.getKey(), (Double) value);
+            }
+            return new Row(time, fields);
+        }
+    }
+
+    /**
+     * The blocks of a sensor, the last one taking the new points. Guarded by its own lock.
+     */
+    private static final class Series {
+
+        private final ArrayDeque<GorillaBlock> blocks = new ArrayDeque<>();
+        /**
+         * Every point written through this instance from this time on is held.
+         */
+        private long coveredFrom;
+        private boolean dropped;
+        private volatile long bytes;
+
+        Series(long coveredFrom) {
+            this.coveredFrom = coveredFrom;
+        }
+
+        void append(Row row, long oldest, long blockMillis) {
+            GorillaBlock open = blocks.peekLast();
+            if (row.fields == null || (open != null && row.time <= open.getLastTime())) {
+                // a point that is not held, ranges including its time are left to InfluxDB
+                coveredFrom = Math.max(coveredFrom, row.time + 1);
+                return;
+            }
+            if (row.time < oldest) {
+                return;
+            }
+            if (open == null || !open.accepts(row.time) || row.time - open.getFirstTime() >= blockMillis) {
+                if (open != null) {
+                    open.seal();
+                }
+                open = new GorillaBlock();
+                blocks.addLast(open);
+            }
+            open.append(row.time, row.fields);
+        }
+
+        /**
+         * Drops the blocks whose points are all older than <tt>oldest</tt>.
+         */
+        void evict(long oldest) {
+            while (!blocks.isEmpty() && blocks.peekFirst().getLastTime() < oldest) {
+                blocks.pollFirst();
+            }
+            long total = 0;
+            for (GorillaBlock block : blocks) {
+                total += block.getBytes();
+            }
+            bytes = total;
+        }
+
+        boolean isEmpty() {
+            return blocks.isEmpty();
+        }
+
+        /**
+         * The blocks with points at or after <tt>from</tt>, the last one copied since it still
+         * takes points.
+         */
+        List<GorillaBlock> blocks(long from) {
+            List<GorillaBlock> result = new ArrayList<>(blocks.size());
+            for (GorillaBlock block : blocks) {
+                if (block.getLastTime() >= from) {
+                    result.add(block == blocks.peekLast() ? block.copy() : block);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class Key {
+
+        private final String tenantId;
+        private final String id;
+
+        Key(String tenantId, String id) {
+            this.tenantId = tenantId;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(tenantId, key.tenantId) &&
+                    Objects.equals(id, key.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tenantId, id);
+        }
+    }
+}
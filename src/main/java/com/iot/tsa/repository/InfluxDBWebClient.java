@@ -0,0 +1,160 @@
+package com.iot.tsa.repository;
+
+import com.iot.tsa.config.ReactiveQueryProperties;
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import io.netty.channel.ChannelOption;
+import org.influxdb.InfluxDBException;
+import org.influxdb.dto.BoundParameterQuery;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.QueryResult;
+import org.influxdb.impl.TimeUtil;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.influxdb.InfluxDBProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking client of the InfluxDB <tt>/query</tt> endpoint, for the queries of the
+ * <tt>/reactive</tt> endpoints: waiting for InfluxDB holds a connection of the pool, not a
+ * thread. Responses are decoded with Moshi into the same {@link QueryResult} influxdb-java
+ * returns, so they map the same way.
+ */
+@Component
+@ConditionalOnProperty(prefix = "tsa.reactive", name = "enabled", havingValue = "true")
+public class InfluxDBWebClient {
+
+    private static final JsonAdapter<QueryResult> ADAPTER = new Moshi.Builder().build().adapter(QueryResult.class);
+
+    private final WebClient webClient;
+    private final Duration readTimeout;
+
+    public InfluxDBWebClient(WebClient.Builder webClientBuilder,
+                             InfluxDBProperties influxDBProperties,
+                             ReactiveQueryProperties properties) {
+        HttpClient httpClient = HttpClient
+                .create(ConnectionProvider.fixed("influxdb", properties.getMaxConnections()))
+                .compress(influxDBProperties.isGzip())
+                .tcpConfiguration(tcpClient -> tcpClient.option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                        (int) TimeUnit.SECONDS.toMillis(influxDBProperties.getConnectTimeout())));
+        int maxInMemorySize = (int) Math.min(Integer.MAX_VALUE, properties.getMaxResponseSize().toBytes());
+
+        WebClient.Builder builder = webClientBuilder.clone()
+                .baseUrl(influxDBProperties.getUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .exchangeStrategies(ExchangeStrategies.builder()
+                        .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(maxInMemorySize))
+                        .build());
+        if (StringUtils.hasText(influxDBProperties.getUsername())) {
+            builder.defaultHeaders(headers ->
+                    headers.setBasicAuth(influxDBProperties.getUsername(), influxDBProperties.getPassword()));
+        }
+        this.webClient = builder.build();
+        this.readTimeout = Duration.ofSeconds(influxDBProperties.getReadTimeout());
+    }
+
+    /**
+     * @param precision the precision of the times, <tt>null</tt> for RFC3339
+     */
+    public Mono<QueryResult> query(Query query, TimeUnit precision) {
+        return exchange(query, precision, 0)
+                .flatMap(response -> response.bodyToMono(String.class))
+                .map(InfluxDBWebClient::decode)
+                .timeout(readTimeout);
+    }
+
+    /**
+     * Runs a chunked query, every result holds at most <tt>chunkSize</tt> points. Chunks are read
+     * from InfluxDB as they are requested, so a slow subscriber holds one back rather than buffer
+     * the whole response.
+     *
+     * @param precision the precision of the times, <tt>null</tt> for RFC3339
+     */
+    public Flux<QueryResult> query(Query query, TimeUnit precision, int chunkSize) {
+        return exchange(query, precision, chunkSize)
+                // one JSON document per line
+                .flatMapMany(response -> response.bodyToFlux(String.class))
+                .filter(StringUtils::hasText)
+                .map(InfluxDBWebClient::decode)
+                .timeout(readTimeout);
+    }
+
+    private Mono<ClientResponse> exchange(Query query, TimeUnit precision, int chunkSize) {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("db", query.getDatabase());
+        form.add("q", query.getCommand());
+        if (query instanceof BoundParameterQuery) {
+            form.add("params", parameters((BoundParameterQuery) query));
+        }
+        if (precision != null) {
+            form.add("epoch", TimeUtil.toTimePrecision(precision));
+        }
+        if (chunkSize > 0) {
+            form.add("chunked", "true");
+            form.add("chunk_size", String.valueOf(chunkSize));
+        }
+
+        return webClient.post()
+                .uri("/query")
+                .body(BodyInserters.fromFormData(form))
+                .exchange()
+                .flatMap(response -> {
+                    if (!response.statusCode().isError()) {
+                        return Mono.just(response);
+                    }
+                    return response.bodyToMono(String.class)
+                            .defaultIfEmpty("")
+                            .flatMap(body -> Mono.error(error(response.statusCode(), body)));
+                });
+    }
+
+    private static String parameters(BoundParameterQuery query) {
+        try {
+            return URLDecoder.decode(query.getParameterJsonWithUrlEncoded(), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static QueryResult decode(String json) {
+        try {
+            QueryResult queryResult = ADAPTER.fromJson(json);
+            if (queryResult == null) {
+                throw new InfluxDBException("Empty response from InfluxDB");
+            }
+            return queryResult;
+        } catch (IOException e) {
+            throw new InfluxDBException(e);
+        }
+    }
+
+    private static InfluxDBException error(HttpStatus status, String body) {
+        try {
+            QueryResult queryResult = ADAPTER.fromJson(body);
+            if (queryResult != null && queryResult.getError() != null) {
+                return new InfluxDBException(queryResult.getError());
+            }
+        } catch (IOException | RuntimeException e) {
+            // not a JSON error, reported with the status below
+        }
+        return new InfluxDBException("InfluxDB answered " + status.value() + " " + status.getReasonPhrase());
+    }
+}
@@ -0,0 +1,107 @@
+package com.iot.tsa.repository;
+
+import com.iot.tsa.config.QueryExecutorProperties;
+import com.iot.tsa.exception.QueryRejectedException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the sub-queries a request is split into. The pool is shared by all the requests, so its
+ * threads are the global cap on the InfluxDB queries fan-outs run at the same time. Tasks that
+ * split again, like a sensor of a batch over a wide time range, run their own sub-queries one
+ * after the other on their thread: waiting for tasks queued behind them could deadlock the pool.
+ */
+@Component
+public class QueryExecutor {
+
+    private static final ThreadLocal<Boolean> WORKER = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor executor;
+
+    public QueryExecutor(QueryExecutorProperties properties) {
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(() -> {
+                        WORKER.set(Boolean.TRUE);
+                        runnable.run();
+                    }, "query-executor-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Runs the tasks concurrently and returns their results in the order of the tasks. If a task
+     * fails the ones still pending are cancelled and its exception is rethrown.
+     *
+     * @throws QueryRejectedException when the executor is saturated
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        if (tasks.size() == 1 || WORKER.get() != null) {
+            return invokeOnCallingThread(tasks);
+        }
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (RejectedExecutionException e) {
+            throw new QueryRejectedException("Too many queries running, try again later", e);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for sub-queries", e);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static <T> List<T> invokeOnCallingThread(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                results.add(task.call());
+            }
+        } catch (Exception e) {
+            throw rethrow(e);
+        }
+        return results;
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+}
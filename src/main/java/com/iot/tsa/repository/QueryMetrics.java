@@ -0,0 +1,159 @@
+package com.iot.tsa.repository;
+
+import com.iot.tsa.config.QueryMetricsProperties;
+import com.iot.tsa.util.db.QueryCriteria;
+import com.iot.tsa.util.db.SelectExpression;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.influxdb.dto.QueryResult;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Where the time of a query goes: <tt>tsa.query.stage</tt> times building the InfluxQL, the
+ * InfluxDB round trip and mapping the result, <tt>tsa.query.series</tt> and
+ * <tt>tsa.query.rows</tt> count what was mapped. <tt>tsa.query.render</tt> times wrapping the
+ * result in HATEOAS resources and serializing the response and <tt>tsa.query.response</tt>
+ * measures the bytes written, per endpoint. They are all tagged with the group by unit and the
+ * functions selected, so a slow shape of query stands out.
+ * <p>
+ * They are never tagged with the tenant, a header any caller sets, so that callers cannot add
+ * histograms to the registry. With <tt>tenant-tag</tt> the stages are also timed per tenant by
+ * <tt>tsa.tenant.query</tt>, without a histogram, the tenants not listed in <tt>tenants</tt>
+ * sharing the <tt>other</tt> tag.
+ */
+@Component
+public class QueryMetrics {
+
+    public static final String BUILD = "build";
+    public static final String INFLUXDB = "influxdb";
+    public static final String MAP = "map";
+    public static final String WRAP = "wrap";
+    public static final String SERIALIZE = "serialize";
+
+    private static final String RAW = "raw";
+    private static final String ALL = "*";
+    private static final String FIELDS = "fields";
+    private static final String TENANT = "tenant";
+    private static final String OTHER = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final QueryMetricsProperties properties;
+
+    public QueryMetrics(MeterRegistry meterRegistry,
+                        QueryMetricsProperties properties) {
+        this.meterRegistry = meterRegistry;
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public Tags tags(QueryCriteria criteria) {
+        return tags(criteria.getTenantId(), criteria.getIntervalUnit(), criteria.getSelect());
+    }
+
+    public Tags tags(String tenantId, com.iot.tsa.enums.TimeUnit intervalUnit, List<SelectExpression> select) {
+        Tags tags = Tags.of("unit", intervalUnit != null ? intervalUnit.getUnit() : RAW,
+                "select", shape(select));
+        return properties.isTenantTag() ? tags.and(TENANT, tenant(tenantId)) : tags;
+    }
+
+    private String tenant(String tenantId) {
+        return tenantId != null && properties.getTenants().contains(tenantId) ? tenantId : OTHER;
+    }
+
+    /**
+     * @param start the {@link System#nanoTime()} the stage started at
+     * @param end   the {@link System#nanoTime()} the stage ended at
+     */
+    public void record(String stage, Tags tags, long start, long end) {
+        if (properties.isEnabled()) {
+            meterRegistry.timer("tsa.query.stage", withoutTenant(tags).and("stage", stage))
+                    .record(end - start, TimeUnit.NANOSECONDS);
+            recordTenant(stage, tags, end - start);
+        }
+    }
+
+    /**
+     * @param start the {@link System#nanoTime()} the stage started at
+     */
+    public void render(String stage, String endpoint, Tags tags, long start) {
+        if (properties.isEnabled()) {
+            long duration = System.nanoTime() - start;
+            meterRegistry.timer("tsa.query.render", withoutTenant(tags).and("stage", stage, "endpoint", endpoint))
+                    .record(duration, TimeUnit.NANOSECONDS);
+            recordTenant(stage, tags, duration);
+        }
+    }
+
+    public void mapped(Tags tags, QueryResult queryResult, int rows) {
+        if (properties.isEnabled()) {
+            Tags shape = withoutTenant(tags);
+            meterRegistry.counter("tsa.query.series", shape).increment(series(queryResult));
+            meterRegistry.counter("tsa.query.rows", shape).increment(rows);
+        }
+    }
+
+    public void response(String endpoint, Tags tags, long bytes) {
+        if (properties.isEnabled()) {
+            DistributionSummary.builder("tsa.query.response")
+                    .baseUnit("bytes")
+                    .tags(withoutTenant(tags).and("endpoint", endpoint))
+                    .register(meterRegistry)
+                    .record(bytes);
+        }
+    }
+
+    private void recordTenant(String stage, Tags tags, long nanos) {
+        for (Tag tag : tags) {
+            if (TENANT.equals(tag.getKey())) {
+                meterRegistry.timer("tsa.tenant.query", TENANT, tag.getValue(), "stage", stage)
+                        .record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private Tags withoutTenant(Tags tags) {
+        if (!properties.isTenantTag()) {
+            return tags;
+        }
+        return Tags.of(tags.stream().filter(tag -> !TENANT.equals(tag.getKey())).collect(Collectors.toList()));
+    }
+
+    /**
+     * The sorted functions of the selection, or whether it selects plain fields or every field.
+     */
+    private static String shape(List<SelectExpression> select) {
+        if (select == null || select.isEmpty()) {
+            return ALL;
+        }
+        TreeSet<String> functions = new TreeSet<>();
+        for (SelectExpression expression : select) {
+            if (!expression.isAggregate()) {
+                return FIELDS;
+            }
+            functions.add(expression.getFunction().getFunction());
+        }
+        return String.join(",", functions);
+    }
+
+    static int series(QueryResult queryResult) {
+        int series = 0;
+        if (queryResult.getResults() != null) {
+            for (QueryResult.Result result : queryResult.getResults()) {
+                if (result.getSeries() != null) {
+                    series += result.getSeries().size();
+                }
+            }
+        }
+        return series;
+    }
+}
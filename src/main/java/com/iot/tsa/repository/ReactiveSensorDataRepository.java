@@ -0,0 +1,137 @@
+package com.iot.tsa.repository;
+
+import com.iot.tsa.config.QuerySplitProperties;
+import com.iot.tsa.model.SensorData;
+import com.iot.tsa.util.db.CustomInfluxDBResultMapper;
+import com.iot.tsa.util.db.QueryCriteria;
+import com.iot.tsa.util.db.TimeRangeSplitter;
+import io.micrometer.core.instrument.Tags;
+import org.influxdb.annotation.Measurement;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.QueryResult;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.influxdb.InfluxDBProperties;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The non-blocking counterpart of {@link SensorDataRepository}, querying InfluxDB through the
+ * {@link InfluxDBWebClient}. Rows are mapped on the thread the response arrives on.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "tsa.reactive", name = "enabled", havingValue = "true")
+public class ReactiveSensorDataRepository {
+
+    private static final String MEASUREMENT_NAME = SensorData.class.getAnnotation(Measurement.class).name();
+
+    private final InfluxDBWebClient influxDBWebClient;
+    private final InfluxDBProperties influxDBProperties;
+    private final RollupTiers rollupTiers;
+    private final QuerySplitProperties querySplitProperties;
+    private final QueryMetrics queryMetrics;
+    private final SlowQueryLog slowQueryLog;
+
+    public ReactiveSensorDataRepository(InfluxDBWebClient influxDBWebClient,
+                                        InfluxDBProperties influxDBProperties,
+                                        RollupTiers rollupTiers,
+                                        QuerySplitProperties querySplitProperties,
+                                        QueryMetrics queryMetrics,
+                                        SlowQueryLog slowQueryLog) {
+        this.influxDBWebClient = influxDBWebClient;
+        this.influxDBProperties = influxDBProperties;
+        this.rollupTiers = rollupTiers;
+        this.querySplitProperties = querySplitProperties;
+        this.queryMetrics = queryMetrics;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * Wide time ranges are split into sub-ranges queried at the same time, their rows are
+     * emitted in order.
+     */
+    public Flux<SensorData> findAllByCriteria(QueryCriteria criteria) {
+        List<QueryCriteria> ranges = split(criteria);
+        if (ranges.size() == 1) {
+            return query(criteria);
+        }
+        return Flux.fromIterable(ranges).flatMapSequential(this::query, ranges.size());
+    }
+
+    /**
+     * Runs the query as an InfluxDB chunked query and emits the rows of every chunk as it is
+     * mapped. Chunks are only read as fast as the rows are requested.
+     */
+    public Flux<SensorData> streamAllByCriteria(QueryCriteria criteria, int chunkSize) {
+        return Flux.defer(() -> {
+            Tags tags = queryMetrics.tags(criteria);
+            long start = System.nanoTime();
+            Query query = withTarget(criteria).toQuery();
+            queryMetrics.record(QueryMetrics.BUILD, tags, start, System.nanoTime());
+
+            return influxDBWebClient.query(query, TimeUnit.MILLISECONDS, chunkSize)
+                    .concatMapIterable(queryResult -> {
+                        long received = System.nanoTime();
+                        List<SensorData> chunk = parse(queryResult);
+                        queryMetrics.record(QueryMetrics.MAP, tags, received, System.nanoTime());
+                        queryMetrics.mapped(tags, queryResult, chunk.size());
+                        return chunk;
+                    });
+        });
+    }
+
+    private Flux<SensorData> query(QueryCriteria criteria) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Query query = withTarget(criteria).toQuery();
+            long sent = System.nanoTime();
+            return influxDBWebClient.query(query, TimeUnit.MILLISECONDS)
+                    .map(queryResult -> {
+                        long received = System.nanoTime();
+                        List<SensorData> data = parse(queryResult);
+                        long mapped = System.nanoTime();
+
+                        record(criteria, query, start, sent, received, mapped, queryResult, data.size());
+                        return data;
+                    });
+        }).flatMapIterable(Function.identity());
+    }
+
+    private List<SensorData> parse(QueryResult queryResult) {
+
+        CustomInfluxDBResultMapper resultMapper = new CustomInfluxDBResultMapper();
+
+        return resultMapper.toPOJO(queryResult, SensorData.class, TimeUnit.MILLISECONDS);
+    }
+
+    private void record(QueryCriteria criteria, Query query, long start, long sent, long received, long mapped,
+                        QueryResult queryResult, int rows) {
+        Tags tags = queryMetrics.tags(criteria);
+        queryMetrics.record(QueryMetrics.BUILD, tags, start, sent);
+        queryMetrics.record(QueryMetrics.INFLUXDB, tags, sent, received);
+        queryMetrics.record(QueryMetrics.MAP, tags, received, mapped);
+        queryMetrics.mapped(tags, queryResult, rows);
+        slowQueryLog.record(criteria.getTenantId(), query, start, sent, received, mapped, queryResult, rows);
+    }
+
+    private List<QueryCriteria> split(QueryCriteria criteria) {
+        if (!querySplitProperties.isEnabled()) {
+            return Collections.singletonList(criteria);
+        }
+        return TimeRangeSplitter.split(criteria, querySplitProperties.getMaxParts(),
+                querySplitProperties.getMinRange(), System.currentTimeMillis());
+    }
+
+    private QueryCriteria withTarget(QueryCriteria criteria) {
+        return criteria.toBuilder()
+                .database(influxDBProperties.getDatabase())
+                .table(MEASUREMENT_NAME)
+                .rollups(rollupTiers.isReady(criteria.getIntervalUnit()))
+                .build();
+    }
+}
@@ -0,0 +1,32 @@
+package com.iot.tsa.repository;
+
+import com.iot.tsa.config.RollupProperties;
+import com.iot.tsa.enums.TimeUnit;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The rollup tiers queries are read from: the ones whose backfill completed, which the
+ * initializer marks once their continuous query exists. Until then a tier may miss history and
+ * queries of its buckets run over the raw measurement.
+ */
+@Component
+public class RollupTiers {
+
+    private final RollupProperties properties;
+    private final Set<TimeUnit> ready = ConcurrentHashMap.newKeySet();
+
+    public RollupTiers(RollupProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isReady(TimeUnit unit) {
+        return properties.isEnabled() && unit != null && ready.contains(unit);
+    }
+
+    public void markReady(TimeUnit unit) {
+        ready.add(unit);
+    }
+}
@@ -1,55 +1,349 @@
 package com.iot.tsa.repository;
 
+import com.iot.tsa.config.InfluxDBClientProperties;
+import com.iot.tsa.config.QuerySplitProperties;
 import com.iot.tsa.model.SensorData;
+import com.iot.tsa.model.SensorDataColumns;
+import com.iot.tsa.util.db.ChunkConsumer;
+import com.iot.tsa.util.db.ColumnarResultMapper;
 import com.iot.tsa.util.db.QueryCriteria;
 import com.iot.tsa.util.db.CustomInfluxDBResultMapper;
+import com.iot.tsa.util.db.TimeRangeSplitter;
+import io.micrometer.core.instrument.Tags;
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDBException;
 import org.influxdb.annotation.Measurement;
+import org.influxdb.dto.BoundParameterQuery;
 import org.influxdb.dto.Point;
 import org.influxdb.dto.Query;
 import org.influxdb.dto.QueryResult;
 import org.springframework.data.influxdb.InfluxDBTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Repository
 public class SensorDataRepository {
 
+    private static final String MEASUREMENT_NAME = SensorData.class.getAnnotation(Measurement.class).name();
+    private static final Object END_OF_STREAM = new Object();
+    private static final String END_OF_CHUNKS = "DONE";
+    private static final long OFFER_TIMEOUT_MILLIS = 100L;
+
     private final InfluxDBTemplate<Point> influxDBTemplate;
+    private final RollupTiers rollupTiers;
+    private final QuerySplitProperties querySplitProperties;
+    private final QueryExecutor queryExecutor;
+    private final QueryMetrics queryMetrics;
+    private final SlowQueryLog slowQueryLog;
+    private final HotWindowStore hotWindow;
+    private final boolean messagePack;
 
-    public SensorDataRepository(InfluxDBTemplate<Point> influxDBTemplate) {
+    public SensorDataRepository(InfluxDBTemplate<Point> influxDBTemplate,
+                                RollupTiers rollupTiers,
+                                QuerySplitProperties querySplitProperties,
+                                QueryExecutor queryExecutor,
+                                QueryMetrics queryMetrics,
+                                SlowQueryLog slowQueryLog,
+                                HotWindowStore hotWindow,
+                                InfluxDBClientProperties clientProperties) {
         this.influxDBTemplate = influxDBTemplate;
+        this.rollupTiers = rollupTiers;
+        this.querySplitProperties = querySplitProperties;
+        this.queryExecutor = queryExecutor;
+        this.queryMetrics = queryMetrics;
+        this.slowQueryLog = slowQueryLog;
+        this.hotWindow = hotWindow;
+        this.messagePack = clientProperties.getResponseFormat() == InfluxDB.ResponseFormat.MSGPACK;
     }
 
-    private List<SensorData> query(Query query) {
-
-        QueryResult queryResult = influxDBTemplate.query(query);
-
-        return parse(queryResult);
+    private List<SensorData> query(QueryCriteria criteria) {
+        long start = System.nanoTime();
+        Query query = withTarget(criteria).toQuery();
+        long sent = System.nanoTime();
+        // times as epoch millis, mapped without parsing a date
+        QueryResult queryResult = influxDBTemplate.query(query, TimeUnit.MILLISECONDS);
+        long received = System.nanoTime();
+        List<SensorData> data = parse(queryResult);
+        long mapped = System.nanoTime();
 
+        record(criteria, query, start, sent, received, mapped, queryResult, data.size());
+        return data;
     }
 
     private List<SensorData> parse(QueryResult queryResult) {
 
         CustomInfluxDBResultMapper resultMapper = new CustomInfluxDBResultMapper();
 
-        return resultMapper.toPOJO(queryResult, SensorData.class);
+        return resultMapper.toPOJO(queryResult, SensorData.class, TimeUnit.MILLISECONDS);
     }
 
+    private SensorDataColumns queryColumns(QueryCriteria criteria) {
+        long start = System.nanoTime();
+        Query query = withTarget(criteria).toQuery();
+        long sent = System.nanoTime();
+        QueryResult queryResult = influxDBTemplate.query(query, TimeUnit.MILLISECONDS);
+        long received = System.nanoTime();
+        SensorDataColumns columns = new ColumnarResultMapper()
+                .toColumns(queryResult, MEASUREMENT_NAME, TimeUnit.MILLISECONDS);
+        long mapped = System.nanoTime();
+
+        record(criteria, query, start, sent, received, mapped, queryResult, columns.size());
+        return columns;
+    }
+
+    private void record(QueryCriteria criteria, Query query, long start, long sent, long received, long mapped,
+                        QueryResult queryResult, int rows) {
+        Tags tags = queryMetrics.tags(criteria);
+        queryMetrics.record(QueryMetrics.BUILD, tags, start, sent);
+        queryMetrics.record(QueryMetrics.INFLUXDB, tags, sent, received);
+        queryMetrics.record(QueryMetrics.MAP, tags, received, mapped);
+        queryMetrics.mapped(tags, queryResult, rows);
+        slowQueryLog.record(criteria.getTenantId(), query, start, sent, received, mapped, queryResult, rows);
+    }
+
+    /**
+     * Ranges the {@link HotWindowStore} holds every point of are answered from memory. Wide time
+     * ranges are split into sub-ranges queried and mapped in parallel, then put back together in
+     * order.
+     */
     public List<SensorData> findAllByCriteria(QueryCriteria criteria) {
+        List<SensorData> recent = hotWindow.findAllByCriteria(criteria);
+        if (recent != null) {
+            return recent;
+        }
+        List<QueryCriteria> ranges = split(criteria);
+        if (ranges.size() == 1) {
+            return query(criteria);
+        }
+
+        List<Callable<List<SensorData>>> queries = new ArrayList<>(ranges.size());
+        for (QueryCriteria range : ranges) {
+            queries.add(() -> query(range));
+        }
+        List<SensorData> data = new ArrayList<>();
+        for (List<SensorData> part : queryExecutor.invokeAll(queries)) {
+            data.addAll(part);
+        }
+        return data;
+    }
+
+    public SensorDataColumns findColumnsByCriteria(QueryCriteria criteria) {
+        SensorDataColumns recent = hotWindow.findColumnsByCriteria(criteria);
+        if (recent != null) {
+            return recent;
+        }
+        List<QueryCriteria> ranges = split(criteria);
+        if (ranges.size() == 1) {
+            return queryColumns(criteria);
+        }
+
+        List<Callable<SensorDataColumns>> queries = new ArrayList<>(ranges.size());
+        for (QueryCriteria range : ranges) {
+            queries.add(() -> queryColumns(range));
+        }
+        return SensorDataColumns.concat(queryExecutor.invokeAll(queries));
+    }
+
+    /**
+     * Runs the query as an InfluxDB chunked query and hands every mapped chunk to the consumer on
+     * the calling thread. At most <tt>maxPendingChunks</tt> chunks are held in memory, reading from
+     * InfluxDB blocks until the consumer catches up, so memory stays bounded however many rows the
+     * query returns. If the consumer fails the InfluxDB query is cancelled.
+     */
+    public void streamAllByCriteria(QueryCriteria criteria, int chunkSize, int maxPendingChunks,
+                                    ChunkConsumer<SensorData> consumer) throws IOException {
+
+        BlockingQueue<Object> chunks = new ArrayBlockingQueue<>(maxPendingChunks);
+        AtomicReference<InfluxDB.Cancellable> cancellable = new AtomicReference<>();
+        AtomicBoolean closed = new AtomicBoolean();
+
+        Tags tags = queryMetrics.tags(criteria);
+        long start = System.nanoTime();
+        Query query = withTarget(criteria).toQuery();
+        queryMetrics.record(QueryMetrics.BUILD, tags, start, System.nanoTime());
+
+        influxDBTemplate.getConnection().query(query, chunkSize,
+                (c, queryResult) -> {
+                    cancellable.set(c);
+                    // the client signals the end of the response as a "DONE" error, then completes
+                    if (!END_OF_CHUNKS.equals(queryResult.getError())) {
+                        offer(chunks, queryResult, closed);
+                    }
+                },
+                () -> offer(chunks, END_OF_STREAM, closed),
+                error -> offer(chunks, error, closed));
+
+        CustomInfluxDBResultMapper resultMapper = new CustomInfluxDBResultMapper();
+        // a chunked query has no precision: JSON sends RFC3339 times, MessagePack timestamps in nanos
+        TimeUnit precision = messagePack ? TimeUnit.NANOSECONDS : TimeUnit.MILLISECONDS;
+        boolean completed = false;
+        try {
+            Object next;
+            while ((next = chunks.take()) != END_OF_STREAM) {
+                if (next instanceof Throwable) {
+                    throw new InfluxDBException((Throwable) next);
+                }
+                start = System.nanoTime();
+                List<SensorData> chunk = resultMapper.toPOJO((QueryResult) next, SensorData.class, precision);
+                queryMetrics.record(QueryMetrics.MAP, tags, start, System.nanoTime());
+                queryMetrics.mapped(tags, (QueryResult) next, chunk.size());
+                consumer.accept(chunk);
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while streaming " + criteria.getId());
+        } finally {
+            closed.set(true);
+            InfluxDB.Cancellable c = cancellable.get();
+            if (!completed && c != null && !c.isCanceled()) {
+                c.cancel();
+            }
+            chunks.clear();
+        }
+    }
+
+    private static void offer(BlockingQueue<Object> chunks, Object chunk, AtomicBoolean closed) {
+        try {
+            while (!closed.get() && !chunks.offer(chunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                // waiting for the consumer to take a chunk, or to give up
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The ids of the sensors of a tenant, from the tag index rather than the points.
+     */
+    public List<String> findIdsByTenantId(String tenantId) {
+        Query query = BoundParameterQuery.QueryBuilder
+                .newQuery("SHOW TAG VALUES FROM " + MEASUREMENT_NAME + " WITH KEY = \"id\" WHERE tenantId = $tenantId")
+                .forDatabase(influxDBTemplate.getDatabase())
+                .bind("tenantId", tenantId)
+                .create();
+
+        QueryResult queryResult = influxDBTemplate.query(query);
+        if (queryResult.hasError()) {
+            throw new InfluxDBException(queryResult.getError());
+        }
+
+        List<String> ids = new ArrayList<>();
+        for (QueryResult.Result result : queryResult.getResults()) {
+            if (result.hasError()) {
+                throw new InfluxDBException(result.getError());
+            }
+            if (result.getSeries() == null) {
+                continue;
+            }
+            for (QueryResult.Series series : result.getSeries()) {
+                int value = series.getColumns().indexOf("value");
+                for (List<Object> row : series.getValues()) {
+                    ids.add(String.valueOf(row.get(value)));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The last value of every field of every sensor of a tenant, a row per field and sensor at the
+     * time of its point. A <tt>last(*)</tt> over several fields returns the start of the range as
+     * the time of every row instead, so every field is its own <tt>last(...)</tt> statement, all of
+     * them sent as one query. The columns are named as <tt>last(*)</tt> names them.
+     *
+     * @param from an RFC3339 time to only read the points at or after, or <tt>null</tt>
+     */
+    public List<SensorData> findLastValuesByTenantId(String tenantId, String from) {
+        List<String> fields = findFieldKeys();
+        if (fields.isEmpty()) {
+            return Collections.emptyList();
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String field : fields) {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append("SELECT last(").append(identifier(field)).append(") AS ")
+                    .append(identifier("last_" + field))
+                    .append(" FROM ").append(MEASUREMENT_NAME)
+                    .append(" WHERE tenantId = $tenantId");
+            if (from != null) {
+                sb.append(" AND time >= $from");
+            }
+            sb.append(" GROUP BY tenantId, id");
+        }
+        BoundParameterQuery.QueryBuilder query = BoundParameterQuery.QueryBuilder
+                .newQuery(sb.toString())
+                .forDatabase(influxDBTemplate.getDatabase())
+                .bind("tenantId", tenantId);
+        if (from != null) {
+            query.bind("from", from);
+        }
+
+        QueryResult queryResult = influxDBTemplate.query(query.create(), TimeUnit.MILLISECONDS);
+        return parse(queryResult);
+    }
+
+    private List<String> findFieldKeys() {
+        Query query = new Query("SHOW FIELD KEYS FROM " + MEASUREMENT_NAME, influxDBTemplate.getDatabase());
+
+        QueryResult queryResult = influxDBTemplate.query(query);
+        if (queryResult.hasError()) {
+            throw new InfluxDBException(queryResult.getError());
+        }
+
+        List<String> fields = new ArrayList<>();
+        for (QueryResult.Result result : queryResult.getResults()) {
+            if (result.hasError()) {
+                throw new InfluxDBException(result.getError());
+            }
+            if (result.getSeries() == null) {
+                continue;
+            }
+            for (QueryResult.Series series : result.getSeries()) {
+                int fieldKey = series.getColumns().indexOf("fieldKey");
+                for (List<Object> row : series.getValues()) {
+                    fields.add(String.valueOf(row.get(fieldKey)));
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static String identifier(String name) {
+        return '"' + name.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    public void saveAll(List<Point> points) {
+        influxDBTemplate.write(points);
+        hotWindow.append(points);
+    }
+
+    private List<QueryCriteria> split(QueryCriteria criteria) {
+        if (!querySplitProperties.isEnabled()) {
+            return Collections.singletonList(criteria);
+        }
+        return TimeRangeSplitter.split(criteria, querySplitProperties.getMaxParts(),
+                querySplitProperties.getMinRange(), System.currentTimeMillis());
+    }
 
-        QueryCriteria newCriteria = new QueryCriteria.Builder()
+    private QueryCriteria withTarget(QueryCriteria criteria) {
+        return criteria.toBuilder()
                 .database(influxDBTemplate.getDatabase())
-                .table(SensorData.class.getAnnotation(Measurement.class).name())
-                .id(criteria.getId())
-                .tenantId(criteria.getTenantId())
-                .selectCriteria(criteria.getSelectCriteria())
-                .intervalValue(criteria.getIntervalValue())
-                .to(criteria.getTo())
-                .from(criteria.getFrom())
-                .intervalUnit(criteria.getIntervalUnit())
-                .groupByCriteria(criteria.getGroupByCriteria())
+                .table(MEASUREMENT_NAME)
+                .rollups(rollupTiers.isReady(criteria.getIntervalUnit()))
                 .build();
-        return query(newCriteria.toQuery());
     }
 }
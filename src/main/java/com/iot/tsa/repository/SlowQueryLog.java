@@ -0,0 +1,99 @@
+package com.iot.tsa.repository;
+
+import com.iot.tsa.config.SlowQueryProperties;
+import com.iot.tsa.model.SlowQuery;
+import org.influxdb.dto.BoundParameterQuery;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.QueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The most recent queries slower than <tt>tsa.slow-query.threshold</tt>, to find the shapes of
+ * query that need a rollup or caching. They are kept in a ring buffer without locks, recording
+ * a query only claims the next slot and overwrites the oldest one.
+ */
+@Component
+public class SlowQueryLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final SlowQueryProperties properties;
+    private final AtomicReferenceArray<SlowQuery> queries;
+    private final AtomicLong next = new AtomicLong();
+
+    public SlowQueryLog(SlowQueryProperties properties) {
+        this.properties = properties;
+        this.queries = new AtomicReferenceArray<>(Math.max(properties.getCapacity(), 1));
+    }
+
+    /**
+     * Records the query if it was slow, the times are {@link System#nanoTime()}s.
+     *
+     * @param start    when building the query started
+     * @param sent     when it was sent to InfluxDB
+     * @param received when the result was read
+     * @param mapped   when the result was mapped
+     */
+    public void record(String tenantId, Query query, long start, long sent, long received, long mapped,
+                       QueryResult queryResult, int rows) {
+        if (!properties.isEnabled() || mapped - start < properties.getThreshold().toNanos()) {
+            return;
+        }
+        SlowQuery slowQuery = new SlowQuery(Instant.now(), tenantId, query.getCommand(), parameters(query),
+                (mapped - start) / NANOS_PER_MILLI, (received - sent) / NANOS_PER_MILLI,
+                (mapped - received) / NANOS_PER_MILLI, QueryMetrics.series(queryResult), rows);
+        queries.set((int) (next.getAndIncrement() % queries.length()), slowQuery);
+
+        if (properties.isLog()) {
+            LOGGER.warn("Slow query tenantId={} durationMillis={} serverMillis={} mapMillis={} series={} rows={} "
+                            + "query=\"{}\" parameters={}", slowQuery.getTenantId(),
+                    slowQuery.getDurationMillis(), slowQuery.getServerMillis(), slowQuery.getMapMillis(),
+                    slowQuery.getSeries(), slowQuery.getRows(), slowQuery.getQuery(), slowQuery.getParameters());
+        }
+    }
+
+    /**
+     * The slow queries kept, slowest first.
+     */
+    public List<SlowQuery> findAll() {
+        List<SlowQuery> result = new ArrayList<>(queries.length());
+        for (int i = 0; i < queries.length(); i++) {
+            SlowQuery slowQuery = queries.get(i);
+            if (slowQuery != null) {
+                result.add(slowQuery);
+            }
+        }
+        result.sort(Comparator.comparingDouble(SlowQuery::getDurationMillis).reversed());
+        return result;
+    }
+
+    public void clear() {
+        for (int i = 0; i < queries.length(); i++) {
+            queries.set(i, null);
+        }
+    }
+
+    private static String parameters(Query query) {
+        if (!(query instanceof BoundParameterQuery)) {
+            return null;
+        }
+        try {
+            return URLDecoder.decode(((BoundParameterQuery) query).getParameterJsonWithUrlEncoded(), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
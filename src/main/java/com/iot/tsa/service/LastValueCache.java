@@ -0,0 +1,175 @@
+package com.iot.tsa.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iot.tsa.config.LastValueCacheProperties;
+import com.iot.tsa.model.SensorData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import static com.iot.tsa.util.TimeFormatter.toZulu;
+
+/**
+ * Latest point of every sensor, per tenant. A tenant is loaded with a full <tt>last(*)</tt> query
+ * on first use and, once its values are older than the configured staleness, refreshed with a
+ * query that only reads points newer than the newest point read so far (minus the configured
+ * lateness). Every rebuild interval the tenant is loaded again with the full query instead, so
+ * sensors whose points were deleted or expired leave it, and points written later than the
+ * lateness show up.
+ * <p>
+ * Every field keeps the value of its most recent point, compared by the time of that point, and
+ * the time of a sensor is the time of its most recent point. Beyond the configured maximum,
+ * Caffeine drops the tenants it expects to be asked for least, by how often they were asked for
+ * recently (W-TinyLFU).
+ */
+@Component
+public class LastValueCache {
+
+    private static final String ID = "id";
+
+    private final LastValueCacheProperties properties;
+    private final Cache<String, TenantLastValues> tenants;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer refreshes;
+
+    public LastValueCache(LastValueCacheProperties properties,
+                          MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.tenants = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumTenants())
+                .expireAfterAccess(properties.getExpireAfterAccess())
+                .build();
+        this.hits = meterRegistry.counter("tsa.lastvalue.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("tsa.lastvalue.cache.requests", "result", "miss");
+        this.refreshes = meterRegistry.timer("tsa.lastvalue.cache.refresh");
+        Gauge.builder("tsa.lastvalue.cache.tenants", tenants, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    /**
+     * Returns the latest point of every sensor of the tenant.
+     *
+     * @param tenantId the tenant
+     * @param loader   queries the last value of every field of every sensor of the tenant, a row
+     *                 per field at the time of its point, reading only points at or after the
+     *                 given RFC3339 time when it is not <tt>null</tt>
+     */
+    public List<SensorData> findAllByTenantId(String tenantId, Function<String, List<SensorData>> loader) {
+        return new ArrayList<>(values(tenantId, loader).values());
+    }
+
+    public List<SensorData> findAllByTenantIdAndId(String tenantId, String id,
+                                                   Function<String, List<SensorData>> loader) {
+        SensorData sensorData = values(tenantId, loader).get(id);
+        return sensorData != null ? Collections.singletonList(sensorData) : Collections.emptyList();
+    }
+
+    private Map<String, SensorData> values(String tenantId, Function<String, List<SensorData>> loader) {
+        TenantLastValues tenant = tenants.get(tenantId, key -> new TenantLastValues());
+        long now = System.nanoTime();
+        if (tenant.isFresh(now, properties.getStaleness().toNanos())) {
+            hits.increment();
+            return tenant.values;
+        }
+        misses.increment();
+        synchronized (tenant) {
+            // another request may have refreshed it while this one was waiting
+            if (!tenant.isFresh(System.nanoTime(), properties.getStaleness().toNanos())) {
+                refreshes.record(() -> tenant.refresh(loader));
+            }
+            return tenant.values;
+        }
+    }
+
+    private final class TenantLastValues {
+
+        private volatile Map<String, SensorData> values = Collections.emptyMap();
+        private volatile long refreshedAt;
+        private volatile boolean loaded;
+        private long rebuiltAt;
+        private Instant highWaterMark;
+        // the time of the point of every field value, by sensor, only used while refreshing
+        private final Map<String, Map<String, Instant>> fieldTimes = new HashMap<>();
+
+        boolean isFresh(long now, long stalenessNanos) {
+            return loaded && now - refreshedAt < stalenessNanos;
+        }
+
+        void refresh(Function<String, List<SensorData>> loader) {
+            Instant startedAt = Instant.now();
+            boolean rebuild = highWaterMark == null
+                    || System.nanoTime() - rebuiltAt >= properties.getRebuildInterval().toNanos();
+            List<SensorData> latest = loader.apply(
+                    rebuild ? null : toZulu(highWaterMark.minus(properties.getLateness())));
+
+            if (rebuild) {
+                fieldTimes.clear();
+            }
+            // copy on write, readers never see a half merged map
+            Map<String, SensorData> merged = rebuild ? new TreeMap<>() : new TreeMap<>(values);
+            Instant newest = rebuild ? null : highWaterMark;
+            for (SensorData sensorData : latest) {
+                Object id = sensorData.getExtraFields() != null ? sensorData.getExtraFields().get(ID) : null;
+                if (id != null) {
+                    String key = String.valueOf(id);
+                    merged.put(key, merge(merged.get(key),
+                            fieldTimes.computeIfAbsent(key, k -> new HashMap<>()), sensorData));
+                }
+                Instant time = sensorData.getTime();
+                if (time != null && (newest == null || time.isAfter(newest))) {
+                    newest = time;
+                }
+            }
+
+            this.values = Collections.unmodifiableMap(merged);
+            // the newest point read, never past the start of the query so a point ahead of the
+            // clock does not hide the points written after it
+            this.highWaterMark = newest != null && newest.isAfter(startedAt) ? startedAt : newest;
+            if (rebuild) {
+                this.rebuiltAt = System.nanoTime();
+            }
+            this.refreshedAt = System.nanoTime();
+            this.loaded = true;
+        }
+
+        /**
+         * A refresh only covers the recent window, fields without points in it keep their
+         * previous last value. The window overlaps the previous refresh by the lateness, a field
+         * only takes the value of a point at least as recent as the one it holds.
+         */
+        private SensorData merge(SensorData previous, Map<String, Instant> times, SensorData latest) {
+            Map<String, Object> fields = previous != null
+                    ? new HashMap<>(previous.getExtraFields()) : new HashMap<>();
+            Instant time = previous != null ? previous.getTime() : null;
+            Instant latestTime = latest.getTime();
+            latest.getExtraFields().forEach((name, value) -> {
+                if (value == null) {
+                    return;
+                }
+                Instant held = times.get(name);
+                if (held == null || (latestTime != null && !latestTime.isBefore(held))) {
+                    fields.put(name, value);
+                    if (latestTime != null) {
+                        times.put(name, latestTime);
+                    }
+                }
+            });
+            SensorData sensorData = new SensorData();
+            sensorData.setTime(latestTime != null && (time == null || latestTime.isAfter(time)) ? latestTime : time);
+            sensorData.setExtraFields(fields);
+            return sensorData;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.iot.tsa.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.iot.tsa.config.AdmissionProperties;
+import com.iot.tsa.exception.QueryRejectedException;
+import com.iot.tsa.exception.QueryThrottledException;
+import com.iot.tsa.util.db.QueryCriteria;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits the queries of every tenant within its budget, so one tenant asking for expensive
+ * queries cannot slow down the others. Every tenant has a token bucket of estimated points,
+ * see {@link QueryCostEstimator}, and a limit of queries running at the same time.
+ * <p>
+ * A query is admitted as soon as its tenant has as many tokens as it costs, or a full bucket
+ * when it costs more, and its cost is then taken even if the bucket goes below zero: a query
+ * more expensive than the bucket is not rejected forever, it delays the next queries of its own
+ * tenant instead. A query that would wait longer than <tt>maxWait</tt> for either tokens or a
+ * running query to finish is rejected with the time it should be retried after.
+ * <p>
+ * The budget of a tenant is forgotten once it had no query for <tt>expireAfterAccess</tt>, never
+ * while one of its queries runs: a budget dropped then would let the tenant run another
+ * <tt>maxConcurrent</tt> queries next to the ones still holding the permits of the old one.
+ */
+@Component
+public class QueryAdmissionControl {
+
+    private final AdmissionProperties properties;
+    private final QueryCostEstimator costEstimator;
+    private final Cache<String, Budget> budgets;
+    private final Counter admitted;
+    private final Counter delayed;
+    private final Counter rejected;
+
+    public QueryAdmissionControl(AdmissionProperties properties,
+                                 QueryCostEstimator costEstimator,
+                                 MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.costEstimator = costEstimator;
+        this.budgets = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, Budget>() {
+                    @Override
+                    public long expireAfterCreate(String tenantId, Budget budget, long currentTime) {
+                        return idle(budget);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String tenantId, Budget budget, long currentTime,
+                                                  long currentDuration) {
+                        return idle(budget);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String tenantId, Budget budget, long currentTime,
+                                                long currentDuration) {
+                        return idle(budget);
+                    }
+                })
+                .build();
+        this.admitted = meterRegistry.counter("tsa.admission.requests", "result", "admitted");
+        this.delayed = meterRegistry.counter("tsa.admission.requests", "result", "delayed");
+        this.rejected = meterRegistry.counter("tsa.admission.requests", "result", "rejected");
+    }
+
+    /**
+     * Waits until the query can run, the returned permit must be closed once it is done.
+     *
+     * @param series how many sensors the criteria is run for
+     * @throws QueryThrottledException if it would wait longer than <tt>maxWait</tt>
+     */
+    public Permit admit(QueryCriteria criteria, int series) {
+        if (!properties.isEnabled()) {
+            return Permit.NONE;
+        }
+        String tenantId = criteria.getTenantId();
+        long cost = costEstimator.estimate(criteria, series);
+        Budget budget = budgets.get(tenantId, key -> new Budget(properties.getCapacity(),
+                properties.getMaxConcurrent()));
+        long maxWaitNanos = properties.getMaxWait().toNanos();
+        long deadline = System.nanoTime() + maxWaitNanos;
+
+        long waitNanos = budget.reserve(cost, properties.getCapacity(), properties.getRefillRate(), maxWaitNanos);
+        if (waitNanos < 0) {
+            rejected.increment();
+            throw new QueryThrottledException("Query budget of tenant " + tenantId + " exhausted",
+                    Duration.ofNanos(-waitNanos));
+        }
+
+        try {
+            if (waitNanos > 0) {
+                delayed.increment();
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            if (!budget.running.tryAcquire(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                budget.refund(cost);
+                rejected.increment();
+                throw new QueryThrottledException("Too many queries of tenant " + tenantId + " running",
+                        properties.getMaxWait());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            budget.refund(cost);
+            throw new QueryRejectedException("Interrupted while waiting to be admitted", e);
+        }
+        admitted.increment();
+        // read again to keep the budget while the query runs, and once it is done to start its
+        // idle time over
+        budgets.getIfPresent(tenantId);
+        return new Permit(() -> {
+            budget.running.release();
+            budgets.getIfPresent(tenantId);
+        });
+    }
+
+    /**
+     * How long a budget is kept from now on: for good while any of its queries runs.
+     */
+    private long idle(Budget budget) {
+        return budget.isRunning() ? Long.MAX_VALUE : properties.getExpireAfterAccess().toNanos();
+    }
+
+    /**
+     * A running query, closing it lets the next query of the tenant run.
+     */
+    public static final class Permit implements AutoCloseable {
+
+        private static final Permit NONE = new Permit(null);
+
+        private final Runnable release;
+
+        private Permit(Runnable release) {
+            this.release = release;
+        }
+
+        @Override
+        public void close() {
+            if (release != null) {
+                release.run();
+            }
+        }
+    }
+
+    private static final class Budget {
+
+        private final Semaphore running;
+        private final int maxConcurrent;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        Budget(long capacity, int maxConcurrent) {
+            this.tokens = capacity;
+            this.running = new Semaphore(maxConcurrent);
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        boolean isRunning() {
+            return running.availablePermits() < maxConcurrent;
+        }
+
+        /**
+         * Takes the cost from the bucket if it can be paid within <tt>maxWaitNanos</tt>.
+         *
+         * @return how long to wait before the query may run, or minus how long it would have to
+         * wait when that is longer than <tt>maxWaitNanos</tt>
+         */
+        synchronized long reserve(long cost, long capacity, long refillRate, long maxWaitNanos) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) / 1e9 * refillRate);
+            refilledAt = now;
+
+            double missing = Math.min(cost, capacity) - tokens;
+            long waitNanos = missing > 0 ? (long) Math.ceil(missing / refillRate * 1e9) : 0L;
+            if (waitNanos > maxWaitNanos) {
+                return -waitNanos;
+            }
+            tokens -= cost;
+            return waitNanos;
+        }
+
+        synchronized void refund(long cost) {
+            tokens += cost;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.iot.tsa.service;
+
+import com.iot.tsa.config.AdmissionProperties;
+import com.iot.tsa.config.QueryCacheProperties;
+import com.iot.tsa.repository.RollupTiers;
+import com.iot.tsa.util.db.Now;
+import com.iot.tsa.util.db.QueryCriteria;
+import com.iot.tsa.util.db.Rollup;
+import com.iot.tsa.util.db.SelectExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Estimates how many points InfluxDB reads to answer a query: the points the time range holds
+ * for every series, or the rows of the rollup tier the query is routed to, weighted by the
+ * {@link com.iot.tsa.enums.AggregateFunction#getCost() cost} of the most expensive function.
+ * Closed buckets served by the {@link QueryResultCache} cost nothing.
+ */
+@Component
+public class QueryCostEstimator {
+
+    private final AdmissionProperties properties;
+    private final RollupTiers rollupTiers;
+    private final QueryCacheProperties queryCacheProperties;
+    private final QueryResultCache queryResultCache;
+
+    public QueryCostEstimator(AdmissionProperties properties,
+                              RollupTiers rollupTiers,
+                              QueryCacheProperties queryCacheProperties,
+                              QueryResultCache queryResultCache) {
+        this.properties = properties;
+        this.rollupTiers = rollupTiers;
+        this.queryCacheProperties = queryCacheProperties;
+        this.queryResultCache = queryResultCache;
+    }
+
+    /**
+     * @param series how many sensors the criteria is run for
+     */
+    public long estimate(QueryCriteria criteria, int series) {
+        long range = rangeMillis(criteria);
+        boolean grouped = criteria.getIntervalValue() != null && criteria.getIntervalValue() > 0
+                && criteria.getIntervalUnit() != null;
+        long bucket = grouped
+                ? criteria.getIntervalUnit().getChronoUnit().getDuration().toMillis() * criteria.getIntervalValue()
+                : 0L;
+
+        if (grouped && queryCacheProperties.isEnabled()
+                && queryResultCache.isCacheable(criteria) && queryResultCache.isCached(criteria)) {
+            range = Math.min(range, bucket + queryCacheProperties.getLateness().toMillis());
+        }
+
+        double points;
+        if (grouped && isRolledUp(criteria)) {
+            points = Math.ceil((double) range / bucket);
+        } else {
+            points = range / 1000.0 * properties.getPointsPerSecond();
+        }
+
+        int weight = 1;
+        for (SelectExpression expression : criteria.getSelect()) {
+            if (expression.isAggregate()) {
+                weight = Math.max(weight, expression.getFunction().getCost());
+            }
+        }
+        return Math.max(1L, (long) Math.ceil(points * weight * Math.max(series, 1)));
+    }
+
+    private long rangeMillis(QueryCriteria criteria) {
+        long now = System.currentTimeMillis();
+        Long from = StringUtils.isEmpty(criteria.getFrom()) ? null : Now.toEpochMillis(criteria.getFrom(), now);
+        Long to = StringUtils.isEmpty(criteria.getTo()) ? Long.valueOf(now) : Now.toEpochMillis(criteria.getTo(), now);
+        if (from == null || to == null) {
+            return properties.getDefaultRange().toMillis();
+        }
+        return Math.max(0L, to - from);
+    }
+
+    private boolean isRolledUp(QueryCriteria criteria) {
+        return rollupTiers.isReady(criteria.getIntervalUnit())
+                && ObjectUtils.isEmpty(criteria.getGroupByCriteria())
+                && Rollup.covers(criteria.getIntervalValue(), criteria.getIntervalUnit())
+                && Rollup.fields(criteria.getSelect()) != null;
+    }
+}
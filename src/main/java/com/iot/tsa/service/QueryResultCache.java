@@ -0,0 +1,205 @@
+package com.iot.tsa.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iot.tsa.config.QueryCacheProperties;
+import com.iot.tsa.enums.TimeUnit;
+import com.iot.tsa.model.SensorData;
+import com.iot.tsa.util.db.Now;
+import com.iot.tsa.util.db.QueryCriteria;
+import com.iot.tsa.util.db.SelectExpression;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ObjectUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import static com.iot.tsa.util.TimeFormatter.toZulu;
+
+/**
+ * Buckets of <tt>group by time(...)</tt> queries over a range relative to <tt>now()</tt>, like
+ * the ones of the shortcut links. Series are keyed by tenant, sensor, select and interval; the
+ * start of the range is snapped to the bucket boundary, so every request within the same bucket
+ * asks for the same buckets. Once a bucket is closed it is kept and never queried again, only
+ * the buckets still open are read from InfluxDB on each request.
+ */
+@Component
+public class QueryResultCache {
+
+    private final QueryCacheProperties properties;
+    private final Cache<Key, Series> series;
+    private final Counter hits;
+    private final Counter misses;
+
+    public QueryResultCache(QueryCacheProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.series = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterAccess(properties.getExpireAfterAccess())
+                .build();
+        this.hits = meterRegistry.counter("tsa.query.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("tsa.query.cache.requests", "result", "miss");
+        Gauge.builder("tsa.query.cache.series", series, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    /**
+     * Only <tt>group by time(...)</tt> queries from <tt>now() - duration</tt> up to now can be cached.
+     */
+    public boolean isCacheable(QueryCriteria criteria) {
+        return criteria.getIntervalValue() != null && criteria.getIntervalValue() > 0
+                && criteria.getIntervalUnit() != null
+                && ObjectUtils.isEmpty(criteria.getGroupByCriteria())
+                && criteria.getFrom() != null && Now.offset(criteria.getFrom()) != null
+                && (criteria.getTo() == null || Duration.ZERO.equals(Now.offset(criteria.getTo())));
+    }
+
+    /**
+     * Whether the closed buckets of a criteria {@link #isCacheable(QueryCriteria) that can be cached}
+     * are already cached, only the open ones would be read from InfluxDB.
+     */
+    public boolean isCached(QueryCriteria criteria) {
+        Series cached = series.getIfPresent(new Key(criteria));
+        if (cached == null) {
+            return false;
+        }
+        long bucket = bucketMillis(criteria);
+        long from = floor(System.currentTimeMillis() - Now.offset(criteria.getFrom()).toMillis(), bucket);
+        synchronized (cached) {
+            return cached.covers(from);
+        }
+    }
+
+    /**
+     * @param criteria a criteria {@link #isCacheable(QueryCriteria) that can be cached}
+     * @param loader   runs the query of the given criteria
+     */
+    public List<SensorData> findAll(QueryCriteria criteria, Function<QueryCriteria, List<SensorData>> loader) {
+        long bucket = bucketMillis(criteria);
+        long now = System.currentTimeMillis();
+        long from = floor(now - Now.offset(criteria.getFrom()).toMillis(), bucket);
+        // buckets starting before this one are complete
+        long closedUntil = floor(now - properties.getLateness().toMillis(), bucket);
+
+        Series cached = series.get(new Key(criteria), key -> new Series());
+        synchronized (cached) {
+            long loadFrom;
+            if (cached.covers(from)) {
+                hits.increment();
+                loadFrom = Math.max(cached.closedUntil, from);
+            } else {
+                misses.increment();
+                cached.reset(from);
+                loadFrom = from;
+            }
+
+            List<SensorData> open = new ArrayList<>();
+            for (SensorData sensorData : loader.apply(from(criteria, loadFrom))) {
+                long time = sensorData.getTime().toEpochMilli();
+                if (time < closedUntil) {
+                    cached.buckets.put(time, sensorData);
+                } else {
+                    open.add(sensorData);
+                }
+            }
+            cached.closedUntil = Math.max(cached.closedUntil, closedUntil);
+            cached.evict(now, from, bucket);
+
+            List<SensorData> result = new ArrayList<>(cached.buckets.size() + open.size());
+            result.addAll(cached.buckets.tailMap(from).values());
+            result.addAll(open);
+            return result;
+        }
+    }
+
+    private static long bucketMillis(QueryCriteria criteria) {
+        return criteria.getIntervalUnit().getChronoUnit().getDuration().toMillis() * criteria.getIntervalValue();
+    }
+
+    private static long floor(long time, long bucket) {
+        return Math.floorDiv(time, bucket) * bucket;
+    }
+
+    private static QueryCriteria from(QueryCriteria criteria, long from) {
+        return criteria.toBuilder()
+                .from(toZulu(Instant.ofEpochMilli(from)))
+                .to(null)
+                .build();
+    }
+
+    private static final class Series {
+
+        private final TreeMap<Long, SensorData> buckets = new TreeMap<>();
+        private boolean loaded;
+        private long coveredFrom;
+        private long closedUntil;
+        private long retention;
+
+        /**
+         * Whether every closed bucket from <tt>from</tt> on is cached.
+         */
+        boolean covers(long from) {
+            return loaded && coveredFrom <= from;
+        }
+
+        void reset(long from) {
+            buckets.clear();
+            loaded = true;
+            coveredFrom = from;
+            closedUntil = from;
+        }
+
+        /**
+         * Drops the buckets older than the widest range asked for, requests for shorter ranges
+         * share the same buckets.
+         */
+        void evict(long now, long from, long bucket) {
+            retention = Math.max(retention, now - from);
+            long oldest = floor(now - retention, bucket);
+            buckets.headMap(oldest).clear();
+            coveredFrom = Math.max(coveredFrom, oldest);
+        }
+    }
+
+    private static final class Key {
+
+        private final String tenantId;
+        private final String id;
+        private final List<SelectExpression> select;
+        private final Long intervalValue;
+        private final TimeUnit intervalUnit;
+
+        Key(QueryCriteria criteria) {
+            this.tenantId = criteria.getTenantId();
+            this.id = criteria.getId();
+            this.select = criteria.getSelect();
+            this.intervalValue = criteria.getIntervalValue();
+            this.intervalUnit = criteria.getIntervalUnit();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(tenantId, key.tenantId) &&
+                    Objects.equals(id, key.id) &&
+                    Objects.equals(select, key.select) &&
+                    Objects.equals(intervalValue, key.intervalValue) &&
+                    intervalUnit == key.intervalUnit;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tenantId, id, select, intervalValue, intervalUnit);
+        }
+    }
+}
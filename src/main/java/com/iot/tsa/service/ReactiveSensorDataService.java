@@ -0,0 +1,146 @@
+package com.iot.tsa.service;
+
+import com.iot.tsa.config.LastValueCacheProperties;
+import com.iot.tsa.config.QueryCacheProperties;
+import com.iot.tsa.config.StreamProperties;
+import com.iot.tsa.enums.Downsampling;
+import com.iot.tsa.model.SensorData;
+import com.iot.tsa.model.SensorDataColumns;
+import com.iot.tsa.repository.ReactiveSensorDataRepository;
+import com.iot.tsa.util.db.QueryCriteria;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * The non-blocking counterpart of {@link SensorDataService}.
+ * <p>
+ * Admission and the caches are shared with the blocking service, and they may block: waiting to
+ * be admitted and reading through a cache, which may load or refresh an entry, run on Reactor's
+ * bounded elastic threads. Every other query holds no thread while InfluxDB answers.
+ */
+@Service
+@ConditionalOnProperty(prefix = "tsa.reactive", name = "enabled", havingValue = "true")
+public class ReactiveSensorDataService {
+
+    private static final String[] SELECT_CRITERIA_LAST_VALUE = {"last(*)"};
+    private static final String[] GROUP_BY_CRITERIA_TENANT_ID_ID = {"tenantId", "id"};
+    private final ReactiveSensorDataRepository repository;
+    private final StreamProperties streamProperties;
+    private final LastValueCache lastValueCache;
+    private final LastValueCacheProperties lastValueCacheProperties;
+    private final QueryResultCache queryResultCache;
+    private final QueryCacheProperties queryCacheProperties;
+    private final QueryAdmissionControl admissionControl;
+
+    public ReactiveSensorDataService(ReactiveSensorDataRepository repository,
+                                     StreamProperties streamProperties,
+                                     LastValueCache lastValueCache,
+                                     LastValueCacheProperties lastValueCacheProperties,
+                                     QueryResultCache queryResultCache,
+                                     QueryCacheProperties queryCacheProperties,
+                                     QueryAdmissionControl admissionControl) {
+        this.repository = repository;
+        this.streamProperties = streamProperties;
+        this.lastValueCache = lastValueCache;
+        this.lastValueCacheProperties = lastValueCacheProperties;
+        this.queryResultCache = queryResultCache;
+        this.queryCacheProperties = queryCacheProperties;
+        this.admissionControl = admissionControl;
+    }
+
+    /**
+     * Like {@link SensorDataService#findAllByCriteria(QueryCriteria, Integer, Downsampling)}.
+     */
+    public Flux<SensorData> findAllByCriteria(QueryCriteria criteria, Integer maxPoints, Downsampling downsampling) {
+        SensorDataService.validateMaxPoints(maxPoints);
+        return Mono.fromCallable(() -> admissionControl.admit(criteria, 1))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(admission -> Flux.using(() -> admission,
+                        permit -> query(criteria, maxPoints, downsampling),
+                        QueryAdmissionControl.Permit::close));
+    }
+
+    /**
+     * Admits a query whose response is committed before it runs, like a streamed one. The
+     * permit must be closed once the query is done.
+     */
+    public QueryAdmissionControl.Permit admit(QueryCriteria criteria) {
+        return admissionControl.admit(criteria, 1);
+    }
+
+    /**
+     * Streams the query, the caller must hold a permit from {@link #admit(QueryCriteria)}.
+     */
+    public Flux<SensorData> streamAllByCriteria(QueryCriteria criteria) {
+        return repository.streamAllByCriteria(criteria, streamProperties.getChunkSize());
+    }
+
+    public Flux<SensorData> findAllLastValueByTenantId(String tenantId) {
+        if (lastValueCacheProperties.isEnabled()) {
+            return blocking(() -> lastValueCache.findAllByTenantId(tenantId,
+                    from -> findAllLastValue(tenantId, null, from).collectList().block()));
+        }
+        return findAllLastValue(tenantId, null, null);
+    }
+
+    public Flux<SensorData> findAllLastValueByTenantIdAndId(String tenantId, String id) {
+        if (lastValueCacheProperties.isEnabled()) {
+            return blocking(() -> lastValueCache.findAllByTenantIdAndId(tenantId, id,
+                    from -> findAllLastValue(tenantId, null, from).collectList().block()));
+        }
+        return findAllLastValue(tenantId, id, null);
+    }
+
+    private Flux<SensorData> query(QueryCriteria criteria, Integer maxPoints, Downsampling downsampling) {
+        if (maxPoints == null) {
+            return load(criteria);
+        }
+        return load(criteria)
+                .collectList()
+                .flatMapIterable(data -> {
+                    SensorDataColumns columns = SensorDataService.downsample(SensorDataColumns.of(data), maxPoints,
+                            downsampling);
+                    List<SensorData> downsampled = new ArrayList<>(columns.size());
+                    columns.toSensorData(downsampled);
+                    return downsampled;
+                });
+    }
+
+    private Flux<SensorData> load(QueryCriteria criteria) {
+        if (isCached(criteria)) {
+            return blocking(() -> queryResultCache.findAll(criteria,
+                    range -> repository.findAllByCriteria(range).collectList().block()));
+        }
+        return repository.findAllByCriteria(criteria);
+    }
+
+    private boolean isCached(QueryCriteria criteria) {
+        return queryCacheProperties.isEnabled() && queryResultCache.isCacheable(criteria);
+    }
+
+    private Flux<SensorData> findAllLastValue(String tenantId, String id, String from) {
+        QueryCriteria criteria = new QueryCriteria.Builder()
+                .tenantId(tenantId)
+                .id(id)
+                .from(from)
+                .selectCriteria(SELECT_CRITERIA_LAST_VALUE)
+                .groupByCriteria(GROUP_BY_CRITERIA_TENANT_ID_ID)
+                .build();
+
+        return repository.findAllByCriteria(criteria);
+    }
+
+    private static Flux<SensorData> blocking(Callable<List<SensorData>> call) {
+        return Mono.fromCallable(call)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapIterable(Function.identity());
+    }
+}
@@ -0,0 +1,168 @@
+package com.iot.tsa.service;
+
+import com.iot.tsa.config.IngestionProperties;
+import com.iot.tsa.repository.SensorDataRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.influxdb.dto.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Buffers incoming points in a bounded ring buffer and writes them to InfluxDB in batches, as
+ * soon as a batch is full or at the latest every flush interval. Writes are accepted all or
+ * nothing: when the points of a request do not fit in the buffer none of them is taken and the
+ * caller is expected to back off.
+ * <p>
+ * A batch InfluxDB fails to write is retried a few times with an exponential backoff, the points
+ * of a batch that still fails are dropped and counted.
+ */
+@Service
+public class SensorDataIngestionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorDataIngestionService.class);
+
+    private final SensorDataRepository repository;
+    private final IngestionProperties properties;
+    private final BlockingQueue<Point> buffer;
+    private final ScheduledExecutorService flusher;
+    // the free slots of the buffer, taken all at once for the points of a request and given back
+    // once they are drained, so a request is either taken whole or not at all
+    private final Semaphore free;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Counter retried;
+    private final Counter dropped;
+
+    public SensorDataIngestionService(SensorDataRepository repository,
+                                      IngestionProperties properties,
+                                      MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.properties = properties;
+        this.buffer = new ArrayBlockingQueue<>(properties.getBufferCapacity());
+        this.free = new Semaphore(properties.getBufferCapacity());
+        this.retried = meterRegistry.counter("tsa.ingestion.writes", "result", "retried");
+        this.dropped = meterRegistry.counter("tsa.ingestion.points", "result", "dropped");
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sensor-data-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getFlushInterval().toMillis();
+        this.flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return <tt>false</tt> when the buffer has no room for all the points, in which case none
+     * of them was accepted
+     */
+    public boolean offer(List<Point> points) {
+        if (!free.tryAcquire(points.size())) {
+            return false;
+        }
+        buffer.addAll(points);
+        requestFlushIfBatchIsFull();
+        return true;
+    }
+
+    /**
+     * Like {@link #offer(List)} but waits up to <tt>timeout</tt> for room in the buffer.
+     */
+    public boolean offer(List<Point> points, long timeout, TimeUnit unit) throws InterruptedException {
+        if (!free.tryAcquire(points.size())) {
+            // a flush makes room sooner than the next flush interval
+            requestFlush();
+            if (!free.tryAcquire(points.size(), timeout, unit)) {
+                return false;
+            }
+        }
+        buffer.addAll(points);
+        requestFlushIfBatchIsFull();
+        return true;
+    }
+
+    public boolean fits(int points) {
+        return points <= properties.getBufferCapacity();
+    }
+
+    public int getBuffered() {
+        return buffer.size();
+    }
+
+    private void requestFlushIfBatchIsFull() {
+        if (buffer.size() >= properties.getBatchSize()) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // shutting down, close() flushes what is left
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private void flush() {
+        flushRequested.set(false);
+        List<Point> batch = new ArrayList<>(properties.getBatchSize());
+        int drained;
+        while ((drained = buffer.drainTo(batch, properties.getBatchSize())) > 0) {
+            free.release(drained);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Point> batch) {
+        long backoff = properties.getRetryBackoff().toMillis();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                repository.saveAll(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= properties.getWriteRetries()) {
+                    dropped.increment(batch.size());
+                    LOGGER.error("Failed to write {} points to InfluxDB after {} attempts, they were dropped",
+                            batch.size(), attempt + 1, e);
+                    return;
+                }
+                LOGGER.warn("Failed to write {} points to InfluxDB, retrying in {} ms: {}",
+                        batch.size(), backoff, e.getMessage());
+            }
+            retried.increment();
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.increment(batch.size());
+                LOGGER.error("Interrupted while retrying to write {} points to InfluxDB, they were dropped",
+                        batch.size());
+                return;
+            }
+            backoff *= 2;
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(properties.getFlushInterval().toMillis() * 2, TimeUnit.MILLISECONDS);
+        flush();
+    }
+}
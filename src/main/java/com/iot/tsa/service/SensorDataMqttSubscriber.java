@@ -0,0 +1,222 @@
+package com.iot.tsa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.tsa.config.IngestionProperties;
+import com.iot.tsa.config.MqttProperties;
+import com.iot.tsa.exception.InvalidPayloadException;
+import com.iot.tsa.util.json.SensorDataPointParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.influxdb.dto.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subscribes to the topic the devices publish to and feeds the messages to the
+ * {@link SensorDataIngestionService}. Messages go through a bounded queue to a pool of parser
+ * threads, which wait for room in the ingestion buffer for as long as it takes. When both are
+ * full the MQTT callback blocks, the client stops acknowledging and the broker holds the messages
+ * that are not in flight yet. A queued message is only dropped on shutdown, or when it has more
+ * points than the ingestion buffer holds.
+ * <p>
+ * The client connects in the background, a broker that is down at startup is retried every
+ * <tt>connect-retry-interval</tt> until the first connection, the client reconnects by itself
+ * after that.
+ */
+@Component
+@ConditionalOnProperty(prefix = "tsa.mqtt", name = "enabled", havingValue = "true")
+public class SensorDataMqttSubscriber implements MqttCallbackExtended {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SensorDataMqttSubscriber.class);
+
+    private static final long POLL_MILLIS = 100L;
+
+    private final MqttProperties properties;
+    private final SensorDataIngestionService ingestionService;
+    private final SensorDataPointParser parser;
+    private final BlockingQueue<byte[]> queue;
+    private final ExecutorService parsers;
+    private final ScheduledExecutorService connector;
+    private final Counter accepted;
+    private final Counter invalid;
+    private final Counter dropped;
+
+    private MqttClient client;
+    private volatile boolean running = true;
+
+    public SensorDataMqttSubscriber(MqttProperties properties,
+                                    IngestionProperties ingestionProperties,
+                                    SensorDataIngestionService ingestionService,
+                                    ObjectMapper objectMapper,
+                                    MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.ingestionService = ingestionService;
+        this.parser = new SensorDataPointParser(objectMapper.getFactory(), ingestionProperties.getIgnoredKeys());
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        AtomicInteger threads = new AtomicInteger();
+        this.parsers = Executors.newFixedThreadPool(properties.getParserThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "sensor-data-mqtt-parser-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.connector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sensor-data-mqtt-connector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.accepted = meterRegistry.counter("tsa.mqtt.messages", "result", "accepted");
+        this.invalid = meterRegistry.counter("tsa.mqtt.messages", "result", "invalid");
+        this.dropped = meterRegistry.counter("tsa.mqtt.messages", "result", "dropped");
+        Gauge.builder("tsa.mqtt.queue", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws MqttException {
+        for (int i = 0; i < properties.getParserThreads(); i++) {
+            parsers.execute(this::parseLoop);
+        }
+
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setAutomaticReconnect(true);
+        options.setCleanSession(false);
+        if (properties.getUsername() != null) {
+            options.setUserName(properties.getUsername());
+        }
+        if (properties.getPassword() != null) {
+            options.setPassword(properties.getPassword().toCharArray());
+        }
+
+        client = new MqttClient(properties.getUrl(), properties.getClientId(), new MemoryPersistence());
+        client.setCallback(this);
+        connector.execute(() -> connect(options));
+    }
+
+    /**
+     * The automatic reconnect of the client only starts after a first successful connection.
+     */
+    private void connect(MqttConnectOptions options) {
+        if (!running) {
+            return;
+        }
+        try {
+            client.connect(options);
+        } catch (MqttException e) {
+            LOGGER.warn("Failed to connect to {}, retrying in {}", properties.getUrl(),
+                    properties.getConnectRetryInterval(), e);
+            connector.schedule(() -> connect(options), properties.getConnectRetryInterval().toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Also called after an automatic reconnect, when the subscription has to be renewed.
+     */
+    @Override
+    public void connectComplete(boolean reconnect, String serverURI) {
+        try {
+            client.subscribe(properties.getTopic(), properties.getQos());
+            LOGGER.info("Subscribed to {} on {}", properties.getTopic(), serverURI);
+        } catch (MqttException e) {
+            LOGGER.error("Failed to subscribe to {} on {}", properties.getTopic(), serverURI, e);
+        }
+    }
+
+    @Override
+    public void connectionLost(Throwable cause) {
+        LOGGER.warn("Lost the connection to {}, reconnecting", properties.getUrl(), cause);
+    }
+
+    @Override
+    public void messageArrived(String topic, MqttMessage message) throws InterruptedException {
+        // blocking here is the back-pressure, the message is not acknowledged until it is queued
+        queue.put(message.getPayload());
+    }
+
+    @Override
+    public void deliveryComplete(IMqttDeliveryToken token) {
+        // never publishes
+    }
+
+    private void parseLoop() {
+        try {
+            while (running || !queue.isEmpty()) {
+                byte[] payload = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (payload != null) {
+                    ingest(payload);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ingest(byte[] payload) throws InterruptedException {
+        List<Point> points;
+        try {
+            points = parser.parse(payload, null);
+        } catch (InvalidPayloadException | IOException e) {
+            invalid.increment();
+            LOGGER.debug("Ignoring MQTT message: {}", e.getMessage());
+            return;
+        }
+        if (!ingestionService.fits(points.size())) {
+            dropped.increment();
+            LOGGER.warn("Dropped an MQTT message with {} points, more than the ingestion buffer holds",
+                    points.size());
+            return;
+        }
+        // the message is already acknowledged to the broker, so it waits rather than being dropped,
+        // which fills the queue and blocks messageArrived
+        while (!ingestionService.offer(points, properties.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            if (!running) {
+                dropped.increment();
+                LOGGER.warn("Dropped an MQTT message with {} points on shutdown, the ingestion buffer is full",
+                        points.size());
+                return;
+            }
+            LOGGER.warn("An MQTT message with {} points is still waiting for room in the ingestion buffer",
+                    points.size());
+        }
+        accepted.increment();
+    }
+
+    @PreDestroy
+    public void close() throws MqttException, InterruptedException {
+        connector.shutdownNow();
+        try {
+            if (client != null) {
+                if (client.isConnected()) {
+                    client.disconnect();
+                }
+                client.close();
+            }
+        } finally {
+            // the parsers finish what is queued before the ingestion service flushes on close
+            running = false;
+            parsers.shutdown();
+            parsers.awaitTermination(properties.getOfferTimeout().toMillis() + POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
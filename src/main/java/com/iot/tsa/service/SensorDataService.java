@@ -1,40 +1,260 @@
 package com.iot.tsa.service;
 
+import com.iot.tsa.config.LastValueCacheProperties;
+import com.iot.tsa.config.QueryCacheProperties;
+import com.iot.tsa.config.QueryExecutorProperties;
+import com.iot.tsa.config.StreamProperties;
+import com.iot.tsa.enums.Downsampling;
+import com.iot.tsa.exception.InvalidQueryException;
+import com.iot.tsa.util.Downsampler;
+import com.iot.tsa.util.db.ChunkConsumer;
 import com.iot.tsa.util.db.QueryCriteria;
 import com.iot.tsa.model.SensorData;
+import com.iot.tsa.model.SensorDataColumns;
+import com.iot.tsa.repository.QueryExecutor;
 import com.iot.tsa.repository.SensorDataRepository;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
 
 @Service
 public class SensorDataService {
 
     private static final String[] SELECT_CRITERIA_LAST_VALUE = {"last(*)"};
     private static final String[] GROUP_BY_CRITERIA_TENANT_ID_ID = {"tenantId", "id"};
+    private static final int MIN_MAX_POINTS = 3;
+    private static final String ID = "id";
     private final SensorDataRepository repository;
+    private final StreamProperties streamProperties;
+    private final LastValueCache lastValueCache;
+    private final LastValueCacheProperties lastValueCacheProperties;
+    private final QueryResultCache queryResultCache;
+    private final QueryCacheProperties queryCacheProperties;
+    private final QueryExecutor queryExecutor;
+    private final QueryExecutorProperties queryExecutorProperties;
+    private final QueryAdmissionControl admissionControl;
 
-    public SensorDataService(SensorDataRepository repository) {
+    public SensorDataService(SensorDataRepository repository,
+                             StreamProperties streamProperties,
+                             LastValueCache lastValueCache,
+                             LastValueCacheProperties lastValueCacheProperties,
+                             QueryResultCache queryResultCache,
+                             QueryCacheProperties queryCacheProperties,
+                             QueryExecutor queryExecutor,
+                             QueryExecutorProperties queryExecutorProperties,
+                             QueryAdmissionControl admissionControl) {
         this.repository = repository;
+        this.streamProperties = streamProperties;
+        this.lastValueCache = lastValueCache;
+        this.lastValueCacheProperties = lastValueCacheProperties;
+        this.queryResultCache = queryResultCache;
+        this.queryCacheProperties = queryCacheProperties;
+        this.queryExecutor = queryExecutor;
+        this.queryExecutorProperties = queryExecutorProperties;
+        this.admissionControl = admissionControl;
     }
 
     public List<SensorData> findAllByCriteria(QueryCriteria criteria) {
-        return repository.findAllByCriteria(criteria);
+        try (QueryAdmissionControl.Permit permit = admissionControl.admit(criteria, 1)) {
+            return load(criteria);
+        }
+    }
+
+    /**
+     * Like {@link #findAllByCriteria(QueryCriteria)} but, when <tt>maxPoints</tt> is given,
+     * reduces the result to at most that many points. Downsampled results hold numeric fields only.
+     */
+    public List<SensorData> findAllByCriteria(QueryCriteria criteria, Integer maxPoints, Downsampling downsampling) {
+        validateMaxPoints(maxPoints);
+        try (QueryAdmissionControl.Permit permit = admissionControl.admit(criteria, 1)) {
+            return query(criteria, maxPoints, downsampling);
+        }
+    }
+
+    /**
+     * Runs the criteria for every sensor concurrently and merges the points in time order, each
+     * one with the <tt>id</tt> of its sensor. Without ids it runs for every sensor of the tenant.
+     */
+    public List<SensorData> findAllByIdsAndCriteria(String[] ids, QueryCriteria criteria,
+                                                    Integer maxPoints, Downsampling downsampling) {
+        validateMaxPoints(maxPoints);
+        List<String> sensorIds = ids != null && ids.length > 0
+                ? new ArrayList<>(new LinkedHashSet<>(Arrays.asList(ids)))
+                : repository.findIdsByTenantId(criteria.getTenantId());
+        if (sensorIds.size() > queryExecutorProperties.getMaxSeries()) {
+            throw new InvalidQueryException("At most " + queryExecutorProperties.getMaxSeries()
+                    + " sensors can be queried at once, got " + sensorIds.size());
+        }
+
+        try (QueryAdmissionControl.Permit permit = admissionControl.admit(criteria, sensorIds.size())) {
+            List<Callable<List<SensorData>>> queries = new ArrayList<>(sensorIds.size());
+            for (String id : sensorIds) {
+                QueryCriteria sensorCriteria = criteria.toBuilder().id(id).build();
+                queries.add(() -> withId(query(sensorCriteria, maxPoints, downsampling), id));
+            }
+            return mergeByTime(queryExecutor.invokeAll(queries));
+        }
+    }
+
+    public SensorDataColumns findColumnsByCriteria(QueryCriteria criteria) {
+        try (QueryAdmissionControl.Permit permit = admissionControl.admit(criteria, 1)) {
+            return loadColumns(criteria);
+        }
+    }
+
+    public SensorDataColumns findColumnsByCriteria(QueryCriteria criteria, Integer maxPoints,
+                                                   Downsampling downsampling) {
+        validateMaxPoints(maxPoints);
+        try (QueryAdmissionControl.Permit permit = admissionControl.admit(criteria, 1)) {
+            return queryColumns(criteria, maxPoints, downsampling);
+        }
+    }
+
+    /**
+     * Admits a query run later on, like a streamed one, whose response is committed by the time
+     * it runs. The permit must be closed once the query is done.
+     */
+    public QueryAdmissionControl.Permit admit(QueryCriteria criteria) {
+        return admissionControl.admit(criteria, 1);
+    }
+
+    /**
+     * Streams the query, the caller must hold a permit from {@link #admit(QueryCriteria)}.
+     */
+    public void streamAllByCriteria(QueryCriteria criteria, ChunkConsumer<SensorData> consumer) throws IOException {
+        repository.streamAllByCriteria(criteria,
+                streamProperties.getChunkSize(), streamProperties.getMaxPendingChunks(), consumer);
     }
 
     public List<SensorData> findAllLastValueByTenantId(String tenantId) {
-        QueryCriteria criteria = new QueryCriteria.Builder()
-                .tenantId(tenantId)
-                .selectCriteria(SELECT_CRITERIA_LAST_VALUE)
-                .groupByCriteria(GROUP_BY_CRITERIA_TENANT_ID_ID)
-                .build();
+        if (lastValueCacheProperties.isEnabled()) {
+            return lastValueCache.findAllByTenantId(tenantId,
+                    from -> repository.findLastValuesByTenantId(tenantId, from));
+        }
+        return findAllLastValue(tenantId, null);
+    }
+
+    public List<SensorData> findAllLastValueByTenantIdAndId(String tenantId, String id) {
+        if (lastValueCacheProperties.isEnabled()) {
+            return lastValueCache.findAllByTenantIdAndId(tenantId, id,
+                    from -> repository.findLastValuesByTenantId(tenantId, from));
+        }
+        return findAllLastValue(tenantId, id);
+    }
+
+    /**
+     * Copies the points with the id of their sensor, they may be shared with the query cache.
+     */
+    private static List<SensorData> withId(List<SensorData> data, String id) {
+        List<SensorData> result = new ArrayList<>(data.size());
+        for (SensorData sensorData : data) {
+            Map<String, Object> fields = sensorData.getExtraFields() != null
+                    ? new HashMap<>(sensorData.getExtraFields()) : new HashMap<>();
+            fields.put(ID, id);
+            SensorData copy = new SensorData();
+            copy.setTime(sensorData.getTime());
+            copy.setExtraFields(fields);
+            result.add(copy);
+        }
+        return result;
+    }
+
+    /**
+     * K-way merge of lists already sorted by time, equal times keep the order of the lists.
+     */
+    private static List<SensorData> mergeByTime(List<List<SensorData>> series) {
+        int size = 0;
+        for (List<SensorData> data : series) {
+            size += data.size();
+        }
+        List<SensorData> merged = new ArrayList<>(size);
+        PriorityQueue<MergeCursor> cursors = new PriorityQueue<>(Math.max(series.size(), 1),
+                Comparator.comparing((MergeCursor cursor) -> cursor.head.getTime(),
+                        Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparingInt(cursor -> cursor.index));
+        for (int i = 0; i < series.size(); i++) {
+            Iterator<SensorData> iterator = series.get(i).iterator();
+            if (iterator.hasNext()) {
+                cursors.add(new MergeCursor(i, iterator));
+            }
+        }
+        while (!cursors.isEmpty()) {
+            MergeCursor cursor = cursors.poll();
+            merged.add(cursor.head);
+            if (cursor.iterator.hasNext()) {
+                cursor.head = cursor.iterator.next();
+                cursors.add(cursor);
+            }
+        }
+        return merged;
+    }
 
+    private List<SensorData> query(QueryCriteria criteria, Integer maxPoints, Downsampling downsampling) {
+        if (maxPoints == null) {
+            return load(criteria);
+        }
+        SensorDataColumns columns = queryColumns(criteria, maxPoints, downsampling);
+        List<SensorData> data = new ArrayList<>(columns.size());
+        columns.toSensorData(data);
+        return data;
+    }
+
+    private SensorDataColumns queryColumns(QueryCriteria criteria, Integer maxPoints, Downsampling downsampling) {
+        if (maxPoints == null) {
+            return loadColumns(criteria);
+        }
+        return downsample(loadColumns(criteria), maxPoints, downsampling);
+    }
+
+    private List<SensorData> load(QueryCriteria criteria) {
+        if (isCached(criteria)) {
+            return queryResultCache.findAll(criteria, repository::findAllByCriteria);
+        }
         return repository.findAllByCriteria(criteria);
+    }
 
+    private SensorDataColumns loadColumns(QueryCriteria criteria) {
+        if (isCached(criteria)) {
+            return SensorDataColumns.of(queryResultCache.findAll(criteria, repository::findAllByCriteria));
+        }
+        return repository.findColumnsByCriteria(criteria);
+    }
 
+    static void validateMaxPoints(Integer maxPoints) {
+        if (maxPoints != null && maxPoints < MIN_MAX_POINTS) {
+            throw new InvalidQueryException("maxPoints must be at least " + MIN_MAX_POINTS);
+        }
     }
 
-    public List<SensorData> findAllLastValueByTenantIdAndId(String tenantId, String id) {
+    /**
+     * @throws InvalidQueryException when <tt>maxPoints</tt> is too few for the minimum and the
+     *                               maximum of every field of a {@link Downsampling#MIN_MAX}
+     */
+    static SensorDataColumns downsample(SensorDataColumns columns, int maxPoints, Downsampling downsampling) {
+        Downsampling algorithm = downsampling != null ? downsampling : Downsampling.LTTB;
+        if (algorithm == Downsampling.MIN_MAX && maxPoints < Downsampler.minMaxPoints(columns)) {
+            throw new InvalidQueryException("maxPoints must be at least " + Downsampler.minMaxPoints(columns)
+                    + " to keep the minimum and the maximum of the " + columns.getValues().length
+                    + " fields with " + Downsampling.MIN_MAX + " downsampling");
+        }
+        return Downsampler.downsample(columns, maxPoints, algorithm);
+    }
+
+    private boolean isCached(QueryCriteria criteria) {
+        return queryCacheProperties.isEnabled() && queryResultCache.isCacheable(criteria);
+    }
+
+    private List<SensorData> findAllLastValue(String tenantId, String id) {
         QueryCriteria criteria = new QueryCriteria.Builder()
                 .tenantId(tenantId)
                 .id(id)
@@ -44,4 +264,17 @@ public class SensorDataService {
 
         return repository.findAllByCriteria(criteria);
     }
+
+    private static final class MergeCursor {
+
+        private final int index;
+        private final Iterator<SensorData> iterator;
+        private SensorData head;
+
+        MergeCursor(int index, Iterator<SensorData> iterator) {
+            this.index = index;
+            this.iterator = iterator;
+            this.head = iterator.next();
+        }
+    }
 }
@@ -0,0 +1,233 @@
+package com.iot.tsa.util;
+
+import com.iot.tsa.enums.Downsampling;
+import com.iot.tsa.model.SensorDataColumns;
+
+/**
+ * Reduces a {@link SensorDataColumns} result to a bounded number of rows for charts. Both
+ * algorithms pick whole rows, so every field of a kept row keeps its real value, and only
+ * allocate the selected row indexes, a few values per field and the result arrays.
+ */
+public final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    public static SensorDataColumns downsample(SensorDataColumns data, int maxPoints, Downsampling downsampling) {
+        switch (downsampling) {
+            case MIN_MAX:
+                return minMax(data, maxPoints);
+            case LTTB:
+            default:
+                return largestTriangleThreeBuckets(data, maxPoints);
+        }
+    }
+
+    /**
+     * Keeps the first and the last row and, from each of the <tt>maxPoints - 2</tt> buckets in
+     * between, the row forming the largest triangle with the row kept from the previous bucket
+     * and the average of the next bucket. With several fields the areas are added up, each one
+     * scaled by the range of its field so that no field dominates because of its unit.
+     */
+    public static SensorDataColumns largestTriangleThreeBuckets(SensorDataColumns data, int maxPoints) {
+        if (maxPoints < 3) {
+            throw new IllegalArgumentException("maxPoints must be at least 3, got " + maxPoints);
+        }
+        int size = data.size();
+        if (size <= maxPoints) {
+            return data;
+        }
+
+        long[] times = data.getTimes();
+        double[][] values = data.getValues();
+        double[] scales = scales(values);
+        double[] averages = new double[values.length];
+        int[] rows = new int[maxPoints];
+
+        // relative to the first row, epoch millis lose precision once multiplied
+        long origin = times[0];
+        double bucketSize = (double) (size - 2) / (maxPoints - 2);
+
+        int selected = 0;
+        int previous = 0;
+        rows[selected++] = previous;
+        for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+
+            double averageTime = averages(times, origin, values, end, nextEnd, averages);
+            double previousTime = times[previous] - origin;
+
+            double maxArea = -1.0;
+            int next = start;
+            for (int row = start; row < end; row++) {
+                double time = times[row] - origin;
+                double area = 0.0;
+                for (int column = 0; column < values.length; column++) {
+                    double previousValue = values[column][previous];
+                    double value = values[column][row];
+                    double average = averages[column];
+                    if (!Double.isNaN(previousValue) && !Double.isNaN(value) && !Double.isNaN(average)) {
+                        area += Math.abs((previousTime - averageTime) * (value - previousValue)
+                                - (previousTime - time) * (average - previousValue)) * scales[column];
+                    }
+                }
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = row;
+                }
+            }
+            rows[selected++] = next;
+            previous = next;
+        }
+        rows[selected++] = size - 1;
+
+        return select(data, rows, selected);
+    }
+
+    /**
+     * Splits the rows in buckets and keeps, from each one, the rows holding the minimum and the
+     * maximum of every field. A bucket keeps up to two rows per field, so <tt>maxPoints</tt> must
+     * be at least {@link #minMaxPoints(SensorDataColumns) twice the number of fields}.
+     */
+    public static SensorDataColumns minMax(SensorDataColumns data, int maxPoints) {
+        if (maxPoints < minMaxPoints(data)) {
+            throw new IllegalArgumentException("maxPoints must be at least " + minMaxPoints(data)
+                    + " for the " + data.getValues().length + " fields, got " + maxPoints);
+        }
+        int size = data.size();
+        if (size <= maxPoints) {
+            return data;
+        }
+
+        double[][] values = data.getValues();
+        int rowsPerBucket = minMaxPoints(data);
+        int buckets = maxPoints / rowsPerBucket;
+        int[] rows = new int[buckets * rowsPerBucket];
+
+        int selected = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = (int) ((long) bucket * size / buckets);
+            int end = (int) ((long) (bucket + 1) * size / buckets);
+            int bucketStart = selected;
+            if (values.length == 0) {
+                rows[selected++] = start;
+                continue;
+            }
+            for (double[] column : values) {
+                int min = -1;
+                int max = -1;
+                for (int row = start; row < end; row++) {
+                    double value = column[row];
+                    if (Double.isNaN(value)) {
+                        continue;
+                    }
+                    if (min < 0 || value < column[min]) {
+                        min = row;
+                    }
+                    if (max < 0 || value > column[max]) {
+                        max = row;
+                    }
+                }
+                selected = insert(rows, bucketStart, selected, min);
+                selected = insert(rows, bucketStart, selected, max);
+            }
+        }
+
+        return select(data, rows, selected);
+    }
+
+    /**
+     * The fewest points {@link #minMax(SensorDataColumns, int)} keeps a bucket in: the minimum and
+     * the maximum of every field.
+     */
+    public static int minMaxPoints(SensorDataColumns data) {
+        return 2 * Math.max(data.getValues().length, 1);
+    }
+
+    /**
+     * Averages the rows <tt>[start, end)</tt> of every field into <tt>averages</tt>, ignoring
+     * <tt>NaN</tt>s, and returns their average time relative to <tt>origin</tt>.
+     */
+    private static double averages(long[] times, long origin, double[][] values, int start, int end,
+                                   double[] averages) {
+        double time = 0.0;
+        for (int row = start; row < end; row++) {
+            time += times[row] - origin;
+        }
+        for (int column = 0; column < values.length; column++) {
+            double sum = 0.0;
+            int count = 0;
+            for (int row = start; row < end; row++) {
+                double value = values[column][row];
+                if (!Double.isNaN(value)) {
+                    sum += value;
+                    count++;
+                }
+            }
+            averages[column] = count > 0 ? sum / count : Double.NaN;
+        }
+        return time / (end - start);
+    }
+
+    /**
+     * <tt>1 / range</tt> of every field, <tt>0</tt> for the constant or empty ones.
+     */
+    private static double[] scales(double[][] values) {
+        double[] scales = new double[values.length];
+        for (int column = 0; column < values.length; column++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (double value : values[column]) {
+                if (value < min) {
+                    min = value;
+                }
+                if (value > max) {
+                    max = value;
+                }
+            }
+            double range = max - min;
+            scales[column] = range > 0.0 && !Double.isInfinite(range) ? 1.0 / range : 0.0;
+        }
+        return scales;
+    }
+
+    /**
+     * Inserts <tt>row</tt> in the sorted and distinct <tt>rows[from, to)</tt>, returns the new end.
+     */
+    private static int insert(int[] rows, int from, int to, int row) {
+        if (row < 0) {
+            return to;
+        }
+        int position = to;
+        while (position > from && rows[position - 1] > row) {
+            position--;
+        }
+        if (position > from && rows[position - 1] == row) {
+            return to;
+        }
+        System.arraycopy(rows, position, rows, position + 1, to - position);
+        rows[position] = row;
+        return to + 1;
+    }
+
+    private static SensorDataColumns select(SensorDataColumns data, int[] rows, int count) {
+        long[] sourceTimes = data.getTimes();
+        double[][] sourceValues = data.getValues();
+
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = sourceTimes[rows[i]];
+        }
+        double[][] values = new double[sourceValues.length][count];
+        for (int column = 0; column < sourceValues.length; column++) {
+            double[] source = sourceValues[column];
+            double[] target = values[column];
+            for (int i = 0; i < count; i++) {
+                target[i] = source[rows[i]];
+            }
+        }
+        return new SensorDataColumns(data.getColumns(), times, values);
+    }
+}
@@ -1,15 +1,72 @@
 package com.iot.tsa.util;
 
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 
 public class TimeFormatter {
 
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final long DAYS_0000_TO_1970 = 719_468L;
+    // 0000-01-01T00:00:00Z and 9999-12-31T23:59:59Z, the years written with four digits
+    private static final long MIN_EPOCH_SECOND = -62_167_219_200L;
+    private static final long MAX_EPOCH_SECOND = 253_402_300_799L;
+
+    /**
+     * Formats as {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME} in UTC, written straight into the
+     * characters of the result since it runs for every row of a response.
+     */
     public final static String toZulu(Instant instant) {
-        return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
-                ZonedDateTime.ofInstant(instant, ZoneId.of("UTC"))
-        );
+        long epochSecond = instant.getEpochSecond();
+        if (epochSecond < MIN_EPOCH_SECOND || epochSecond > MAX_EPOCH_SECOND) {
+            return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(instant.atOffset(ZoneOffset.UTC));
+        }
+
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+
+        // civil date of the day, counting years from March so that the leap day is the last of the year
+        long day = epochDay + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(day, 146_097);
+        long dayOfEra = day - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthFromMarch = (5 * dayOfYear + 2) / 153;
+        int dayOfMonth = (int) (dayOfYear - (153 * monthFromMarch + 2) / 5 + 1);
+        int month = (int) (monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        char[] chars = new char[30];
+        write(chars, 0, year, 4);
+        chars[4] = '-';
+        write(chars, 5, month, 2);
+        chars[7] = '-';
+        write(chars, 8, dayOfMonth, 2);
+        chars[10] = 'T';
+        write(chars, 11, secondOfDay / 3600, 2);
+        chars[13] = ':';
+        write(chars, 14, secondOfDay / 60 % 60, 2);
+        chars[16] = ':';
+        write(chars, 17, secondOfDay % 60, 2);
+        int length = 19;
+
+        int nano = instant.getNano();
+        if (nano != 0) {
+            chars[length++] = '.';
+            write(chars, length, nano, 9);
+            length += 9;
+            while (chars[length - 1] == '0') {
+                length--;
+            }
+        }
+        chars[length++] = 'Z';
+        return new String(chars, 0, length);
+    }
+
+    private static void write(char[] chars, int offset, int value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
     }
 }
@@ -0,0 +1,231 @@
+package com.iot.tsa.util.arrow;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Lays out a FlatBuffers buffer front to back, which is all the few tables of an Arrow IPC message
+ * need: a table is written before the strings, vectors and tables it refers to, and its offset
+ * fields are patched once they are written. Alignments are relative to the start of the buffer.
+ */
+final class FlatBufferWriter {
+
+    private static final int OFFSET_SIZE = 4;
+
+    private byte[] bytes = new byte[512];
+    private int position;
+
+    /**
+     * Starts the buffer with the offset of its root table, to point to it with {@link #offset}.
+     *
+     * @return the position of the offset
+     */
+    int root() {
+        putInt(0);
+        return 0;
+    }
+
+    Table table(int slots) {
+        return new Table(slots);
+    }
+
+    /**
+     * @return the position of the string
+     */
+    int string(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        pad(OFFSET_SIZE);
+        int start = position;
+        putInt(utf8.length);
+        ensure(utf8.length + 1);
+        System.arraycopy(utf8, 0, bytes, position, utf8.length);
+        position += utf8.length + 1;
+        return start;
+    }
+
+    /**
+     * A vector of offsets to tables, every element to point to a table with {@link #offset}.
+     *
+     * @return the position of the vector
+     */
+    int offsetVector(int length) {
+        pad(OFFSET_SIZE);
+        int start = position;
+        putInt(length);
+        for (int i = 0; i < length; i++) {
+            putInt(0);
+        }
+        return start;
+    }
+
+    /**
+     * @return the position of an element of an {@link #offsetVector(int)}
+     */
+    static int element(int vector, int index) {
+        return vector + OFFSET_SIZE + index * OFFSET_SIZE;
+    }
+
+    /**
+     * A vector of structs made of <tt>longsPerStruct</tt> longs, the elements 8 byte aligned.
+     *
+     * @return the position of the vector
+     */
+    int structVector(long[] values, int longsPerStruct) {
+        while ((position + OFFSET_SIZE) % Long.BYTES != 0) {
+            putByte(0);
+        }
+        int start = position;
+        putInt(values.length / longsPerStruct);
+        for (long value : values) {
+            putLong(value);
+        }
+        return start;
+    }
+
+    /**
+     * Points the offset at a position to what is written at a later position.
+     */
+    void offset(int at, int target) {
+        int previous = position;
+        position = at;
+        putInt(target - at);
+        position = previous;
+    }
+
+    /**
+     * @return the buffer, padded to a multiple of <tt>alignment</tt>
+     */
+    byte[] finish(int alignment) {
+        pad(alignment);
+        return Arrays.copyOf(bytes, position);
+    }
+
+    private void pad(int alignment) {
+        while (position % alignment != 0) {
+            putByte(0);
+        }
+    }
+
+    private void put(int size, long value) {
+        ensure(size);
+        for (int i = 0; i < size; i++) {
+            bytes[position++] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private void putByte(int value) {
+        put(1, value);
+    }
+
+    private void putShort(int value) {
+        put(2, value);
+    }
+
+    private void putInt(int value) {
+        put(4, value);
+    }
+
+    private void putLong(long value) {
+        put(8, value);
+    }
+
+    private void ensure(int size) {
+        if (position + size > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + size));
+        }
+    }
+
+    /**
+     * A table whose scalar and offset fields are set by slot, then written at once after its
+     * vtable, the largest fields first.
+     */
+    final class Table {
+
+        private final int[] sizes;
+        private final long[] values;
+        private final int[] positions;
+
+        private Table(int slots) {
+            this.sizes = new int[slots];
+            this.values = new long[slots];
+            this.positions = new int[slots];
+        }
+
+        Table addBool(int slot, boolean value) {
+            return add(slot, 1, value ? 1 : 0);
+        }
+
+        Table addByte(int slot, int value) {
+            return add(slot, 1, value);
+        }
+
+        Table addShort(int slot, int value) {
+            return add(slot, 2, value);
+        }
+
+        Table addLong(int slot, long value) {
+            return add(slot, 8, value);
+        }
+
+        /**
+         * An offset field, to point to what it refers to with {@link #offset(int, int)}.
+         */
+        Table addOffset(int slot) {
+            return add(slot, OFFSET_SIZE, 0);
+        }
+
+        private Table add(int slot, int size, long value) {
+            sizes[slot] = size;
+            values[slot] = value;
+            return this;
+        }
+
+        /**
+         * @return the position of the table
+         */
+        int write() {
+            int[] offsets = new int[sizes.length];
+            int size = OFFSET_SIZE;
+            int alignment = OFFSET_SIZE;
+            for (int fieldSize = Long.BYTES; fieldSize > 0; fieldSize /= 2) {
+                for (int slot = 0; slot < sizes.length; slot++) {
+                    if (sizes[slot] == fieldSize) {
+                        size = (size + fieldSize - 1) / fieldSize * fieldSize;
+                        offsets[slot] = size;
+                        size += fieldSize;
+                        alignment = Math.max(alignment, fieldSize);
+                    }
+                }
+            }
+
+            pad(2);
+            int vtable = position;
+            putShort(2 * (2 + sizes.length));
+            putShort(size);
+            for (int offset : offsets) {
+                putShort(offset);
+            }
+
+            pad(alignment);
+            int start = position;
+            putInt(start - vtable);
+            ensure(size);
+            for (int slot = 0; slot < sizes.length; slot++) {
+                if (sizes[slot] > 0) {
+                    positions[slot] = start + offsets[slot];
+                    position = positions[slot];
+                    put(sizes[slot], values[slot]);
+                }
+            }
+            position = start + size;
+            return start;
+        }
+
+        /**
+         * Points the offset field of a slot to what is written at a later position.
+         */
+        void offset(int slot, int target) {
+            FlatBufferWriter.this.offset(positions[slot], target);
+        }
+    }
+}
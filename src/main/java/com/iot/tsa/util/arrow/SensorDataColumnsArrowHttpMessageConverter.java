@@ -0,0 +1,243 @@
+package com.iot.tsa.util.arrow;
+
+import com.iot.tsa.model.CompactSensorsDataResource;
+import com.iot.tsa.model.SensorDataColumns;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes a {@link CompactSensorsDataResource} in the Arrow IPC streaming format: a schema message
+ * with a <tt>time</tt> column of UTC millisecond timestamps and a nullable double column per
+ * field, record batches of at most <tt>rowsPerBatch</tt> rows, then the end of stream marker.
+ * The messages are encoded straight from the columns, NaN cells are written as nulls. The links
+ * are left out.
+ *
+ * @see <a href="https://arrow.apache.org/docs/format/Columnar.html#ipc-streaming-format">IPC streaming format</a>
+ */
+public class SensorDataColumnsArrowHttpMessageConverter
+        extends AbstractHttpMessageConverter<CompactSensorsDataResource> {
+
+    public static final String APPLICATION_ARROW_STREAM_VALUE = "application/vnd.apache.arrow.stream";
+    public static final MediaType APPLICATION_ARROW_STREAM = MediaType.valueOf(APPLICATION_ARROW_STREAM_VALUE);
+
+    private static final int DEFAULT_ROWS_PER_BATCH = 65_536;
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int CONTINUATION = 0xFFFFFFFF;
+    private static final int ALIGNMENT = 8;
+    private static final String TIME = "time";
+    private static final String UTC = "UTC";
+
+    // Schema.fbs and Message.fbs
+    private static final short METADATA_V5 = 4;
+    private static final byte HEADER_SCHEMA = 1;
+    private static final byte HEADER_RECORD_BATCH = 3;
+    private static final byte TYPE_FLOATING_POINT = 3;
+    private static final byte TYPE_TIMESTAMP = 10;
+    private static final short PRECISION_DOUBLE = 2;
+    private static final short UNIT_MILLISECOND = 1;
+    private static final short ENDIANNESS_LITTLE = 0;
+
+    private final int rowsPerBatch;
+
+    public SensorDataColumnsArrowHttpMessageConverter() {
+        this(DEFAULT_ROWS_PER_BATCH);
+    }
+
+    public SensorDataColumnsArrowHttpMessageConverter(int rowsPerBatch) {
+        super(APPLICATION_ARROW_STREAM);
+        this.rowsPerBatch = rowsPerBatch;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CompactSensorsDataResource.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected CompactSensorsDataResource readInternal(Class<? extends CompactSensorsDataResource> clazz,
+                                                      HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Sensor data is not read as Arrow", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(CompactSensorsDataResource resource, HttpOutputMessage outputMessage)
+            throws IOException {
+        OutputStream output = new BufferedOutputStream(outputMessage.getBody(), BUFFER_SIZE);
+        write(resource.getData(), output);
+        output.flush();
+    }
+
+    private void write(SensorDataColumns data, OutputStream output) throws IOException {
+        writeMessage(schema(data.getColumns()), output);
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(data.size(), rowsPerBatch) * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int from = 0; from < data.size(); from += rowsPerBatch) {
+            writeRecordBatch(data, from, Math.min(from + rowsPerBatch, data.size()), buffer, output);
+        }
+        writeInt(CONTINUATION, output);
+        writeInt(0, output);
+    }
+
+    private static byte[] schema(String[] columns) {
+        FlatBufferWriter writer = new FlatBufferWriter();
+        FlatBufferWriter.Table message = message(writer, HEADER_SCHEMA, 0L);
+        FlatBufferWriter.Table table = writer.table(4)
+                .addShort(0, ENDIANNESS_LITTLE)
+                .addOffset(1);
+        message.offset(2, table.write());
+
+        int fields = writer.offsetVector(columns.length + 1);
+        table.offset(1, fields);
+        writer.offset(FlatBufferWriter.element(fields, 0), field(writer, TIME, false, TYPE_TIMESTAMP));
+        for (int column = 0; column < columns.length; column++) {
+            writer.offset(FlatBufferWriter.element(fields, column + 1),
+                    field(writer, columns[column], true, TYPE_FLOATING_POINT));
+        }
+        return writer.finish(ALIGNMENT);
+    }
+
+    private static int field(FlatBufferWriter writer, String name, boolean nullable, byte type) {
+        FlatBufferWriter.Table field = writer.table(7)
+                .addOffset(0)
+                .addBool(1, nullable)
+                .addByte(2, type)
+                .addOffset(3)
+                .addOffset(5);
+        int position = field.write();
+        field.offset(0, writer.string(name));
+
+        if (type == TYPE_TIMESTAMP) {
+            FlatBufferWriter.Table timestamp = writer.table(2)
+                    .addShort(0, UNIT_MILLISECOND)
+                    .addOffset(1);
+            field.offset(3, timestamp.write());
+            timestamp.offset(1, writer.string(UTC));
+        } else {
+            field.offset(3, writer.table(1).addShort(0, PRECISION_DOUBLE).write());
+        }
+        field.offset(5, writer.offsetVector(0));
+        return position;
+    }
+
+    /**
+     * The time column has no validity bitmap, a field column only when it has nulls. Every
+     * buffer of the body starts 8 byte aligned.
+     */
+    private static void writeRecordBatch(SensorDataColumns data, int from, int to, ByteBuffer buffer,
+                                         OutputStream output) throws IOException {
+        int rows = to - from;
+        double[][] values = data.getValues();
+        int dataLength = rows * Double.BYTES;
+        int validityLength = (rows + 7) / 8;
+
+        long[] nodes = new long[2 * (values.length + 1)];
+        long[] buffers = new long[4 * (values.length + 1)];
+        nodes[0] = rows;
+        buffers[3] = dataLength;
+        long bodyLength = dataLength;
+        for (int column = 0; column < values.length; column++) {
+            int nulls = 0;
+            for (int row = from; row < to; row++) {
+                if (Double.isNaN(values[column][row])) {
+                    nulls++;
+                }
+            }
+            int node = 2 * (column + 1);
+            nodes[node] = rows;
+            nodes[node + 1] = nulls;
+            int validity = 4 * (column + 1);
+            buffers[validity] = bodyLength;
+            buffers[validity + 1] = nulls > 0 ? validityLength : 0;
+            bodyLength += padded(buffers[validity + 1]);
+            buffers[validity + 2] = bodyLength;
+            buffers[validity + 3] = dataLength;
+            bodyLength += dataLength;
+        }
+
+        FlatBufferWriter writer = new FlatBufferWriter();
+        FlatBufferWriter.Table message = message(writer, HEADER_RECORD_BATCH, bodyLength);
+        FlatBufferWriter.Table table = writer.table(3)
+                .addLong(0, rows)
+                .addOffset(1)
+                .addOffset(2);
+        message.offset(2, table.write());
+        table.offset(1, writer.structVector(nodes, 2));
+        table.offset(2, writer.structVector(buffers, 2));
+        writeMessage(writer.finish(ALIGNMENT), output);
+
+        long[] times = data.getTimes();
+        buffer.clear();
+        for (int row = from; row < to; row++) {
+            buffer.putLong(times[row]);
+        }
+        output.write(buffer.array(), 0, buffer.position());
+
+        for (int column = 0; column < values.length; column++) {
+            double[] cells = values[column];
+            if (nodes[2 * (column + 1) + 1] > 0) {
+                byte[] validity = new byte[(int) padded(validityLength)];
+                for (int row = from; row < to; row++) {
+                    if (!Double.isNaN(cells[row])) {
+                        validity[(row - from) / 8] |= 1 << ((row - from) % 8);
+                    }
+                }
+                output.write(validity);
+            }
+            buffer.clear();
+            for (int row = from; row < to; row++) {
+                buffer.putDouble(cells[row]);
+            }
+            output.write(buffer.array(), 0, buffer.position());
+        }
+    }
+
+    /**
+     * Writes the root <tt>Message</tt> table of a message, its slot 2 to point to the header.
+     */
+    private static FlatBufferWriter.Table message(FlatBufferWriter writer, byte type, long bodyLength) {
+        int root = writer.root();
+        FlatBufferWriter.Table message = writer.table(5)
+                .addShort(0, METADATA_V5)
+                .addByte(1, type)
+                .addOffset(2)
+                .addLong(3, bodyLength);
+        writer.offset(root, message.write());
+        return message;
+    }
+
+    /**
+     * The encapsulated message: the continuation marker, the size of the metadata, the metadata,
+     * the body is written by the caller.
+     */
+    private static void writeMessage(byte[] metadata, OutputStream output) throws IOException {
+        writeInt(CONTINUATION, output);
+        writeInt(metadata.length, output);
+        output.write(metadata);
+    }
+
+    private static long padded(long length) {
+        return (length + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static void writeInt(int value, OutputStream output) throws IOException {
+        output.write(value);
+        output.write(value >>> 8);
+        output.write(value >>> 16);
+        output.write(value >>> 24);
+    }
+}
@@ -0,0 +1,13 @@
+package com.iot.tsa.util.db;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the mapped rows of a chunked query, one chunk at a time.
+ */
+@FunctionalInterface
+public interface ChunkConsumer<T> {
+
+    void accept(List<T> chunk) throws IOException;
+}
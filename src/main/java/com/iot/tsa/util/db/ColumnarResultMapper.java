@@ -0,0 +1,171 @@
+package com.iot.tsa.util.db;
+
+import com.iot.tsa.model.SensorDataColumns;
+import org.influxdb.InfluxDBMapperException;
+import org.influxdb.dto.QueryResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps a {@link QueryResult} straight into a {@link SensorDataColumns}, filling primitive arrays
+ * from the series values without creating an object or a map per row.
+ *
+ * @author rfaita
+ */
+public class ColumnarResultMapper {
+
+    private static final String TIME = "time";
+
+    /**
+     * <p>
+     * Process a {@link QueryResult} object returned by the InfluxDB client into a columnar result.
+     * Every series of the given measurement is appended in the order received from InfluxDB, the
+     * column dictionary is the union of the series columns. Tags are not mapped, neither are the
+     * {@link SensorDataColumns#TAGS} a raw query returns as columns, nor the fields holding
+     * strings but no number; booleans are mapped to 1 and 0.
+     * </p>
+     *
+     * @param queryResult     the InfluxDB result object
+     * @param measurementName name of the Measurement
+     * @param precision       the time precision of results, used when <tt>time</tt> is numeric
+     * @return the columnar result
+     * @throws InfluxDBMapperException If {@link QueryResult} parameter contain errors.
+     */
+    public SensorDataColumns toColumns(final QueryResult queryResult, final String measurementName,
+                                       final TimeUnit precision) throws InfluxDBMapperException {
+
+        Objects.requireNonNull(measurementName, "measurementName");
+        Objects.requireNonNull(queryResult, "queryResult");
+
+        throwExceptionIfResultWithError(queryResult);
+
+        List<QueryResult.Series> seriesList = new ArrayList<>();
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int rows = 0;
+        for (QueryResult.Result result : queryResult.getResults()) {
+            if (result == null || result.getSeries() == null) {
+                continue;
+            }
+            for (QueryResult.Series series : result.getSeries()) {
+                if (!measurementName.equals(series.getName()) || series.getValues() == null) {
+                    continue;
+                }
+                for (String column : series.getColumns()) {
+                    if (!TIME.equals(column) && !SensorDataColumns.TAGS.contains(column)) {
+                        dictionary.putIfAbsent(column, dictionary.size());
+                    }
+                }
+                seriesList.add(series);
+                rows += series.getValues().size();
+            }
+        }
+
+        String[] columns = dictionary.keySet().toArray(new String[0]);
+        long[] times = new long[rows];
+        double[][] values = new double[columns.length][rows];
+
+        boolean[] numeric = new boolean[columns.length];
+        boolean[] text = new boolean[columns.length];
+        int offset = 0;
+        for (QueryResult.Series series : seriesList) {
+            offset = fill(series, dictionary, times, values, numeric, text, offset, precision);
+        }
+
+        return withoutText(columns, times, values, numeric, text);
+    }
+
+    /**
+     * Leaves out the columns that held strings but no number, they would be all NaN.
+     */
+    private static SensorDataColumns withoutText(String[] columns, long[] times, double[][] values,
+                                                 boolean[] numeric, boolean[] text) {
+        int kept = 0;
+        for (int column = 0; column < columns.length; column++) {
+            if (numeric[column] || !text[column]) {
+                columns[kept] = columns[column];
+                values[kept] = values[column];
+                kept++;
+            }
+        }
+        if (kept == columns.length) {
+            return new SensorDataColumns(columns, times, values);
+        }
+        return new SensorDataColumns(Arrays.copyOf(columns, kept), times, Arrays.copyOf(values, kept));
+    }
+
+    private int fill(QueryResult.Series series, Map<String, Integer> dictionary, long[] times, double[][] values,
+                     boolean[] numeric, boolean[] text, int offset, TimeUnit precision) {
+        List<String> seriesColumns = series.getColumns();
+        int timeIndex = -1;
+        // series column index -> dictionary index, resolved once per series
+        int[] target = new int[seriesColumns.size()];
+        boolean[] filled = new boolean[values.length];
+        for (int i = 0; i < target.length; i++) {
+            String column = seriesColumns.get(i);
+            if (TIME.equals(column)) {
+                timeIndex = i;
+                target[i] = -1;
+            } else if (dictionary.containsKey(column)) {
+                target[i] = dictionary.get(column);
+                filled[target[i]] = true;
+            } else {
+                target[i] = -1;
+            }
+        }
+
+        List<List<Object>> rows = series.getValues();
+        int end = offset + rows.size();
+        for (int column = 0; column < values.length; column++) {
+            if (!filled[column]) {
+                Arrays.fill(values[column], offset, end, Double.NaN);
+            }
+        }
+
+        int row = offset;
+        for (List<Object> cells : rows) {
+            times[row] = timeIndex >= 0 ? toEpochMilli(cells.get(timeIndex), precision) : 0L;
+            for (int i = 0; i < target.length; i++) {
+                if (target[i] >= 0) {
+                    Object value = cells.get(i);
+                    if (SensorDataColumns.isNumeric(value)) {
+                        numeric[target[i]] = true;
+                    } else if (value != null) {
+                        text[target[i]] = true;
+                    }
+                    values[target[i]][row] = SensorDataColumns.toDouble(value);
+                }
+            }
+            row++;
+        }
+        return end;
+    }
+
+    private static long toEpochMilli(Object value, TimeUnit precision) {
+        if (value instanceof Number) {
+            return TimeUnit.MILLISECONDS.convert(((Number) value).longValue(), precision);
+        }
+        if (value instanceof String) {
+            return Rfc3339Parser.toEpochMilli((String) value);
+        }
+        throw new InfluxDBMapperException("Unsupported type " + (value != null ? value.getClass() : null)
+                + " for column " + TIME);
+    }
+
+    private void throwExceptionIfResultWithError(final QueryResult queryResult) {
+        if (queryResult.getError() != null) {
+            throw new InfluxDBMapperException("InfluxDB returned an error: " + queryResult.getError());
+        }
+
+        queryResult.getResults().forEach(seriesResult -> {
+            if (seriesResult.getError() != null) {
+                throw new InfluxDBMapperException("InfluxDB returned an error with Series: " + seriesResult.getError());
+            }
+        });
+    }
+}
@@ -1,17 +1,18 @@
 package com.iot.tsa.util.db;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.influxdb.InfluxDBMapperException;
 import org.influxdb.annotation.Column;
 import org.influxdb.annotation.Measurement;
 import org.influxdb.dto.QueryResult;
 
 import java.lang.reflect.Field;
-import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
 import java.time.temporal.ChronoField;
 import java.util.*;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +30,15 @@ public class CustomInfluxDBResultMapper {
     private static final
     ConcurrentMap<String, ConcurrentMap<String, Field>> CLASS_FIELD_CACHE = new ConcurrentHashMap<>();
 
+    /**
+     * Data structure used to cache the compiled mapping plans, one per class and column layout.
+     * Bounded, since the columns of <tt>SELECT *</tt> follow the fields written, and its
+     * admission policy keeps the layouts queried often.
+     */
+    private static final Cache<MappingPlanKey, SeriesMappingPlan<?>> MAPPING_PLAN_CACHE = Caffeine.newBuilder()
+            .maximumSize(1024)
+            .build();
+
     private static final int FRACTION_MIN_WIDTH = 0;
     private static final int FRACTION_MAX_WIDTH = 9;
     private static final boolean ADD_DECIMAL_POINT = true;
@@ -36,13 +46,15 @@ public class CustomInfluxDBResultMapper {
 
     /**
      * When a query is executed without {@link TimeUnit}, InfluxDB returns the <tt>time</tt>
-     * column as a RFC3339 date.
+     * column as a RFC3339 date. Strict, so that year 0000 is read and a day the month does not
+     * have is rejected rather than moved to its last day.
      */
-    private static final DateTimeFormatter RFC3339_FORMATTER = new DateTimeFormatterBuilder()
-            .appendPattern("yyyy-MM-dd'T'HH:mm:ss")
+    static final DateTimeFormatter RFC3339_FORMATTER = new DateTimeFormatterBuilder()
+            .appendPattern("uuuu-MM-dd'T'HH:mm:ss")
             .appendFraction(ChronoField.NANO_OF_SECOND, FRACTION_MIN_WIDTH, FRACTION_MAX_WIDTH, ADD_DECIMAL_POINT)
             .appendZoneOrOffsetId()
-            .toFormatter();
+            .toFormatter()
+            .withResolverStyle(ResolverStyle.STRICT);
 
     /**
      * <p>
@@ -139,7 +151,7 @@ public class CustomInfluxDBResultMapper {
         throwExceptionIfResultWithError(queryResult);
         cacheMeasurementClass(clazz);
 
-        List<T> result = new LinkedList<T>();
+        List<T> result = new ArrayList<T>();
 
         queryResult.getResults().stream()
                 .filter(internalResult -> Objects.nonNull(internalResult) && Objects.nonNull(internalResult.getSeries()))
@@ -182,11 +194,9 @@ public class CustomInfluxDBResultMapper {
             if (CLASS_FIELD_CACHE.containsKey(clazz.getName())) {
                 continue;
             }
-            ConcurrentMap<String, Field> initialMap = new ConcurrentHashMap<>();
-            ConcurrentMap<String, Field> influxColumnAndFieldMap = CLASS_FIELD_CACHE.putIfAbsent(clazz.getName(), initialMap);
-            if (influxColumnAndFieldMap == null) {
-                influxColumnAndFieldMap = initialMap;
-            }
+            // filled before it is published, a concurrent query must never compile a mapping plan
+            // from a partial map
+            ConcurrentMap<String, Field> influxColumnAndFieldMap = new ConcurrentHashMap<>();
 
             Class<?> c = clazz;
             while (c != null) {
@@ -204,6 +214,7 @@ public class CustomInfluxDBResultMapper {
                 }
                 c = c.getSuperclass();
             }
+            CLASS_FIELD_CACHE.putIfAbsent(clazz.getName(), influxColumnAndFieldMap);
         }
     }
 
@@ -229,175 +240,56 @@ public class CustomInfluxDBResultMapper {
 
     <T> List<T> parseSeriesAs(final QueryResult.Series series, final Class<T> clazz, final List<T> result,
                               final TimeUnit precision) {
-        int columnSize = series.getColumns().size();
-        ConcurrentMap<String, Field> colNameAndFieldMap = CLASS_FIELD_CACHE.get(clazz.getName());
-        try {
-            T object = null;
-
-            Field defaultField = colNameAndFieldMap.get(INTERNAL_DEFAULT_FIELD);
-            for (List<Object> row : series.getValues()) {
-                for (int i = 0; i < columnSize; i++) {
-                    Field correspondingField = colNameAndFieldMap.get(series.getColumns().get(i)/*InfluxDB columnName*/);
-                    if (correspondingField != null) {
-                        if (object == null) {
-                            object = clazz.newInstance();
-                        }
-                        setFieldValue(object, correspondingField, row.get(i), precision);
-                    } else if (defaultField != null) {
-                        setFieldValueToDefaultField(series.getColumns().get(i), defaultField, object, row.get(i));
-                    }
-                }
-                // When the "GROUP BY" clause is used, "tags" are returned as Map<String,String> and
-                // accordingly with InfluxDB documentation
-                // https://docs.influxdata.com/influxdb/v1.2/concepts/glossary/#tag-value
-                // "tag" values are always String.
-                if (series.getTags() != null && !series.getTags().isEmpty()) {
-                    for (Entry<String, String> entry : series.getTags().entrySet()) {
-                        Field correspondingField = colNameAndFieldMap.get(entry.getKey()/*InfluxDB columnName*/);
-                        if (correspondingField != null) {
-                            // I don't think it is possible to reach here without a valid "object"
-                            setFieldValue(object, correspondingField, entry.getValue(), precision);
-                        } else if (defaultField != null) {
-                            setFieldValueToDefaultField(entry.getKey(), defaultField, object, entry.getValue());
-                        }
-                    }
-                }
-                if (object != null) {
-                    result.add(object);
-                    object = null;
-                }
-            }
-        } catch (InstantiationException | IllegalAccessException e) {
-            throw new InfluxDBMapperException(e);
-        }
-        return result;
+        return getMappingPlan(clazz, series.getColumns(), precision).map(series, result);
     }
 
     /**
-     * InfluxDB client returns any number as Double.
-     * See https://github.com/influxdata/influxdb-java/issues/153#issuecomment-259681987
-     * for more information.
-     *
-     * @param object
-     * @param field
-     * @param value
-     * @param precision
-     * @throws IllegalArgumentException
-     * @throws IllegalAccessException
+     * Returns the {@link SeriesMappingPlan} for the class and column layout, compiling it on first use.
      */
-    <T> void setFieldValue(final T object, final Field field,
-                           final Object value, final TimeUnit precision)
-            throws IllegalArgumentException, IllegalAccessException {
-        if (value == null) {
-            return;
-        }
-        Class<?> fieldType = field.getType();
-        try {
-            if (!field.isAccessible()) {
-                field.setAccessible(true);
-            }
-            if (fieldValueModified(fieldType, field, object, value, precision)
-                    || fieldValueForPrimitivesModified(fieldType, field, object, value)
-                    || fieldValueForPrimitiveWrappersModified(fieldType, field, object, value)) {
-                return;
-            }
-            String msg = "Class '%s' field '%s' is from an unsupported type '%s'.";
-            throw new InfluxDBMapperException(
-                    String.format(msg, object.getClass().getName(), field.getName(), field.getType()));
-        } catch (ClassCastException e) {
-            String msg = "Class '%s' field '%s' was defined with a different field type and caused a ClassCastException. "
-                    + "The correct type is '%s' (current field value: '%s').";
-            throw new InfluxDBMapperException(
-                    String.format(msg, object.getClass().getName(), field.getName(), value.getClass().getName(), value));
-        }
+    @SuppressWarnings("unchecked")
+    <T> SeriesMappingPlan<T> getMappingPlan(final Class<T> clazz, final List<String> columns,
+                                            final TimeUnit precision) {
+        return (SeriesMappingPlan<T>) MAPPING_PLAN_CACHE.get(new MappingPlanKey(clazz, columns, precision), key -> {
+            // the plan is kept for every later query of the layout, so it is only compiled from a
+            // field map cacheMeasurementClass published complete
+            ConcurrentMap<String, Field> colNameAndFieldMap = CLASS_FIELD_CACHE.get(clazz.getName());
+            return SeriesMappingPlan.compile(clazz, colNameAndFieldMap,
+                    colNameAndFieldMap.get(INTERNAL_DEFAULT_FIELD), columns, precision);
+        });
     }
 
-    <T> boolean fieldValueModified(final Class<?> fieldType, final Field field, final T object, final Object value,
-                                   final TimeUnit precision)
-            throws IllegalArgumentException, IllegalAccessException {
-        if (String.class.isAssignableFrom(fieldType)) {
-            field.set(object, String.valueOf(value));
-            return true;
-        }
-        if (Instant.class.isAssignableFrom(fieldType)) {
-            Instant instant;
-            if (value instanceof String) {
-                instant = Instant.from(RFC3339_FORMATTER.parse(String.valueOf(value)));
-            } else if (value instanceof Long) {
-                instant = Instant.ofEpochMilli(toMillis((long) value, precision));
-            } else if (value instanceof Double) {
-                instant = Instant.ofEpochMilli(toMillis(((Double) value).longValue(), precision));
-            } else if (value instanceof Integer) {
-                instant = Instant.ofEpochMilli(toMillis(((Integer) value).longValue(), precision));
-            } else {
-                throw new InfluxDBMapperException("Unsupported type " + field.getClass() + " for field " + field.getName());
-            }
-            field.set(object, instant);
-            return true;
-        }
-        return false;
-    }
+    private static final class MappingPlanKey {
 
-    <T> boolean fieldValueForPrimitivesModified(final Class<?> fieldType, final Field field, final T object,
-                                                final Object value) throws IllegalArgumentException, IllegalAccessException {
-        if (double.class.isAssignableFrom(fieldType)) {
-            field.setDouble(object, ((Double) value).doubleValue());
-            return true;
-        }
-        if (long.class.isAssignableFrom(fieldType)) {
-            field.setLong(object, ((Double) value).longValue());
-            return true;
-        }
-        if (int.class.isAssignableFrom(fieldType)) {
-            field.setInt(object, ((Double) value).intValue());
-            return true;
-        }
-        if (boolean.class.isAssignableFrom(fieldType)) {
-            field.setBoolean(object, Boolean.valueOf(String.valueOf(value)).booleanValue());
-            return true;
-        }
-        return false;
-    }
+        private final String className;
+        private final List<String> columns;
+        private final TimeUnit precision;
+        private final int hash;
 
-    <T> boolean fieldValueForPrimitiveWrappersModified(final Class<?> fieldType, final Field field, final T object,
-                                                       final Object value) throws IllegalArgumentException, IllegalAccessException {
-        if (Double.class.isAssignableFrom(fieldType)) {
-            field.set(object, value);
-            return true;
-        }
-        if (Long.class.isAssignableFrom(fieldType)) {
-            field.set(object, Long.valueOf(((Double) value).longValue()));
-            return true;
-        }
-        if (Integer.class.isAssignableFrom(fieldType)) {
-            field.set(object, Integer.valueOf(((Double) value).intValue()));
-            return true;
-        }
-        if (Boolean.class.isAssignableFrom(fieldType)) {
-            field.set(object, Boolean.valueOf(String.valueOf(value)));
-            return true;
+        MappingPlanKey(Class<?> clazz, List<String> columns, TimeUnit precision) {
+            this.className = clazz.getName();
+            this.columns = columns;
+            this.precision = precision;
+            this.hash = Objects.hash(className, columns, precision);
         }
-        return false;
-    }
 
-    <T> boolean setFieldValueToDefaultField(final String fieldName,
-                                            final Field defaultField, final T object,
-                                            final Object value) throws IllegalArgumentException, IllegalAccessException {
-        if (defaultField != null) {
-            if (!defaultField.isAccessible()) {
-                defaultField.setAccessible(true);
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
             }
-            if (defaultField.get(object) == null) {
-                defaultField.set(object, new HashMap<>());
+            if (!(o instanceof MappingPlanKey)) {
+                return false;
             }
-            ((Map) defaultField.get(object)).put(fieldName, value);
-            return true;
+            MappingPlanKey that = (MappingPlanKey) o;
+            return hash == that.hash
+                    && className.equals(that.className)
+                    && precision == that.precision
+                    && columns.equals(that.columns);
         }
-        return false;
-    }
 
-    private Long toMillis(final long value, final TimeUnit precision) {
-
-        return TimeUnit.MILLISECONDS.convert(value, precision);
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 }
@@ -0,0 +1,201 @@
+package com.iot.tsa.util.db;
+
+import com.iot.tsa.exception.InvalidPayloadException;
+import org.influxdb.dto.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses InfluxDB line protocol
+ * (<tt>measurement[,tag=value...] field=value[,field=value...] [timestamp]</tt>) into
+ * {@link Point}s. Only the given measurement is accepted and the <tt>tenantId</tt> tag is always
+ * replaced by the tenant of the request, so a tenant cannot write into another one's series.
+ */
+public class LineProtocolParser {
+
+    private static final String TENANT_ID = "tenantId";
+    private static final String ID = "id";
+    private static final char[] KEY_END = {'='};
+    private static final char[] MEASUREMENT_END = {',', ' '};
+    private static final char[] VALUE_END = {',', ' '};
+    private static final char[] TIMESTAMP_END = {' '};
+
+    private final String measurement;
+
+    public LineProtocolParser(String measurement) {
+        this.measurement = measurement;
+    }
+
+    public List<Point> parse(String payload, String tenantId, TimeUnit precision) {
+        List<Point> points = new ArrayList<>();
+        int lineNumber = 0;
+        int start = 0;
+        while (start < payload.length()) {
+            int end = payload.indexOf('\n', start);
+            if (end < 0) {
+                end = payload.length();
+            }
+            lineNumber++;
+            String line = payload.substring(start, end).trim();
+            if (!line.isEmpty() && line.charAt(0) != '#') {
+                try {
+                    points.add(parseLine(line, tenantId, precision));
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidPayloadException("Invalid line protocol at line " + lineNumber
+                            + ": " + e.getMessage(), e);
+                }
+            }
+            start = end + 1;
+        }
+        return points;
+    }
+
+    private Point parseLine(String line, String tenantId, TimeUnit precision) {
+        Cursor cursor = new Cursor(line);
+
+        String name = cursor.readToken(MEASUREMENT_END);
+        if (!measurement.equals(name)) {
+            throw new IllegalArgumentException("measurement must be '" + measurement + "', got '" + name + "'");
+        }
+        Point.Builder builder = Point.measurement(measurement);
+
+        boolean hasId = false;
+        while (cursor.peek() == ',') {
+            cursor.next();
+            String key = cursor.readToken(KEY_END);
+            cursor.expect('=');
+            String value = cursor.readToken(VALUE_END);
+            if (ID.equals(key)) {
+                hasId = !value.isEmpty();
+            }
+            if (!TENANT_ID.equals(key)) {
+                builder.tag(key, value);
+            }
+        }
+        if (!hasId) {
+            throw new IllegalArgumentException("tag '" + ID + "' is required");
+        }
+        builder.tag(TENANT_ID, tenantId);
+
+        cursor.expect(' ');
+        boolean hasFields = false;
+        do {
+            if (hasFields) {
+                cursor.next();
+            }
+            String key = cursor.readToken(KEY_END);
+            cursor.expect('=');
+            addField(builder, key, cursor);
+            hasFields = true;
+        } while (cursor.peek() == ',');
+
+        if (cursor.peek() == ' ') {
+            cursor.next();
+            String timestamp = cursor.readToken(TIMESTAMP_END);
+            try {
+                builder.time(Long.parseLong(timestamp), precision);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid timestamp '" + timestamp + "'");
+            }
+        } else {
+            builder.time(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (cursor.peek() != Cursor.END) {
+            throw new IllegalArgumentException("unexpected content at column " + (cursor.position + 1));
+        }
+        return builder.build();
+    }
+
+    private static void addField(Point.Builder builder, String key, Cursor cursor) {
+        if (cursor.peek() == '"') {
+            builder.addField(key, cursor.readQuoted());
+            return;
+        }
+        String value = cursor.readToken(VALUE_END);
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("field '" + key + "' has no value");
+        }
+        char last = value.charAt(value.length() - 1);
+        try {
+            if (last == 'i' || last == 'u') {
+                builder.addField(key, Long.parseLong(value.substring(0, value.length() - 1)));
+            } else if ("t".equalsIgnoreCase(value) || "true".equalsIgnoreCase(value)) {
+                builder.addField(key, true);
+            } else if ("f".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+                builder.addField(key, false);
+            } else {
+                builder.addField(key, Double.parseDouble(value));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("field '" + key + "' has an invalid value '" + value + "'");
+        }
+    }
+
+    private static final class Cursor {
+
+        private static final char END = 0;
+
+        private final String line;
+        private int position;
+
+        Cursor(String line) {
+            this.line = line;
+        }
+
+        char peek() {
+            return position < line.length() ? line.charAt(position) : END;
+        }
+
+        void next() {
+            position++;
+        }
+
+        void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("expected '" + c + "' at column " + (position + 1));
+            }
+            position++;
+        }
+
+        /**
+         * Reads up to one of the delimiters, resolving backslash escapes.
+         */
+        String readToken(char[] delimiters) {
+            StringBuilder sb = new StringBuilder();
+            while (position < line.length()) {
+                char c = line.charAt(position);
+                if (c == '\\' && position + 1 < line.length()) {
+                    sb.append(line.charAt(position + 1));
+                    position += 2;
+                    continue;
+                }
+                for (char delimiter : delimiters) {
+                    if (c == delimiter) {
+                        return sb.toString();
+                    }
+                }
+                sb.append(c);
+                position++;
+            }
+            return sb.toString();
+        }
+
+        String readQuoted() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (position < line.length()) {
+                char c = line.charAt(position++);
+                if (c == '\\' && position < line.length()) {
+                    sb.append(line.charAt(position++));
+                } else if (c == '"') {
+                    return sb.toString();
+                } else {
+                    sb.append(c);
+                }
+            }
+            throw new IllegalArgumentException("unterminated string");
+        }
+    }
+}
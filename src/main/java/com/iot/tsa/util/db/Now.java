@@ -1,14 +1,26 @@
 package com.iot.tsa.util.db;
 
+import com.iot.tsa.exception.InvalidQueryException;
 import org.influxdb.querybuilder.Appendable;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 public class Now implements Appendable {
 
     private final String operation;
 
     public final static String RELATIVE_TIME = "now()";
 
+    private final static Pattern NOW_MINUS_DURATION
+            = Pattern.compile("\\s*now\\(\\)\\s*(?:-\\s*(\\d+)\\s*(ns|u|\\u00b5|ms|s|m|h|d|w))?\\s*");
+
     public Now(String operation) {
         this.operation = operation;
     }
@@ -27,4 +39,97 @@ public class Now implements Appendable {
     public static final Boolean isRelativeTime(String time) {
         return time.contains(RELATIVE_TIME);
     }
+
+    /**
+     * @return how far in the past a <tt>now()</tt> or <tt>now() - &lt;duration literal&gt;</tt>
+     * time is, <tt>null</tt> for any other expression
+     * @throws InvalidQueryException if the duration does not fit the nanoseconds of an InfluxDB
+     *                               duration
+     */
+    public static Duration offset(String time) {
+        Matcher matcher = NOW_MINUS_DURATION.matcher(time);
+        if (!matcher.matches()) {
+            return null;
+        }
+        if (matcher.group(1) == null) {
+            return Duration.ZERO;
+        }
+        try {
+            Duration offset = duration(Long.parseLong(matcher.group(1)), matcher.group(2));
+            offset.toNanos();
+            return offset;
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new InvalidQueryException("Relative time '" + time + "' is out of range", e);
+        }
+    }
+
+    private static Duration duration(long amount, String unit) {
+        switch (unit) {
+            case "ns":
+                return Duration.ofNanos(amount);
+            case "u":
+            case "\u00b5":
+                return Duration.of(amount, ChronoUnit.MICROS);
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            case "d":
+                return Duration.ofDays(amount);
+            default:
+                return Duration.ofDays(Math.multiplyExact(amount, 7L));
+        }
+    }
+
+    /**
+     * @return the <tt>now() - &lt;duration literal&gt;</tt> an {@link #offset(String)} was parsed from,
+     * in the coarsest unit that keeps it exact, so every way of writing an offset gives one text
+     */
+    public static String relativeTime(Duration offset) {
+        if (offset.isZero()) {
+            return RELATIVE_TIME;
+        }
+        long seconds = offset.getSeconds();
+        int nanos = offset.getNano();
+        String literal;
+        if (nanos == 0) {
+            if (seconds % 86_400 == 0) {
+                literal = seconds / 86_400 + "d";
+            } else if (seconds % 3_600 == 0) {
+                literal = seconds / 3_600 + "h";
+            } else if (seconds % 60 == 0) {
+                literal = seconds / 60 + "m";
+            } else {
+                literal = seconds + "s";
+            }
+        } else if (nanos % 1_000_000 == 0) {
+            literal = seconds * 1_000 + nanos / 1_000_000 + "ms";
+        } else if (nanos % 1_000 == 0) {
+            literal = seconds * 1_000_000 + nanos / 1_000 + "u";
+        } else {
+            literal = seconds * 1_000_000_000 + nanos + "ns";
+        }
+        return RELATIVE_TIME + " - " + literal;
+    }
+
+    /**
+     * @param now the current time, in epoch millis
+     * @return the time as epoch millis, <tt>null</tt> when it is not an RFC3339 time nor a
+     * <tt>now() - duration</tt>
+     */
+    public static Long toEpochMillis(String time, long now) {
+        Duration offset = offset(time);
+        if (offset != null) {
+            return now - offset.toMillis();
+        }
+        try {
+            return OffsetDateTime.parse(time.trim(), DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
 }
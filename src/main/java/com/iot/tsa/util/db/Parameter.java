@@ -0,0 +1,25 @@
+package com.iot.tsa.util.db;
+
+import org.influxdb.querybuilder.Appendable;
+
+/**
+ * A <tt>$name</tt> placeholder of a {@link org.influxdb.dto.BoundParameterQuery}, appended
+ * unquoted where the query builder would otherwise inline a value.
+ */
+public class Parameter implements Appendable {
+
+    private final String name;
+
+    public Parameter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void appendTo(StringBuilder sb) {
+        sb.append('$').append(name);
+    }
+}
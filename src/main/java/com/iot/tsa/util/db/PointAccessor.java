@@ -0,0 +1,82 @@
+package com.iot.tsa.util.db;
+
+import org.influxdb.InfluxDBMapperException;
+import org.influxdb.dto.Point;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads back what a {@link Point} was built with. The client only renders points as line
+ * protocol, so its fields are read through {@link MethodHandle}s resolved once.
+ *
+ * @author rfaita
+ */
+public final class PointAccessor {
+
+    private static final MethodHandle MEASUREMENT = getterOf("measurement");
+    private static final MethodHandle TAGS = getterOf("tags");
+    private static final MethodHandle TIME = getterOf("time");
+    private static final MethodHandle PRECISION = getterOf("precision");
+    private static final MethodHandle FIELDS = getterOf("fields");
+
+    private PointAccessor() {
+    }
+
+    public static String measurement(Point point) {
+        try {
+            return (String) MEASUREMENT.invokeExact(point);
+        } catch (Throwable e) {
+            throw new InfluxDBMapperException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, String> tags(Point point) {
+        try {
+            Map<String, String> tags = (Map<String, String>) TAGS.invokeExact(point);
+            return tags != null ? tags : Collections.<String, String>emptyMap();
+        } catch (Throwable e) {
+            throw new InfluxDBMapperException(e);
+        }
+    }
+
+    /**
+     * @return the time in epoch nanos, <tt>null</tt> when InfluxDB sets it on write
+     */
+    public static Long epochNanos(Point point) {
+        try {
+            Long time = (Long) TIME.invokeExact(point);
+            if (time == null) {
+                return null;
+            }
+            TimeUnit precision = (TimeUnit) PRECISION.invokeExact(point);
+            return precision.toNanos(time);
+        } catch (Throwable e) {
+            throw new InfluxDBMapperException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> fields(Point point) {
+        try {
+            return (Map<String, Object>) FIELDS.invokeExact(point);
+        } catch (Throwable e) {
+            throw new InfluxDBMapperException(e);
+        }
+    }
+
+    private static MethodHandle getterOf(String name) {
+        try {
+            Field field = Point.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.iot.tsa.util.db;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.iot.tsa.enums.TimeUnit;
+import com.iot.tsa.exception.InvalidQueryException;
 import org.influxdb.dto.BoundParameterQuery;
 import org.influxdb.dto.Query;
 import org.influxdb.querybuilder.SelectQueryImpl;
@@ -9,11 +12,36 @@ import org.influxdb.querybuilder.WhereQueryImpl;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
 import static org.influxdb.querybuilder.BuiltQuery.QueryBuilder.*;
 
 public class QueryCriteria {
 
     private final static String TIME = "time";
+    private final static String TENANT_ID = "tenantId";
+    private final static String ID = "id";
+    private final static String FROM = "from";
+    private final static String TO = "to";
+
+    /**
+     * Marks a time of a {@link Shape} that is bound as a parameter, relative times are part of
+     * the query text, normalized by {@link Now#relativeTime(Duration)}.
+     */
+    private final static String BOUND = "$";
+
+    /**
+     * Data structure used to cache the query text of every criteria shape. Its admission policy
+     * keeps the shapes requested often when many shapes are only requested once, like relative
+     * times of every offset.
+     */
+    private static final Cache<Shape, String> TEMPLATE_CACHE = Caffeine.newBuilder()
+            .maximumSize(1024)
+            .build();
 
     private final String table;
     private final String database;
@@ -21,10 +49,12 @@ public class QueryCriteria {
     private final String tenantId;
     private final String from;
     private final String to;
-    private final String[] selectCriteria;
+    private final boolean toExclusive;
+    private final List<SelectExpression> select;
     private final Long intervalValue;
     private final TimeUnit intervalUnit;
     private final String[] groupByCriteria;
+    private final boolean rollups;
 
     private QueryCriteria(Builder builder) {
         this.table = builder.table;
@@ -33,59 +63,98 @@ public class QueryCriteria {
         this.tenantId = builder.tenantId;
         this.from = builder.from;
         this.to = builder.to;
-        this.selectCriteria = builder.selectCriteria;
+        this.toExclusive = builder.toExclusive;
+        this.select = builder.select;
         this.intervalValue = builder.intervalValue;
         this.intervalUnit = builder.intervalUnit;
         this.groupByCriteria = builder.groupByCriteria;
+        this.rollups = builder.rollups;
     }
 
+    /**
+     * The query with the tenant, the id and the absolute times bound as parameters. Its text
+     * only depends on the {@link Shape} of the criteria, so it is built once per shape and
+     * every other request only binds the values.
+     *
+     * @throws InvalidQueryException if a time holding <tt>now()</tt> is not <tt>now()</tt> nor
+     *                               <tt>now() - &lt;duration literal&gt;</tt>
+     */
     public Query toQuery() {
+        Shape shape = new Shape(this);
+        String template = TEMPLATE_CACHE.get(shape, QueryCriteria::compile);
+
+        BoundParameterQuery.QueryBuilder query = BoundParameterQuery.QueryBuilder
+                .newQuery(template)
+                .forDatabase(this.database)
+                .bind(TENANT_ID, this.tenantId);
+        if (shape.id) {
+            query.bind(ID, this.id);
+        }
+        if (BOUND.equals(shape.from)) {
+            query.bind(FROM, this.from);
+        }
+        if (BOUND.equals(shape.to)) {
+            query.bind(TO, this.to);
+        }
+        return query.create();
+    }
+
+    /**
+     * Builds the query text of a shape, with placeholders instead of the bound values.
+     */
+    static String compile(Shape shape) {
         SelectionQueryImpl selection = select();
 
-        if (!ObjectUtils.isEmpty(this.selectCriteria)) {
-            for (String criteria : this.selectCriteria) {
-                selection.raw(criteria);
+        if (shape.rollupFields != null) {
+            for (String field : shape.rollupFields) {
+                selection.raw(field);
+            }
+        } else {
+            for (SelectExpression expression : shape.select) {
+                selection.raw(expression.toInfluxQL());
             }
         }
 
         WhereQueryImpl query = selection
-                .from(this.database, this.table)
+                .from(shape.database, shape.table)
                 .where()
-                .and(eq("tenantId", tenantId));
+                .and(eq("tenantId", new Parameter(TENANT_ID)));
 
-
-        if (!StringUtils.isEmpty(this.id)) {
-            query.and(eq("id", id));
+        if (shape.id) {
+            query.and(eq("id", new Parameter(ID)));
         }
 
-        if (!StringUtils.isEmpty(this.from)) {
-            if (Now.isRelativeTime(this.from)) {
-                query = query.and(gte(TIME, new Now(this.from)));
-            } else {
-                query = query.and(gte(TIME, this.from));
-            }
+        if (shape.from != null) {
+            query = query.and(gte(TIME, BOUND.equals(shape.from) ? new Parameter(FROM) : new Now(shape.from)));
         }
-        if (!StringUtils.isEmpty(this.to)) {
-            if (Now.isRelativeTime(this.to)) {
-                query = query.and(lte(TIME, new Now(this.to)));
-            } else {
-                query = query.and(lte(TIME, this.to));
-            }
+        if (shape.to != null) {
+            Object to = BOUND.equals(shape.to) ? new Parameter(TO) : new Now(shape.to);
+            query = query.and(shape.toExclusive ? lt(TIME, to) : lte(TIME, to));
         }
 
         SelectQueryImpl selectQuery = null;
 
-        if (!ObjectUtils.isEmpty(this.groupByCriteria)) {
-            selectQuery = query.groupBy(this.groupByCriteria);
-        } else if (!ObjectUtils.isEmpty(this.intervalValue) && !ObjectUtils.isEmpty(this.intervalUnit)) {
-            selectQuery = query.groupBy(time(this.intervalValue, this.intervalUnit.getUnit()));
+        if (!ObjectUtils.isEmpty(shape.groupByCriteria)) {
+            selectQuery = query.groupBy(shape.groupByCriteria);
+        } else if (shape.intervalUnit != null) {
+            selectQuery = query.groupBy(time(shape.intervalValue, shape.intervalUnit.getUnit()));
         }
 
-        return BoundParameterQuery.QueryBuilder
-                .newQuery((selectQuery != null ? selectQuery : query).buildQueryString().toString())
-                .forDatabase(this.database)
-                .create();
+        return (selectQuery != null ? selectQuery : query).buildQueryString().toString();
+    }
 
+    /**
+     * A query whose buckets are the ones of a rollup tier reads the tier instead of the raw
+     * points, its rows are already the buckets.
+     *
+     * @return the fields to read from the tier, <tt>null</tt> when it has to read the raw points
+     */
+    private String[] rollupFields() {
+        if (!this.rollups || !ObjectUtils.isEmpty(this.groupByCriteria)
+                || !Rollup.covers(this.intervalValue, this.intervalUnit)) {
+            return null;
+        }
+        return Rollup.fields(this.select);
     }
 
     public String getId() {
@@ -104,8 +173,15 @@ public class QueryCriteria {
         return to;
     }
 
-    public String[] getSelectCriteria() {
-        return selectCriteria;
+    public boolean isToExclusive() {
+        return toExclusive;
+    }
+
+    /**
+     * The parsed select criteria, empty to select every field.
+     */
+    public List<SelectExpression> getSelect() {
+        return select;
     }
 
     public Long getIntervalValue() {
@@ -120,6 +196,108 @@ public class QueryCriteria {
         return groupByCriteria;
     }
 
+    public boolean isRollups() {
+        return rollups;
+    }
+
+    public Builder toBuilder() {
+        return new Builder()
+                .table(this.table)
+                .database(this.database)
+                .id(this.id)
+                .tenantId(this.tenantId)
+                .from(this.from)
+                .to(this.to)
+                .toExclusive(this.toExclusive)
+                .select(this.select)
+                .intervalValue(this.intervalValue)
+                .intervalUnit(this.intervalUnit)
+                .groupByCriteria(this.groupByCriteria)
+                .rollups(this.rollups);
+    }
+
+    /**
+     * What the text of the query of a criteria depends on: everything but the values bound as
+     * parameters.
+     */
+    static final class Shape {
+
+        private final String database;
+        private final String table;
+        private final List<SelectExpression> select;
+        private final String[] rollupFields;
+        private final boolean id;
+        private final String from;
+        private final String to;
+        private final boolean toExclusive;
+        private final String[] groupByCriteria;
+        private final Long intervalValue;
+        private final TimeUnit intervalUnit;
+        private final int hash;
+
+        Shape(QueryCriteria criteria) {
+            String[] rollupFields = criteria.rollupFields();
+            this.database = criteria.database;
+            this.table = rollupFields != null
+                    ? Rollup.table(criteria.table, criteria.intervalUnit) : criteria.table;
+            this.select = rollupFields != null ? null : criteria.select;
+            this.rollupFields = rollupFields;
+            this.id = !StringUtils.isEmpty(criteria.id);
+            this.from = time(criteria.from);
+            this.to = time(criteria.to);
+            this.toExclusive = this.to != null && criteria.toExclusive;
+            this.groupByCriteria = ObjectUtils.isEmpty(criteria.groupByCriteria) ? null : criteria.groupByCriteria;
+            boolean interval = this.groupByCriteria == null && rollupFields == null
+                    && !ObjectUtils.isEmpty(criteria.intervalValue) && !ObjectUtils.isEmpty(criteria.intervalUnit);
+            this.intervalValue = interval ? criteria.intervalValue : null;
+            this.intervalUnit = interval ? criteria.intervalUnit : null;
+
+            int result = Objects.hash(database, table, select, id, from, to, toExclusive, intervalValue, intervalUnit);
+            result = 31 * result + Arrays.hashCode(rollupFields);
+            result = 31 * result + Arrays.hashCode(groupByCriteria);
+            this.hash = result;
+        }
+
+        private static String time(String time) {
+            if (StringUtils.isEmpty(time)) {
+                return null;
+            }
+            if (!Now.isRelativeTime(time)) {
+                return BOUND;
+            }
+            Duration offset = Now.offset(time);
+            if (offset == null) {
+                throw new InvalidQueryException("Invalid relative time '" + time
+                        + "', expected now() or now() - <duration literal>");
+            }
+            return Now.relativeTime(offset);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Shape shape = (Shape) o;
+            return hash == shape.hash &&
+                    id == shape.id &&
+                    toExclusive == shape.toExclusive &&
+                    Objects.equals(database, shape.database) &&
+                    Objects.equals(table, shape.table) &&
+                    Objects.equals(select, shape.select) &&
+                    Arrays.equals(rollupFields, shape.rollupFields) &&
+                    Objects.equals(from, shape.from) &&
+                    Objects.equals(to, shape.to) &&
+                    Arrays.equals(groupByCriteria, shape.groupByCriteria) &&
+                    Objects.equals(intervalValue, shape.intervalValue) &&
+                    intervalUnit == shape.intervalUnit;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
     public static class Builder {
         private String table;
         private String database;
@@ -127,10 +305,12 @@ public class QueryCriteria {
         private String tenantId;
         private String from;
         private String to;
-        private String[] selectCriteria;
+        private boolean toExclusive;
+        private List<SelectExpression> select = Collections.emptyList();
         private Long intervalValue;
         private TimeUnit intervalUnit;
         private String[] groupByCriteria;
+        private boolean rollups;
 
         public Builder table(String table) {
             this.table = table;
@@ -162,8 +342,24 @@ public class QueryCriteria {
             return this;
         }
 
+        /**
+         * Whether <tt>to</tt> is excluded from the range, to split a range without overlaps.
+         */
+        public Builder toExclusive(boolean toExclusive) {
+            this.toExclusive = toExclusive;
+            return this;
+        }
+
+        /**
+         * @throws InvalidQueryException if the criteria are not a valid {@link SelectExpression selection}
+         */
         public Builder selectCriteria(String[] selectCriteria) {
-            this.selectCriteria = selectCriteria;
+            this.select = SelectExpression.parse(selectCriteria);
+            return this;
+        }
+
+        public Builder select(List<SelectExpression> select) {
+            this.select = select != null ? select : Collections.<SelectExpression>emptyList();
             return this;
         }
 
@@ -182,6 +378,11 @@ public class QueryCriteria {
             return this;
         }
 
+        public Builder rollups(boolean rollups) {
+            this.rollups = rollups;
+            return this;
+        }
+
         public QueryCriteria build() {
             return new QueryCriteria(this);
         }
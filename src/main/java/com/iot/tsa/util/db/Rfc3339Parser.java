@@ -0,0 +1,152 @@
+package com.iot.tsa.util.db;
+
+import java.time.Instant;
+
+/**
+ * Parses the RFC3339 times of InfluxDB, <tt>2020-01-01T00:00:00.123456789Z</tt> or with an offset,
+ * straight from the characters into epoch nanos, without the intermediate objects of a
+ * {@link java.time.format.DateTimeFormatter}. Anything else, which InfluxDB does not send, is left
+ * to {@link CustomInfluxDBResultMapper#RFC3339_FORMATTER}, and so are the times beyond the epoch
+ * nanos a <tt>long</tt> holds, the years before 1677 and after 2262.
+ *
+ * @author rfaita
+ */
+final class Rfc3339Parser {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final long DAYS_0000_TO_1970 = 719_468L;
+    private static final long INVALID = Long.MIN_VALUE;
+    private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+
+    private Rfc3339Parser() {
+    }
+
+    static long toEpochMilli(String value) {
+        long nanos = parse(value);
+        if (nanos != INVALID) {
+            return Math.floorDiv(nanos, NANOS_PER_MILLI);
+        }
+        return format(value).toEpochMilli();
+    }
+
+    static Instant toInstant(String value) {
+        long nanos = parse(value);
+        if (nanos != INVALID) {
+            return Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND));
+        }
+        return format(value);
+    }
+
+    private static Instant format(String value) {
+        return Instant.from(CustomInfluxDBResultMapper.RFC3339_FORMATTER.parse(value));
+    }
+
+    private static long parse(String s) {
+        int length = s.length();
+        // yyyy-MM-ddTHH:mm:ssZ is the shortest
+        if (length < 20 || s.charAt(4) != '-' || s.charAt(7) != '-' || (s.charAt(10) != 'T' && s.charAt(10) != 't')
+                || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return INVALID;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+
+        int i = 19;
+        long fraction = 0;
+        if (s.charAt(i) == '.') {
+            int digits = 0;
+            while (++i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                if (++digits > 9) {
+                    return INVALID;
+                }
+                fraction = fraction * 10 + (s.charAt(i) - '0');
+            }
+            if (digits == 0 || i == length) {
+                return INVALID;
+            }
+            for (; digits < 9; digits++) {
+                fraction *= 10;
+            }
+        }
+
+        int offsetSeconds;
+        char zone = s.charAt(i);
+        if ((zone == 'Z' || zone == 'z') && i + 1 == length) {
+            offsetSeconds = 0;
+        } else if ((zone == '+' || zone == '-') && i + 6 == length && s.charAt(i + 3) == ':') {
+            int offsetHours = digits(s, i + 1, 2);
+            int offsetMinutes = digits(s, i + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0 || offsetMinutes > 59
+                    || offsetHours * 3600 + offsetMinutes * 60 > MAX_OFFSET_SECONDS) {
+                return INVALID;
+            }
+            offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (zone == '-' ? -1 : 1);
+        } else {
+            return INVALID;
+        }
+
+        long epochSecond = epochDay(year, month, day) * SECONDS_PER_DAY
+                + hour * 3600 + minute * 60 + second - offsetSeconds;
+        // outside of what InfluxDB stores, left to the formatter
+        if (epochSecond <= Long.MIN_VALUE / NANOS_PER_SECOND || epochSecond >= Long.MAX_VALUE / NANOS_PER_SECOND) {
+            return INVALID;
+        }
+        return epochSecond * NANOS_PER_SECOND + fraction;
+    }
+
+    /**
+     * The digits at <tt>offset</tt> as a number, <tt>-1</tt> if any of them is not a digit.
+     */
+    private static int digits(String s, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date, counting years from March so that the
+     * leap day is the last of the year.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - DAYS_0000_TO_1970;
+    }
+}
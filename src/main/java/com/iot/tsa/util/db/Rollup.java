@@ -0,0 +1,130 @@
+package com.iot.tsa.util.db;
+
+import com.iot.tsa.enums.AggregateFunction;
+import com.iot.tsa.enums.TimeUnit;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pre-aggregated copies of a measurement, one per {@link TimeUnit} tier, kept up to date by
+ * InfluxDB continuous queries. A tier holds a row per sensor and bucket of <tt>groupByFactor</tt>
+ * units, with the fields the aggregates produce over the raw points (<tt>mean_temperature</tt>,
+ * <tt>max_temperature</tt>...). For the buckets it holds, reading a tier returns what the same
+ * <tt>group by time(...)</tt> query over the raw measurement returns; it only holds the whole
+ * buckets from the start of its backfill on, so the partial bucket the backfill starts in and the
+ * ones before it are missing, and a tier is only read once its backfill completed.
+ */
+public final class Rollup {
+
+    private static final AggregateFunction[] FUNCTIONS = {AggregateFunction.MEAN, AggregateFunction.MEDIAN,
+            AggregateFunction.MIN, AggregateFunction.MAX, AggregateFunction.FIRST, AggregateFunction.LAST,
+            AggregateFunction.COUNT, AggregateFunction.SUM};
+
+    private Rollup() {
+    }
+
+    public static String table(String measurement, TimeUnit unit) {
+        return measurement + "_rollup_" + unit.getUnit();
+    }
+
+    public static String continuousQueryName(String measurement, TimeUnit unit) {
+        return "cq_" + table(measurement, unit);
+    }
+
+    /**
+     * Whether a tier holds the buckets of a <tt>group by time(intervalValue intervalUnit)</tt>.
+     */
+    public static boolean covers(Long intervalValue, TimeUnit intervalUnit) {
+        return intervalUnit != null && intervalUnit.getGroupByFactor().equals(intervalValue);
+    }
+
+    /**
+     * @return the fields of a tier holding the given <tt>function(*)</tt> selection, <tt>null</tt>
+     * when any of them is not kept in the tiers
+     */
+    public static String[] fields(List<SelectExpression> select) {
+        if (select == null || select.isEmpty()) {
+            return null;
+        }
+        String[] fields = new String[select.size()];
+        for (int i = 0; i < fields.length; i++) {
+            SelectExpression expression = select.get(i);
+            if (!expression.isAggregate() || expression.getField() != null
+                    || !Arrays.asList(FUNCTIONS).contains(expression.getFunction())) {
+                return null;
+            }
+            fields[i] = "/^" + expression.getFunction().getFunction() + "_/";
+        }
+        return fields;
+    }
+
+    /**
+     * The continuous query keeping a tier up to date. It runs every bucket of the tier below and
+     * recomputes the last two buckets, so the open bucket lags at most one lower tier bucket
+     * behind and points up to a bucket late are still counted.
+     */
+    public static String createContinuousQuery(String database, String retentionPolicy, String measurement,
+                                               TimeUnit unit) {
+        TimeUnit every = unit.getLowerUnit() != null ? unit.getLowerUnit() : unit;
+        return "CREATE CONTINUOUS QUERY " + quote(continuousQueryName(measurement, unit))
+                + " ON " + quote(database)
+                + " RESAMPLE EVERY " + interval(every)
+                + " FOR " + (unit.getGroupByFactor() * 2) + unit.getUnit()
+                + " BEGIN " + select(database, retentionPolicy, measurement, unit, null) + " END";
+    }
+
+    /**
+     * The length of a tier bucket, buckets are aligned to the epoch.
+     */
+    public static Duration bucket(TimeUnit unit) {
+        return Duration.of(unit.getGroupByFactor(), unit.getChronoUnit());
+    }
+
+    /**
+     * Fills a tier from the raw points between two epoch milliseconds, continuous queries only
+     * aggregate what is written after they are created. Both ends should be on bucket boundaries,
+     * a bucket split between two backfills is overwritten by the aggregate of its second part.
+     *
+     * @param to the end, exclusive, <tt>null</tt> for every later point
+     */
+    public static String backfill(String database, String retentionPolicy, String measurement, TimeUnit unit,
+                                  long from, Long to) {
+        String where = "time >= " + from + "ms";
+        if (to != null) {
+            where += " AND time < " + to + "ms";
+        }
+        return select(database, retentionPolicy, measurement, unit, where);
+    }
+
+    private static String select(String database, String retentionPolicy, String measurement, TimeUnit unit,
+                                 String where) {
+        StringBuilder sb = new StringBuilder("SELECT ");
+        for (int i = 0; i < FUNCTIONS.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(SelectExpression.aggregate(FUNCTIONS[i], null).toInfluxQL());
+        }
+        sb.append(" INTO ").append(path(database, retentionPolicy, table(measurement, unit)))
+                .append(" FROM ").append(path(database, retentionPolicy, measurement));
+        if (where != null) {
+            sb.append(" WHERE ").append(where);
+        }
+        // grouping by every tag keeps tenantId and id as tags of the tier
+        return sb.append(" GROUP BY time(").append(interval(unit)).append("), *").toString();
+    }
+
+    private static String interval(TimeUnit unit) {
+        return unit.getGroupByFactor() + unit.getUnit();
+    }
+
+    private static String path(String database, String retentionPolicy, String measurement) {
+        return quote(database) + "." + quote(retentionPolicy) + "." + quote(measurement);
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,296 @@
+package com.iot.tsa.util.db;
+
+import com.iot.tsa.enums.AggregateFunction;
+import com.iot.tsa.exception.InvalidQueryException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * One item of the select list of a query: a field, <tt>*</tt> for every field, or an
+ * {@link AggregateFunction} of either. The select criteria of a request are parsed into these
+ * rather than passed to InfluxDB as they are, so only the functions the service knows how to plan
+ * reach InfluxDB, and the same selection always renders the same InfluxQL.
+ */
+public final class SelectExpression {
+
+    private static final String ALL = "*";
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final AggregateFunction function;
+    private final String field;
+    private final Double argument;
+
+    private SelectExpression(AggregateFunction function, String field, Double argument) {
+        this.function = function;
+        this.field = field;
+        this.argument = argument;
+    }
+
+    /**
+     * @param field the field, <tt>null</tt> for every field
+     */
+    public static SelectExpression field(String field) {
+        return new SelectExpression(null, field, null);
+    }
+
+    /**
+     * @param field the field, <tt>null</tt> for every field
+     */
+    public static SelectExpression aggregate(AggregateFunction function, String field) {
+        if (function.hasArgument()) {
+            throw new InvalidQueryException(function.getFunction() + " takes an argument");
+        }
+        return new SelectExpression(function, field, null);
+    }
+
+    /**
+     * @param field      the field, <tt>null</tt> for every field
+     * @param percentile between 0 and 100
+     */
+    public static SelectExpression percentile(String field, double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new InvalidQueryException("The percentile must be between 0 and 100, got " + percentile);
+        }
+        return new SelectExpression(AggregateFunction.PERCENTILE, field, percentile);
+    }
+
+    /**
+     * Parses select criteria like <tt>mean(*)</tt>, <tt>max(temperature)</tt>,
+     * <tt>percentile(*, 95)</tt> or <tt>temperature</tt>. The criteria are parsed as a single
+     * comma separated list, so it does not matter whether a request param was split on its commas.
+     *
+     * @return the selection, empty for every field
+     * @throws InvalidQueryException if the criteria are not a valid selection
+     */
+    public static List<SelectExpression> parse(String[] selectCriteria) {
+        if (selectCriteria == null || selectCriteria.length == 0) {
+            return Collections.emptyList();
+        }
+        List<SelectExpression> select = new Parser(String.join(",", selectCriteria)).parse();
+
+        boolean aggregates = select.get(0).isAggregate();
+        for (SelectExpression expression : select) {
+            if (expression.isAggregate() != aggregates) {
+                throw new InvalidQueryException("Aggregates and fields cannot be selected together");
+            }
+        }
+        return Collections.unmodifiableList(select);
+    }
+
+    public boolean isAggregate() {
+        return function != null;
+    }
+
+    /**
+     * The function, <tt>null</tt> for a plain field.
+     */
+    public AggregateFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * The field, <tt>null</tt> for every field.
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * The argument of a {@link AggregateFunction#hasArgument() function that takes one}, <tt>null</tt> otherwise.
+     */
+    public Double getArgument() {
+        return argument;
+    }
+
+    /**
+     * The InfluxQL of the expression.
+     */
+    public String toInfluxQL() {
+        String selector = field == null ? ALL : quote(field);
+        if (function == null) {
+            return selector;
+        }
+        StringBuilder sb = new StringBuilder(function.getFunction()).append('(').append(selector);
+        if (argument != null) {
+            sb.append(", ");
+            if (argument == Math.rint(argument)) {
+                sb.append(argument.longValue());
+            } else {
+                sb.append(argument);
+            }
+        }
+        return sb.append(')').toString();
+    }
+
+    private static String quote(String identifier) {
+        if (IDENTIFIER.matcher(identifier).matches()) {
+            return identifier;
+        }
+        return "\"" + identifier.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SelectExpression that = (SelectExpression) o;
+        return function == that.function &&
+                Objects.equals(field, that.field) &&
+                Objects.equals(argument, that.argument);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(function, field, argument);
+    }
+
+    @Override
+    public String toString() {
+        return toInfluxQL();
+    }
+
+    /**
+     * <pre>
+     * list       = expression { "," expression }
+     * expression = selector | function "(" selector [ "," number ] ")"
+     * selector   = "*" | identifier | '"' quoted identifier '"'
+     * </pre>
+     */
+    private static final class Parser {
+
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        List<SelectExpression> parse() {
+            List<SelectExpression> select = new ArrayList<>();
+            do {
+                select.add(expression());
+            } while (accept(','));
+            skipWhitespace();
+            if (position < text.length()) {
+                throw error("Unexpected '" + text.charAt(position) + "'");
+            }
+            return select;
+        }
+
+        private SelectExpression expression() {
+            skipWhitespace();
+            if (accept('*')) {
+                return field(null);
+            }
+            boolean quoted = peek() == '"';
+            String name = identifier();
+            if (quoted || !accept('(')) {
+                return field(name);
+            }
+
+            AggregateFunction function = AggregateFunction.of(name);
+            if (function == null) {
+                throw error("Unsupported function '" + name + "'");
+            }
+            String field = selector();
+            SelectExpression expression;
+            if (function.hasArgument()) {
+                expect(',');
+                expression = percentile(field, number());
+            } else {
+                expression = aggregate(function, field);
+            }
+            expect(')');
+            return expression;
+        }
+
+        private String selector() {
+            skipWhitespace();
+            if (accept('*')) {
+                return null;
+            }
+            String field = identifier();
+            if (peek() == '(') {
+                throw error("Nested functions are not supported");
+            }
+            return field;
+        }
+
+        private String identifier() {
+            skipWhitespace();
+            if (peek() == '"') {
+                position++;
+                StringBuilder sb = new StringBuilder();
+                while (position < text.length() && text.charAt(position) != '"') {
+                    char c = text.charAt(position++);
+                    if (c == '\\' && position < text.length()) {
+                        c = text.charAt(position++);
+                    }
+                    sb.append(c);
+                }
+                expect('"');
+                if (sb.length() == 0) {
+                    throw error("Empty field name");
+                }
+                return sb.toString();
+            }
+            int start = position;
+            while (position < text.length()
+                    && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+                position++;
+            }
+            if (start == position || Character.isDigit(text.charAt(start))) {
+                throw error(position < text.length() ? "Unexpected '" + text.charAt(position) + "'"
+                        : "Unexpected end");
+            }
+            return text.substring(start, position);
+        }
+
+        private double number() {
+            skipWhitespace();
+            int start = position;
+            while (position < text.length()
+                    && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+                position++;
+            }
+            try {
+                return Double.parseDouble(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("Expected a number");
+            }
+        }
+
+        private char peek() {
+            skipWhitespace();
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        private boolean accept(char c) {
+            if (peek() == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!accept(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private InvalidQueryException error(String message) {
+            return new InvalidQueryException("Invalid selectCriteria '" + text + "' at " + position + ": " + message);
+        }
+    }
+}
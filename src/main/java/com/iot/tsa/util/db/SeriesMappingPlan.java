@@ -0,0 +1,362 @@
+package com.iot.tsa.util.db;
+
+import org.influxdb.InfluxDBMapperException;
+import org.influxdb.dto.QueryResult;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping plan compiled once per measurement class and column layout. Every column index is
+ * resolved up front to a {@link ColumnWriter} that already knows the target field, the value
+ * conversion and the {@link MethodHandle} used to set it, so mapping a row is a plain loop over
+ * the writers without any hash lookup or type dispatch.
+ *
+ * @author rfaita
+ */
+final class SeriesMappingPlan<T> {
+
+    private static final MethodType GENERIC_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType GENERIC_CONSTRUCTOR = MethodType.methodType(Object.class);
+
+    private final Class<T> clazz;
+    private final Map<String, Field> colNameAndFieldMap;
+    private final Field defaultField;
+    private final TimeUnit precision;
+    private final MethodHandle constructor;
+    private final MethodHandle defaultFieldSetter;
+    private final ColumnWriter[] writers;
+    private final int unmappedColumns;
+
+    private SeriesMappingPlan(Class<T> clazz, Map<String, Field> colNameAndFieldMap, Field defaultField,
+                              List<String> columns, TimeUnit precision) {
+        this.clazz = clazz;
+        this.colNameAndFieldMap = colNameAndFieldMap;
+        this.defaultField = defaultField;
+        this.precision = precision;
+        this.constructor = constructorOf(clazz);
+        this.defaultFieldSetter = defaultField != null ? setterOf(defaultField).asType(GENERIC_SETTER) : null;
+        this.writers = new ColumnWriter[columns.size()];
+
+        int unmapped = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnWriter writer = writerFor(columns.get(i));
+            if (writer instanceof UnmappedColumnWriter) {
+                unmapped++;
+            }
+            this.writers[i] = writer;
+        }
+        this.unmappedColumns = unmapped;
+    }
+
+    static <T> SeriesMappingPlan<T> compile(Class<T> clazz, Map<String, Field> colNameAndFieldMap, Field defaultField,
+                                            List<String> columns, TimeUnit precision) {
+        return new SeriesMappingPlan<>(clazz, colNameAndFieldMap, defaultField, columns, precision);
+    }
+
+    /**
+     * Maps every row of the series, appending the created objects to <tt>result</tt>. The series
+     * must have the column layout this plan was compiled for.
+     */
+    List<T> map(final QueryResult.Series series, final List<T> result) {
+        if (series.getValues() == null) {
+            return result;
+        }
+
+        // When the "GROUP BY" clause is used, "tags" are returned as Map<String,String> and
+        // accordingly with InfluxDB documentation
+        // https://docs.influxdata.com/influxdb/v1.2/concepts/glossary/#tag-value
+        // "tag" values are always String. They are constant for the whole series, so their
+        // writers are resolved once here instead of once per row.
+        ColumnWriter[] tagWriters = null;
+        Object[] tagValues = null;
+        int unmapped = this.unmappedColumns;
+        if (series.getTags() != null && !series.getTags().isEmpty()) {
+            tagWriters = new ColumnWriter[series.getTags().size()];
+            tagValues = new Object[tagWriters.length];
+            int i = 0;
+            for (Map.Entry<String, String> entry : series.getTags().entrySet()) {
+                tagWriters[i] = writerFor(entry.getKey());
+                tagValues[i] = entry.getValue();
+                if (tagWriters[i] instanceof UnmappedColumnWriter) {
+                    unmapped++;
+                }
+                i++;
+            }
+        }
+
+        if (!hasWriters(this.writers) && !hasWriters(tagWriters)) {
+            return result;
+        }
+
+        final ColumnWriter[] writers = this.writers;
+        final int unmappedCapacity = unmapped > 0 ? (int) (unmapped / 0.75f) + 1 : 0;
+        ColumnWriter current = null;
+        try {
+            for (List<Object> row : series.getValues()) {
+                Object object = constructor.invokeExact();
+                Map<String, Object> unmappedValues = null;
+                if (unmappedCapacity > 0) {
+                    unmappedValues = new HashMap<>(unmappedCapacity);
+                    defaultFieldSetter.invokeExact(object, (Object) unmappedValues);
+                }
+                for (int i = 0; i < writers.length; i++) {
+                    current = writers[i];
+                    if (current != null) {
+                        current.write(object, unmappedValues, row.get(i));
+                    }
+                }
+                if (tagWriters != null) {
+                    for (int i = 0; i < tagWriters.length; i++) {
+                        current = tagWriters[i];
+                        if (current != null) {
+                            current.write(object, unmappedValues, tagValues[i]);
+                        }
+                    }
+                }
+                result.add(clazz.cast(object));
+            }
+        } catch (ClassCastException e) {
+            String msg = "Class '%s' field '%s' was defined with a different field type and caused a ClassCastException. "
+                    + "The correct type is '%s'.";
+            throw new InfluxDBMapperException(
+                    String.format(msg, clazz.getName(), current != null ? current.name() : null,
+                            current != null ? current.type() : null));
+        } catch (InfluxDBMapperException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new InfluxDBMapperException(new Exception(e));
+        }
+        return result;
+    }
+
+    private static boolean hasWriters(ColumnWriter[] writers) {
+        if (writers != null) {
+            for (ColumnWriter writer : writers) {
+                if (writer != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private ColumnWriter writerFor(String columnName) {
+        Field field = colNameAndFieldMap.get(columnName);
+        if (field != null) {
+            return fieldWriterFor(field);
+        }
+        if (defaultField != null) {
+            return new UnmappedColumnWriter(columnName);
+        }
+        return null;
+    }
+
+    /**
+     * InfluxDB client returns any number as Double.
+     * See https://github.com/influxdata/influxdb-java/issues/153#issuecomment-259681987
+     * for more information.
+     */
+    private ColumnWriter fieldWriterFor(Field field) {
+        Class<?> fieldType = field.getType();
+        MethodHandle setter = setterOf(field);
+
+        if (String.class.isAssignableFrom(fieldType)) {
+            MethodHandle generic = setter.asType(GENERIC_SETTER);
+            return new FieldWriter(field) {
+                @Override
+                void set(Object target, Object value) throws Throwable {
+                    generic.invokeExact(target, (Object) String.valueOf(value));
+                }
+            };
+        }
+        if (Instant.class.isAssignableFrom(fieldType)) {
+            MethodHandle generic = setter.asType(GENERIC_SETTER);
+            return new FieldWriter(field) {
+                @Override
+                void set(Object target, Object value) throws Throwable {
+                    generic.invokeExact(target, (Object) toInstant(field, value));
+                }
+            };
+        }
+        if (double.class.isAssignableFrom(fieldType)) {
+            MethodHandle primitive = setter.asType(MethodType.methodType(void.class, Object.class, double.class));
+            return new FieldWriter(field) {
+                @Override
+                void set(Object target, Object value) throws Throwable {
+                    primitive.invokeExact(target, ((Number) value).doubleValue());
+                }
+            };
+        }
+        if (long.class.isAssignableFrom(fieldType)) {
+            MethodHandle primitive = setter.asType(MethodType.methodType(void.class, Object.class, long.class));
+            return new FieldWriter(field) {
+                @Override
+                void set(Object target, Object value) throws Throwable {
+                    primitive.invokeExact(target, ((Number) value).longValue());
+                }
+            };
+        }
+        if (int.class.isAssignableFrom(fieldType)) {
+            MethodHandle primitive = setter.asType(MethodType.methodType(void.class, Object.class, int.class));
+            return new FieldWriter(field) {
+                @Override
+                void set(Object target, Object value) throws Throwable {
+                    primitive.invokeExact(target, ((Number) value).intValue());
+                }
+            };
+        }
+        if (boolean.class.isAssignableFrom(fieldType)) {
+            MethodHandle primitive = setter.asType(MethodType.methodType(void.class, Object.class, boolean.class));
+            return new FieldWriter(field) {
+                @Override
+                void set(Object target, Object value) throws Throwable {
+                    primitive.invokeExact(target, Boolean.parseBoolean(String.valueOf(value)));
+                }
+            };
+        }
+        if (Double.class.isAssignableFrom(fieldType)) {
+            MethodHandle generic = setter.asType(GENERIC_SETTER);
+            return new FieldWriter(field) {
+                @Override
+                void set(Object target, Object value) throws Throwable {
+                    generic.invokeExact(target, (Object) Double.valueOf(((Number) value).doubleValue()));
+                }
+            };
+        }
+        if (Long.class.isAssignableFrom(fieldType)) {
+            MethodHandle generic = setter.asType(GENERIC_SETTER);
+            return new FieldWriter(field) {
+                @Override
+                void set(Object target, Object value) throws Throwable {
+                    generic.invokeExact(target, (Object) Long.valueOf(((Number) value).longValue()));
+                }
+            };
+        }
+        if (Integer.class.isAssignableFrom(fieldType)) {
+            MethodHandle generic = setter.asType(GENERIC_SETTER);
+            return new FieldWriter(field) {
+                @Override
+                void set(Object target, Object value) throws Throwable {
+                    generic.invokeExact(target, (Object) Integer.valueOf(((Number) value).intValue()));
+                }
+            };
+        }
+        if (Boolean.class.isAssignableFrom(fieldType)) {
+            MethodHandle generic = setter.asType(GENERIC_SETTER);
+            return new FieldWriter(field) {
+                @Override
+                void set(Object target, Object value) throws Throwable {
+                    generic.invokeExact(target, (Object) Boolean.valueOf(String.valueOf(value)));
+                }
+            };
+        }
+
+        String msg = "Class '%s' field '%s' is from an unsupported type '%s'.";
+        throw new InfluxDBMapperException(
+                String.format(msg, clazz.getName(), field.getName(), field.getType()));
+    }
+
+    private Instant toInstant(Field field, Object value) {
+        if (value instanceof Number) {
+            long time = ((Number) value).longValue();
+            long seconds = precision.toSeconds(time);
+            return Instant.ofEpochSecond(seconds, precision.toNanos(time - precision.convert(seconds, TimeUnit.SECONDS)));
+        }
+        if (value instanceof String) {
+            return Rfc3339Parser.toInstant((String) value);
+        }
+        throw new InfluxDBMapperException("Unsupported type " + value.getClass() + " for field " + field.getName());
+    }
+
+    private static MethodHandle constructorOf(Class<?> clazz) {
+        try {
+            Constructor<?> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(GENERIC_CONSTRUCTOR);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new InfluxDBMapperException(e);
+        }
+    }
+
+    private static MethodHandle setterOf(Field field) {
+        try {
+            if (!field.isAccessible()) {
+                field.setAccessible(true);
+            }
+            return MethodHandles.lookup().unreflectSetter(field);
+        } catch (IllegalAccessException e) {
+            throw new InfluxDBMapperException(e);
+        }
+    }
+
+    private abstract static class ColumnWriter {
+
+        abstract void write(Object target, Map<String, Object> unmappedValues, Object value) throws Throwable;
+
+        abstract String name();
+
+        abstract Class<?> type();
+    }
+
+    private abstract static class FieldWriter extends ColumnWriter {
+
+        private final Field field;
+
+        FieldWriter(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        final void write(Object target, Map<String, Object> unmappedValues, Object value) throws Throwable {
+            if (value != null) {
+                set(target, value);
+            }
+        }
+
+        abstract void set(Object target, Object value) throws Throwable;
+
+        @Override
+        String name() {
+            return field.getName();
+        }
+
+        @Override
+        Class<?> type() {
+            return field.getType();
+        }
+    }
+
+    private static final class UnmappedColumnWriter extends ColumnWriter {
+
+        private final String columnName;
+
+        UnmappedColumnWriter(String columnName) {
+            this.columnName = columnName;
+        }
+
+        @Override
+        void write(Object target, Map<String, Object> unmappedValues, Object value) {
+            unmappedValues.put(columnName, value);
+        }
+
+        @Override
+        String name() {
+            return columnName;
+        }
+
+        @Override
+        Class<?> type() {
+            return Map.class;
+        }
+    }
+
+}
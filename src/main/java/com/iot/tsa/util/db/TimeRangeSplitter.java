@@ -0,0 +1,91 @@
+package com.iot.tsa.util.db;
+
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.iot.tsa.util.TimeFormatter.toZulu;
+
+/**
+ * Splits the time range of a {@link QueryCriteria} into consecutive sub-ranges that can be
+ * queried independently and concatenated in order. Inner boundaries are aligned to the
+ * <tt>group by time(...)</tt> buckets, so every bucket is computed by a single sub-range and the
+ * aggregates are the same as the ones of the whole range. The first and the last sub-ranges keep
+ * the original bounds, only the boundaries in between are absolute times.
+ */
+public final class TimeRangeSplitter {
+
+    private TimeRangeSplitter() {
+    }
+
+    /**
+     * @param maxParts the most sub-ranges to split into
+     * @param minRange the narrowest a sub-range may be
+     * @param now      the current time, in epoch millis
+     * @return the sub-ranges in time order, or only the criteria itself when it cannot or need
+     * not be split
+     */
+    public static List<QueryCriteria> split(QueryCriteria criteria, int maxParts, Duration minRange, long now) {
+        if (maxParts < 2 || !isSplittable(criteria)) {
+            return Collections.singletonList(criteria);
+        }
+        Long from = Now.toEpochMillis(criteria.getFrom(), now);
+        Long to = StringUtils.isEmpty(criteria.getTo()) ? Long.valueOf(now) : Now.toEpochMillis(criteria.getTo(), now);
+        if (from == null || to == null || to <= from) {
+            return Collections.singletonList(criteria);
+        }
+
+        long width = to - from;
+        int parts = (int) Math.min(maxParts, width / Math.max(minRange.toMillis(), 1L));
+        if (parts < 2) {
+            return Collections.singletonList(criteria);
+        }
+
+        long bucket = bucketMillis(criteria);
+        List<QueryCriteria> ranges = new ArrayList<>(parts);
+        String start = criteria.getFrom();
+        long previous = from;
+        for (int part = 1; part < parts; part++) {
+            long boundary = Math.floorDiv(from + width / parts * part, bucket) * bucket;
+            if (boundary <= previous || boundary >= to) {
+                continue;
+            }
+            String end = toZulu(Instant.ofEpochMilli(boundary));
+            ranges.add(criteria.toBuilder().from(start).to(end).toExclusive(true).build());
+            start = end;
+            previous = boundary;
+        }
+        ranges.add(criteria.toBuilder().from(start).build());
+        return ranges;
+    }
+
+    /**
+     * Raw points and aggregates per bucket can be split, aggregates over the whole range, like
+     * a <tt>mean(*)</tt> without <tt>group by time(...)</tt>, cannot.
+     */
+    private static boolean isSplittable(QueryCriteria criteria) {
+        if (StringUtils.isEmpty(criteria.getFrom()) || !ObjectUtils.isEmpty(criteria.getGroupByCriteria())) {
+            return false;
+        }
+        // every aggregate function only looks at the points of its own bucket
+        boolean grouped = criteria.getIntervalValue() != null && criteria.getIntervalUnit() != null;
+        for (SelectExpression expression : criteria.getSelect()) {
+            if (expression.isAggregate() && !grouped) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long bucketMillis(QueryCriteria criteria) {
+        if (criteria.getIntervalValue() == null || criteria.getIntervalUnit() == null) {
+            return 1L;
+        }
+        return criteria.getIntervalUnit().getChronoUnit().getDuration().toMillis() * criteria.getIntervalValue();
+    }
+}
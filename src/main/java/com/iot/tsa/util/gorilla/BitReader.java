@@ -0,0 +1,38 @@
+package com.iot.tsa.util.gorilla;
+
+/**
+ * Reads back the bit strings of a {@link BitWriter}.
+ */
+final class BitReader {
+
+    private final long[] words;
+    private final int size;
+    private int position;
+
+    BitReader(long[] words, int size) {
+        this.words = words;
+        this.size = size;
+    }
+
+    /**
+     * @param count from 1 to 64
+     */
+    long read(int count) {
+        if (position + count > size) {
+            throw new IllegalStateException("Read past the " + size + " bits written");
+        }
+        int index = position >>> 6;
+        int used = position & 63;
+        int available = Long.SIZE - used;
+        long value = (words[index] << used) >>> (Long.SIZE - count);
+        if (count > available) {
+            value |= words[index + 1] >>> (Long.SIZE - (count - available));
+        }
+        position += count;
+        return value;
+    }
+
+    boolean readBit() {
+        return read(1) != 0L;
+    }
+}
@@ -0,0 +1,85 @@
+package com.iot.tsa.util.gorilla;
+
+import java.util.Arrays;
+
+/**
+ * Appends bit strings, most significant bit first, to a growing <tt>long[]</tt>.
+ */
+final class BitWriter {
+
+    private static final int INITIAL_WORDS = 16;
+
+    private long[] words;
+    private int size;
+
+    BitWriter() {
+        this.words = new long[INITIAL_WORDS];
+    }
+
+    private BitWriter(long[] words, int size) {
+        this.words = words;
+        this.size = size;
+    }
+
+    /**
+     * Writes the lowest <tt>count</tt> bits of <tt>value</tt>.
+     *
+     * @param count from 0 to 64
+     */
+    void write(long value, int count) {
+        if (count == 0) {
+            return;
+        }
+        if (count < Long.SIZE) {
+            value &= (1L << count) - 1;
+        }
+        int index = size >>> 6;
+        int free = Long.SIZE - (size & 63);
+        if (index + 1 >= words.length) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+        if (count <= free) {
+            words[index] |= value << (free - count);
+        } else {
+            words[index] |= value >>> (count - free);
+            words[index + 1] = value << (Long.SIZE - (count - free));
+        }
+        size += count;
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1L : 0L, 1);
+    }
+
+    /**
+     * The bits written so far.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * The bytes held, including the room for bits still to come.
+     */
+    long capacity() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * Drops the room for further bits, once nothing else is written.
+     */
+    void trim() {
+        words = Arrays.copyOf(words, (size + 63) >>> 6);
+    }
+
+    /**
+     * A copy holding the bits written so far, which later writes to this one do not change.
+     */
+    BitWriter copy() {
+        return new BitWriter(Arrays.copyOf(words, (size + 63) >>> 6), size);
+    }
+
+    BitReader reader() {
+        return new BitReader(words, size);
+    }
+}
@@ -0,0 +1,332 @@
+package com.iot.tsa.util.gorilla;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The points of one series over a span of time, compressed as in Facebook's Gorilla paper
+ * ("Gorilla: A Fast, Scalable, In-Memory Time Series Database", VLDB 2015): times as
+ * delta-of-deltas and every field as the XOR of each value with the previous one, each into its
+ * own bit stream of <tt>long</tt>s. Regular times cost a bit per point and slowly changing values
+ * a few bits, instead of the 8 bytes of a <tt>long</tt> or a <tt>double</tt>.
+ * <p>
+ * A row holds a value for some of the fields of the block, every field stream starts with a bit
+ * telling whether the row has a value, so a field that shows up later in the block or that only
+ * some rows have still decodes to the right rows.
+ * <p>
+ * Times must be appended in increasing order. Not thread safe, a block being appended to is
+ * {@link #copy() copied} to be read by other threads.
+ */
+public final class GorillaBlock {
+
+    /**
+     * The most a time can be after the previous one, every delta-of-delta fits in an <tt>int</tt>.
+     */
+    public static final long MAX_DELTA = Integer.MAX_VALUE;
+
+    private final BitWriter times;
+    private final List<String> names;
+    private final List<ValueStream> values;
+    private int size;
+    private long firstTime;
+    private long lastTime;
+    private long lastDelta;
+
+    public GorillaBlock() {
+        this.times = new BitWriter();
+        this.names = new ArrayList<>();
+        this.values = new ArrayList<>();
+    }
+
+    private GorillaBlock(GorillaBlock block) {
+        this.times = block.times.copy();
+        this.names = new ArrayList<>(block.names);
+        this.values = new ArrayList<>(block.values.size());
+        for (ValueStream stream : block.values) {
+            this.values.add(stream.copy());
+        }
+        this.size = block.size;
+        this.firstTime = block.firstTime;
+        this.lastTime = block.lastTime;
+        this.lastDelta = block.lastDelta;
+    }
+
+    /**
+     * Whether a point at <tt>time</tt> can be appended: after the last one and close enough to it.
+     */
+    public boolean accepts(long time) {
+        return size == 0 || (time > lastTime && time - lastTime <= MAX_DELTA);
+    }
+
+    /**
+     * @param time   after the last time of the block, see {@link #accepts(long)}
+     * @param fields the values of the row, by field
+     */
+    public void append(long time, Map<String, Double> fields) {
+        if (!accepts(time)) {
+            throw new IllegalArgumentException("Time " + time + " cannot follow " + lastTime);
+        }
+        appendTime(time);
+        for (Map.Entry<String, Double> field : fields.entrySet()) {
+            int index = names.indexOf(field.getKey());
+            if (index < 0) {
+                index = names.size();
+                names.add(field.getKey());
+                values.add(new ValueStream(size));
+            }
+            values.get(index).append(field.getValue());
+        }
+        size++;
+        for (ValueStream stream : values) {
+            if (stream.rows < size) {
+                stream.appendMissing();
+            }
+        }
+    }
+
+    private void appendTime(long time) {
+        if (size == 0) {
+            times.write(time, Long.SIZE);
+            firstTime = time;
+            lastTime = time;
+            return;
+        }
+        long delta = time - lastTime;
+        long deltaOfDelta = delta - lastDelta;
+        if (deltaOfDelta == 0) {
+            times.write(0b0, 1);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            times.write(0b10, 2);
+            times.write(deltaOfDelta + 63, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            times.write(0b110, 3);
+            times.write(deltaOfDelta + 255, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            times.write(0b1110, 4);
+            times.write(deltaOfDelta + 2047, 12);
+        } else {
+            times.write(0b1111, 4);
+            times.write(deltaOfDelta, Integer.SIZE);
+        }
+        lastDelta = delta;
+        lastTime = time;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * The bytes held by the bit streams.
+     */
+    public long getBytes() {
+        long bytes = times.capacity();
+        for (ValueStream stream : values) {
+            bytes += stream.bits.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops the room kept for further points, once the block is full.
+     */
+    public void seal() {
+        times.trim();
+        for (ValueStream stream : values) {
+            stream.bits.trim();
+        }
+    }
+
+    /**
+     * A copy of the points appended so far, to be decoded while this block takes more.
+     */
+    public GorillaBlock copy() {
+        return new GorillaBlock(this);
+    }
+
+    /**
+     * Decodes every point of the block.
+     */
+    public Points decode() {
+        long[] decodedTimes = new long[size];
+        if (size > 0) {
+            BitReader reader = times.reader();
+            long time = reader.read(Long.SIZE);
+            long delta = 0L;
+            decodedTimes[0] = time;
+            for (int row = 1; row < size; row++) {
+                delta += readDeltaOfDelta(reader);
+                time += delta;
+                decodedTimes[row] = time;
+            }
+        }
+
+        double[][] decodedValues = new double[values.size()][];
+        for (int field = 0; field < decodedValues.length; field++) {
+            decodedValues[field] = values.get(field).decode(size);
+        }
+        return new Points(names.toArray(new String[0]), decodedTimes, decodedValues);
+    }
+
+    private static long readDeltaOfDelta(BitReader reader) {
+        if (!reader.readBit()) {
+            return 0L;
+        }
+        if (!reader.readBit()) {
+            return reader.read(7) - 63;
+        }
+        if (!reader.readBit()) {
+            return reader.read(9) - 255;
+        }
+        if (!reader.readBit()) {
+            return reader.read(12) - 2047;
+        }
+        return (int) reader.read(Integer.SIZE);
+    }
+
+    /**
+     * The decoded points of a block, one <tt>double[]</tt> per field with {@link Double#NaN}
+     * where a row has no value.
+     */
+    public static final class Points {
+
+        private final String[] fields;
+        private final long[] times;
+        private final double[][] values;
+
+        Points(String[] fields, long[] times, double[][] values) {
+            this.fields = fields;
+            this.times = times;
+            this.values = values;
+        }
+
+        public String[] getFields() {
+            return fields;
+        }
+
+        public long[] getTimes() {
+            return times;
+        }
+
+        public double[][] getValues() {
+            return values;
+        }
+    }
+
+    /**
+     * The values of one field: per row a bit telling whether it has a value and, if it does, the
+     * value XOR the previous one. A zero XOR takes one more bit; otherwise its meaningful bits
+     * are written within the leading and trailing zeros of the previous XOR when they fit, or
+     * after their own 5 bit count of leading zeros and 6 bit length.
+     */
+    private static final class ValueStream {
+
+        private final BitWriter bits;
+        private int rows;
+        private boolean started;
+        private long previous;
+        private int leading = Integer.MAX_VALUE;
+        private int trailing;
+
+        ValueStream(int missingRows) {
+            this.bits = new BitWriter();
+            for (int i = 0; i < missingRows; i++) {
+                appendMissing();
+            }
+        }
+
+        private ValueStream(ValueStream stream) {
+            this.bits = stream.bits.copy();
+            this.rows = stream.rows;
+            this.started = stream.started;
+            this.previous = stream.previous;
+            this.leading = stream.leading;
+            this.trailing = stream.trailing;
+        }
+
+        ValueStream copy() {
+            return new ValueStream(this);
+        }
+
+        void appendMissing() {
+            bits.writeBit(false);
+            rows++;
+        }
+
+        void append(double value) {
+            bits.writeBit(true);
+            rows++;
+            long current = Double.doubleToRawLongBits(value);
+            if (!started) {
+                bits.write(current, Long.SIZE);
+                previous = current;
+                started = true;
+                return;
+            }
+
+            long xor = current ^ previous;
+            previous = current;
+            if (xor == 0L) {
+                bits.writeBit(false);
+                return;
+            }
+            bits.writeBit(true);
+            int currentLeading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int currentTrailing = Long.numberOfTrailingZeros(xor);
+            if (currentLeading >= leading && currentTrailing >= trailing) {
+                bits.writeBit(false);
+                bits.write(xor >>> trailing, Long.SIZE - leading - trailing);
+            } else {
+                int meaningful = Long.SIZE - currentLeading - currentTrailing;
+                bits.writeBit(true);
+                bits.write(currentLeading, 5);
+                // 64 meaningful bits are written as 0, a XOR that is not zero has at least one
+                bits.write(meaningful, 6);
+                bits.write(xor >>> currentTrailing, meaningful);
+                leading = currentLeading;
+                trailing = currentTrailing;
+            }
+        }
+
+        double[] decode(int size) {
+            double[] decoded = new double[size];
+            Arrays.fill(decoded, Double.NaN);
+            BitReader reader = bits.reader();
+            long value = 0L;
+            int blockLeading = 0;
+            int blockTrailing = 0;
+            boolean first = true;
+            for (int row = 0; row < rows; row++) {
+                if (!reader.readBit()) {
+                    continue;
+                }
+                if (first) {
+                    value = reader.read(Long.SIZE);
+                    first = false;
+                } else if (reader.readBit()) {
+                    if (reader.readBit()) {
+                        blockLeading = (int) reader.read(5);
+                        int meaningful = (int) reader.read(6);
+                        if (meaningful == 0) {
+                            meaningful = Long.SIZE;
+                        }
+                        blockTrailing = Long.SIZE - blockLeading - meaningful;
+                    }
+                    value ^= reader.read(Long.SIZE - blockLeading - blockTrailing) << blockTrailing;
+                }
+                decoded[row] = Double.longBitsToDouble(value);
+            }
+            return decoded;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.iot.tsa.util.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.iot.tsa.model.SensorDataColumns;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link SensorDataColumns} as a column header plus dense point arrays:
+ * <pre>
+ * {"columns":["time","mean_temperature",...],"points":[[1577836800000,21.5,...],...]}
+ * </pre>
+ * Time is written as epoch millis and missing values as <tt>null</tt>.
+ */
+public class SensorDataColumnsSerializer extends StdSerializer<SensorDataColumns> {
+
+    private static final String TIME = "time";
+
+    public SensorDataColumnsSerializer() {
+        super(SensorDataColumns.class);
+    }
+
+    @Override
+    public void serialize(SensorDataColumns value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        String[] columns = value.getColumns();
+        long[] times = value.getTimes();
+        double[][] values = value.getValues();
+
+        gen.writeStartObject();
+
+        gen.writeArrayFieldStart("columns");
+        gen.writeString(TIME);
+        for (String column : columns) {
+            gen.writeString(column);
+        }
+        gen.writeEndArray();
+
+        gen.writeArrayFieldStart("points");
+        for (int row = 0; row < times.length; row++) {
+            gen.writeStartArray();
+            gen.writeNumber(times[row]);
+            for (int column = 0; column < values.length; column++) {
+                double cell = values[column][row];
+                if (Double.isNaN(cell)) {
+                    gen.writeNull();
+                } else {
+                    gen.writeNumber(cell);
+                }
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndArray();
+
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,159 @@
+package com.iot.tsa.util.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.iot.tsa.exception.InvalidPayloadException;
+import com.iot.tsa.model.SensorData;
+import org.influxdb.annotation.Measurement;
+import org.influxdb.dto.Point;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns sensor JSON payloads straight into {@link Point}s with a streaming parser, without
+ * building a tree or a map per message. A payload is either one object or an array of objects
+ * shaped like the ones the devices publish:
+ * <pre>
+ * {"id":"1", "tenantId":"1", "timestamp":1577836800000, "temperature":45.0, "memory":12.5}
+ * </pre>
+ * <tt>id</tt> and <tt>tenantId</tt> become tags, <tt>timestamp</tt> (epoch millis, defaults to
+ * now) the point time, and every other scalar a field, strings included, except the ignored keys:
+ * what devices send along that is not a measurement, like the <tt>token</tt> they authenticate
+ * with.
+ */
+public class SensorDataPointParser {
+
+    public static final String MEASUREMENT = SensorData.class.getAnnotation(Measurement.class).name();
+
+    private static final String ID = "id";
+    private static final String TENANT_ID = "tenantId";
+    private static final String TIMESTAMP = "timestamp";
+
+    private final JsonFactory jsonFactory;
+    private final Set<String> ignoredKeys;
+
+    public SensorDataPointParser(JsonFactory jsonFactory, Set<String> ignoredKeys) {
+        this.jsonFactory = jsonFactory;
+        this.ignoredKeys = ignoredKeys;
+    }
+
+    /**
+     * @param tenantId when not <tt>null</tt> it overrides the <tt>tenantId</tt> of the payload
+     */
+    public List<Point> parse(InputStream payload, String tenantId) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return parse(parser, tenantId);
+        } catch (JsonProcessingException e) {
+            throw new InvalidPayloadException("Invalid sensor data: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    public List<Point> parse(byte[] payload, String tenantId) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return parse(parser, tenantId);
+        } catch (JsonProcessingException e) {
+            throw new InvalidPayloadException("Invalid sensor data: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private List<Point> parse(JsonParser parser, String tenantId) throws IOException {
+        List<Point> points = new ArrayList<>();
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            points.add(parsePoint(parser, tenantId));
+        } else if (token == JsonToken.START_ARRAY) {
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                points.add(parsePoint(parser, tenantId));
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw invalid(parser, "expected an object");
+            }
+        } else {
+            throw invalid(parser, "expected an object or an array of objects");
+        }
+        if (parser.nextToken() != null) {
+            throw invalid(parser, "unexpected content after the payload");
+        }
+        return points;
+    }
+
+    private Point parsePoint(JsonParser parser, String tenantId) throws IOException {
+        Point.Builder builder = Point.measurement(MEASUREMENT);
+        String id = null;
+        String payloadTenantId = null;
+        long timestamp = -1L;
+        boolean hasFields = false;
+
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            token = parser.nextToken();
+            if (token == null || token.isStructStart()) {
+                throw invalid(parser, "'" + name + "' must be a number, a boolean or a string");
+            }
+            if (ID.equals(name)) {
+                id = parser.getValueAsString();
+            } else if (TENANT_ID.equals(name)) {
+                payloadTenantId = parser.getValueAsString();
+            } else if (TIMESTAMP.equals(name)) {
+                if (!token.isNumeric()) {
+                    throw invalid(parser, "'" + TIMESTAMP + "' must be epoch millis");
+                }
+                timestamp = parser.getLongValue();
+            } else if (!ignoredKeys.contains(name)) {
+                switch (token) {
+                    case VALUE_NUMBER_INT:
+                    case VALUE_NUMBER_FLOAT:
+                        builder.addField(name, parser.getDoubleValue());
+                        hasFields = true;
+                        break;
+                    case VALUE_TRUE:
+                    case VALUE_FALSE:
+                        builder.addField(name, parser.getBooleanValue());
+                        hasFields = true;
+                        break;
+                    case VALUE_STRING:
+                        builder.addField(name, parser.getText());
+                        hasFields = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw invalid(parser, "malformed object");
+        }
+
+        String tenant = tenantId != null ? tenantId : payloadTenantId;
+        if (tenant == null || tenant.isEmpty()) {
+            throw invalid(parser, "'" + TENANT_ID + "' is required");
+        }
+        if (id == null || id.isEmpty()) {
+            throw invalid(parser, "'" + ID + "' is required");
+        }
+        if (!hasFields) {
+            throw invalid(parser, "at least one field is required");
+        }
+
+        return builder
+                .tag(TENANT_ID, tenant)
+                .tag(ID, id)
+                .time(timestamp >= 0 ? timestamp : System.currentTimeMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    private static InvalidPayloadException invalid(JsonParser parser, String message) {
+        JsonLocation location = parser.getCurrentLocation();
+        return new InvalidPayloadException("Invalid sensor data at line " + location.getLineNr()
+                + ", column " + location.getColumnNr() + ": " + message);
+    }
+}
@@ -0,0 +1,100 @@
+package com.iot.tsa.util.protobuf;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.iot.tsa.model.CompactSensorsDataResource;
+import com.iot.tsa.model.SensorDataColumns;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link CompactSensorsDataResource} as the <tt>Series</tt> message of
+ * <tt>src/main/proto/sensor_data.proto</tt>, encoded field by field straight from the columns so
+ * that no message object is built per response. The links are left out.
+ */
+public class SensorDataColumnsProtobufHttpMessageConverter
+        extends AbstractHttpMessageConverter<CompactSensorsDataResource> {
+
+    public static final String APPLICATION_PROTOBUF_VALUE = "application/x-protobuf";
+    public static final MediaType APPLICATION_PROTOBUF = MediaType.valueOf(APPLICATION_PROTOBUF_VALUE);
+
+    private static final int SERIES_TIMES = 1;
+    private static final int SERIES_COLUMNS = 2;
+    private static final int COLUMN_NAME = 1;
+    private static final int COLUMN_VALUES = 2;
+    private static final int BUFFER_SIZE = 8192;
+
+    public SensorDataColumnsProtobufHttpMessageConverter() {
+        super(APPLICATION_PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CompactSensorsDataResource.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected CompactSensorsDataResource readInternal(Class<? extends CompactSensorsDataResource> clazz,
+                                                      HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Sensor data is not read as Protobuf", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(CompactSensorsDataResource resource, HttpOutputMessage outputMessage)
+            throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(outputMessage.getBody(), BUFFER_SIZE);
+        write(resource.getData(), output);
+        output.flush();
+    }
+
+    private static void write(SensorDataColumns data, CodedOutputStream output) throws IOException {
+        long[] times = data.getTimes();
+        if (times.length > 0) {
+            int size = 0;
+            long previous = 0L;
+            for (long time : times) {
+                size += CodedOutputStream.computeSInt64SizeNoTag(time - previous);
+                previous = time;
+            }
+            output.writeTag(SERIES_TIMES, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(size);
+            previous = 0L;
+            for (long time : times) {
+                output.writeSInt64NoTag(time - previous);
+                previous = time;
+            }
+        }
+
+        String[] columns = data.getColumns();
+        double[][] values = data.getValues();
+        int valuesSize = times.length * Double.BYTES;
+        for (int column = 0; column < columns.length; column++) {
+            int size = CodedOutputStream.computeStringSize(COLUMN_NAME, columns[column]);
+            if (valuesSize > 0) {
+                size += CodedOutputStream.computeTagSize(COLUMN_VALUES)
+                        + CodedOutputStream.computeUInt32SizeNoTag(valuesSize) + valuesSize;
+            }
+            output.writeTag(SERIES_COLUMNS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(size);
+            output.writeString(COLUMN_NAME, columns[column]);
+            if (valuesSize > 0) {
+                output.writeTag(COLUMN_VALUES, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                output.writeUInt32NoTag(valuesSize);
+                double[] cells = values[column];
+                for (int row = 0; row < times.length; row++) {
+                    output.writeDoubleNoTag(cells[row]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.iot.tsa.repository;
+
+import com.iot.tsa.config.HotWindowProperties;
+import com.iot.tsa.enums.TimeUnit;
+import com.iot.tsa.model.SensorData;
+import com.iot.tsa.model.SensorDataColumns;
+import com.iot.tsa.util.db.QueryCriteria;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.influxdb.dto.Point;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.iot.tsa.util.TimeFormatter.toZulu;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Compares the answers of the store with the same queries computed over the points as written.
+ * A sensor is only answered from the time it was first written, so the points are written from
+ * the next hour on and queried by absolute times.
+ */
+class HotWindowStoreTest {
+
+    private static final String[] FIELDS = {"cpu", "temperature"};
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    private SimpleMeterRegistry meterRegistry;
+    private HotWindowStore store;
+    private long start;
+
+    @BeforeEach
+    void setUp() {
+        HotWindowProperties properties = new HotWindowProperties();
+        properties.setEnabled(true);
+        properties.setSingleWriter(true);
+        properties.setWindow(Duration.ofDays(2));
+        properties.setBlockDuration(Duration.ofMinutes(20));
+        meterRegistry = new SimpleMeterRegistry();
+        store = new HotWindowStore(properties, meterRegistry);
+        start = (System.currentTimeMillis() / Duration.ofHours(1).toMillis() + 1) * Duration.ofHours(1).toMillis();
+    }
+
+    @Test
+    void rawQueriesMatchThePointsWritten() {
+        List<Row> rows = write(new Random(1), 600);
+        long end = rows.get(rows.size() - 1).time;
+
+        // every field, a single field, from the first point and from within a block
+        for (long from : new long[]{start, start + 25 * MINUTE + 1, start + 61 * MINUTE}) {
+            QueryCriteria all = criteria(from, end, null, null, null);
+            assertSameColumns(store.findColumnsByCriteria(all), select(rows, from, end, FIELDS));
+
+            QueryCriteria cpu = criteria(from, end, new String[]{"cpu"}, null, null);
+            assertSameColumns(store.findColumnsByCriteria(cpu), select(rows, from, end, "cpu"));
+        }
+
+        List<SensorData> data = store.findAllByCriteria(criteria(start, start + 2 * MINUTE, null, null, null));
+        List<Row> expected = select(rows, start, start + 2 * MINUTE);
+        assertThat(data).hasSize(expected.size());
+        for (int i = 0; i < data.size(); i++) {
+            assertThat(data.get(i).getTime()).isEqualTo(Instant.ofEpochMilli(expected.get(i).time));
+            assertThat(data.get(i).getExtraFields())
+                    .containsEntry("tenantId", "1")
+                    .containsEntry("id", "1")
+                    .containsEntry("temperature", expected.get(i).fields.get("temperature"))
+                    .containsEntry("cpu", expected.get(i).fields.get("cpu"));
+        }
+    }
+
+    @Test
+    void aggregatesMatchTheFunctionsOverThePointsWritten() {
+        List<Row> rows = write(new Random(2), 600);
+        long end = rows.get(rows.size() - 1).time;
+        // the columns of a function are named after it alone, so every percentile is queried apart
+        String[][] selections = {
+                {"mean(*)", "median(*)", "min(*)", "max(*)", "first(*)", "last(*)", "count(*)", "sum(*)", "stddev(*)"},
+                {"percentile(*, 1)"}, {"percentile(*, 50)"}, {"percentile(*, 90)"}, {"percentile(*, 99.9)"}};
+
+        for (String[] functions : selections) {
+            for (long interval : new long[]{1, 5, 7}) {
+                // aligned to the buckets and not, the first and last buckets only partly queried
+                for (long from : new long[]{start, start + 13 * MINUTE + 500}) {
+                    QueryCriteria criteria = criteria(from, end, functions, interval, TimeUnit.M);
+                    assertSameColumns(store.findColumnsByCriteria(criteria),
+                            aggregate(rows, from, end, interval * MINUTE, functions));
+                }
+            }
+        }
+    }
+
+    @Test
+    void emptyBucketsCountZeroAndAreNullOtherwise() {
+        // a point a minute, the third minute without any
+        append(row(start, 1.0, 10.0), row(start + MINUTE, 2.0, null),
+                row(start + 3 * MINUTE, 4.0, 40.0), row(start + 3 * MINUTE + 1, 5.0, 50.0));
+
+        SensorDataColumns columns = store.findColumnsByCriteria(
+                criteria(start, start + 4 * MINUTE - 1, new String[]{"count(*)", "mean(*)"}, 1L, TimeUnit.M));
+
+        assertThat(columns.getColumns()).containsExactly("count_cpu", "count_temperature", "mean_cpu", "mean_temperature");
+        assertThat(columns.getTimes()).containsExactly(start, start + MINUTE, start + 2 * MINUTE, start + 3 * MINUTE);
+        assertThat(columns.getValues()[0]).containsExactly(1.0, 1.0, 0.0, 2.0);
+        assertThat(columns.getValues()[1]).containsExactly(1.0, 0.0, 0.0, 2.0);
+        assertThat(columns.getValues()[2]).containsExactly(1.0, 2.0, Double.NaN, 4.5);
+        assertThat(columns.getValues()[3]).containsExactly(10.0, Double.NaN, Double.NaN, 45.0);
+    }
+
+    @Test
+    void medianPercentileAndStddevFollowInfluxDB() {
+        // a bucket of four values, one of a single value
+        append(row(start, 4.0, null), row(start + 1, 1.0, null), row(start + 2, 3.0, null), row(start + 3, 2.0, null),
+                row(start + MINUTE, 7.0, null));
+
+        // the mean of the two middle values of an even count
+        assertThat(bucketsOf("median(*)")).containsExactly(2.5, 7.0);
+        // the value at floor(count * p / 100 + 0.5) in increasing order, null below the first
+        assertThat(bucketsOf("percentile(*, 50)")).containsExactly(2.0, 7.0);
+        assertThat(bucketsOf("percentile(*, 62.5)")).containsExactly(3.0, 7.0);
+        assertThat(bucketsOf("percentile(*, 62.4)")).containsExactly(2.0, 7.0);
+        assertThat(bucketsOf("percentile(*, 0)")).containsExactly(Double.NaN, Double.NaN);
+        assertThat(bucketsOf("percentile(*, 12.5)")).containsExactly(1.0, Double.NaN);
+        assertThat(bucketsOf("percentile(*, 100)")).containsExactly(4.0, 7.0);
+        // the sample standard deviation, null for a single value
+        double[] stddev = bucketsOf("stddev(*)");
+        assertThat(stddev[0]).isCloseTo(Math.sqrt(5.0 / 3), within(1e-12));
+        assertThat(stddev[1]).isNaN();
+    }
+
+    @Test
+    void rangesBeforeWhatIsHeldAreLeftToInfluxDB() {
+        long writtenFrom = System.currentTimeMillis();
+        append(row(start, 1.0, 10.0), row(start + MINUTE, 2.0, 20.0), row(start + 2 * MINUTE, 3.0, 30.0));
+
+        // before the sensor was first written through this instance
+        assertThat(store.findColumnsByCriteria(criteria(writtenFrom - 1, start + 2 * MINUTE, null, null, null))).isNull();
+        assertThat(store.findColumnsByCriteria(criteria(start, start + 2 * MINUTE, null, null, null))).isNotNull();
+
+        // a point out of order is not held, nor anything before it
+        append(row(start + MINUTE + 30_000, 9.0, 90.0));
+        assertThat(store.findColumnsByCriteria(criteria(start, start + 3 * MINUTE, null, null, null))).isNull();
+        assertThat(store.findColumnsByCriteria(criteria(start + MINUTE + 30_000, start + 3 * MINUTE, null, null, null)))
+                .isNull();
+        SensorDataColumns after = store.findColumnsByCriteria(
+                criteria(start + MINUTE + 30_001, start + 3 * MINUTE, null, null, null));
+        assertThat(after.getTimes()).containsExactly(start + 2 * MINUTE);
+
+        // nor is a point with a field that is not a floating point number
+        store.append(Collections.singletonList(point(start + 3 * MINUTE).addField("state", "on").build()));
+        assertThat(store.findColumnsByCriteria(criteria(start + 3 * MINUTE, start + 4 * MINUTE, null, null, null)))
+                .isNull();
+        assertThat(store.findColumnsByCriteria(criteria(start + 3 * MINUTE + 1, start + 4 * MINUTE, null, null, null)))
+                .isNotNull();
+
+        // another sensor is not held at all
+        assertThat(store.findColumnsByCriteria(new QueryCriteria.Builder()
+                .tenantId("1")
+                .id("2")
+                .from(toZulu(Instant.ofEpochMilli(start)))
+                .build())).isNull();
+
+        assertThat(meterRegistry.get("tsa.hotwindow.requests").tag("result", "miss").counter().count()).isEqualTo(5.0);
+        assertThat(meterRegistry.get("tsa.hotwindow.requests").tag("result", "hit").counter().count()).isEqualTo(3.0);
+    }
+
+    /**
+     * Writes points about every 10 seconds in batches, some without <tt>cpu</tt>, with a gap of a
+     * few minutes to leave buckets empty.
+     */
+    private List<Row> write(Random random, int count) {
+        List<Row> rows = new ArrayList<>(count);
+        long time = start;
+        double temperature = 45.0;
+        for (int i = 0; i < count; i++) {
+            temperature = Math.round((temperature + random.nextGaussian()) * 10) / 10.0;
+            Double cpu = random.nextInt(5) == 0 ? null : Math.round(random.nextDouble() * 1000) / 10.0;
+            rows.add(row(time, cpu, temperature));
+            time += i == count / 3 ? 8 * MINUTE : 9_000 + random.nextInt(2_000);
+        }
+        for (int from = 0; from < rows.size(); from += 50) {
+            append(rows.subList(from, Math.min(from + 50, rows.size())).toArray(new Row[0]));
+        }
+        return rows;
+    }
+
+    private void append(Row... rows) {
+        List<Point> points = new ArrayList<>(rows.length);
+        for (Row row : rows) {
+            Point.Builder builder = point(row.time);
+            row.fields.forEach(builder::addField);
+            points.add(builder.build());
+        }
+        store.append(points);
+    }
+
+    /**
+     * The buckets of <tt>cpu</tt> of the first two minutes.
+     */
+    private double[] bucketsOf(String function) {
+        SensorDataColumns columns = store.findColumnsByCriteria(
+                criteria(start, start + 2 * MINUTE - 1, new String[]{function}, 1L, TimeUnit.M));
+        assertThat(columns.getColumns()).containsExactly(function.substring(0, function.indexOf('(')) + "_cpu");
+        return columns.getValues()[0];
+    }
+
+    private static QueryCriteria criteria(long from, long to, String[] selectCriteria,
+                                          Long intervalValue, TimeUnit intervalUnit) {
+        return new QueryCriteria.Builder()
+                .tenantId("1")
+                .id("1")
+                .from(toZulu(Instant.ofEpochMilli(from)))
+                .to(toZulu(Instant.ofEpochMilli(to)))
+                .selectCriteria(selectCriteria)
+                .intervalValue(intervalValue)
+                .intervalUnit(intervalUnit)
+                .build();
+    }
+
+    private static Point.Builder point(long time) {
+        return Point.measurement("sensorData")
+                .tag("tenantId", "1")
+                .tag("id", "1")
+                .time(time, java.util.concurrent.TimeUnit.MILLISECONDS);
+    }
+
+    private static Row row(long time, Double cpu, Double temperature) {
+        Map<String, Double> fields = new LinkedHashMap<>();
+        if (cpu != null) {
+            fields.put("cpu", cpu);
+        }
+        if (temperature != null) {
+            fields.put("temperature", temperature);
+        }
+        return new Row(time, fields);
+    }
+
+    private static List<Row> select(List<Row> rows, long from, long last) {
+        List<Row> selected = new ArrayList<>();
+        for (Row row : rows) {
+            if (row.time >= from && row.time <= last) {
+                selected.add(row);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * The rows from <tt>from</tt> to <tt>last</tt> having any of the fields.
+     */
+    private static SensorDataColumns select(List<Row> rows, long from, long last, String... fields) {
+        List<Row> selected = new ArrayList<>();
+        for (Row row : select(rows, from, last)) {
+            if (Arrays.stream(fields).anyMatch(row.fields::containsKey)) {
+                selected.add(row);
+            }
+        }
+        long[] times = selected.stream().mapToLong(row -> row.time).toArray();
+        double[][] values = new double[fields.length][];
+        for (int field = 0; field < fields.length; field++) {
+            String name = fields[field];
+            values[field] = selected.stream().mapToDouble(row -> row.fields.getOrDefault(name, Double.NaN)).toArray();
+        }
+        return new SensorDataColumns(fields, times, values);
+    }
+
+    /**
+     * The buckets of <tt>group by time(interval)</tt> from the one holding <tt>from</tt> to the
+     * one holding <tt>last</tt>.
+     */
+    private static SensorDataColumns aggregate(List<Row> rows, long from, long last, long interval,
+                                               String[] functions) {
+        long first = Math.floorDiv(from, interval) * interval;
+        int buckets = (int) ((Math.floorDiv(last, interval) * interval - first) / interval + 1);
+        String[] columns = new String[functions.length * FIELDS.length];
+        double[][] values = new double[columns.length][buckets];
+        long[] times = new long[buckets];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            times[bucket] = first + bucket * interval;
+            List<Row> bucketRows = select(rows, Math.max(from, times[bucket]),
+                    Math.min(last, times[bucket] + interval - 1));
+            for (int function = 0; function < functions.length; function++) {
+                String name = functions[function].substring(0, functions[function].indexOf('('));
+                for (int field = 0; field < FIELDS.length; field++) {
+                    List<Double> fieldValues = new ArrayList<>();
+                    for (Row row : bucketRows) {
+                        if (row.fields.containsKey(FIELDS[field])) {
+                            fieldValues.add(row.fields.get(FIELDS[field]));
+                        }
+                    }
+                    columns[function * FIELDS.length + field] = name + "_" + FIELDS[field];
+                    values[function * FIELDS.length + field][bucket] = apply(functions[function], fieldValues);
+                }
+            }
+        }
+        return new SensorDataColumns(columns, times, values);
+    }
+
+    private static double apply(String function, List<Double> values) {
+        if (function.equals("count(*)")) {
+            return values.size();
+        }
+        if (values.isEmpty()) {
+            return Double.NaN;
+        }
+        List<Double> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        double sum = values.stream().mapToDouble(Double::doubleValue).sum();
+        double mean = sum / values.size();
+        switch (function) {
+            case "mean(*)":
+                return mean;
+            case "median(*)":
+                int middle = values.size() / 2;
+                return values.size() % 2 == 1 ? sorted.get(middle) : (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+            case "min(*)":
+                return sorted.get(0);
+            case "max(*)":
+                return sorted.get(sorted.size() - 1);
+            case "first(*)":
+                return values.get(0);
+            case "last(*)":
+                return values.get(values.size() - 1);
+            case "sum(*)":
+                return sum;
+            case "stddev(*)":
+                if (values.size() < 2) {
+                    return Double.NaN;
+                }
+                double squares = values.stream().mapToDouble(value -> (value - mean) * (value - mean)).sum();
+                return Math.sqrt(squares / (values.size() - 1));
+            default:
+                double percentile = Double.parseDouble(function.replaceAll("percentile\\(\\*, (.*)\\)", "$1"));
+                int rank = (int) Math.floor(values.size() * percentile / 100 + 0.5);
+                return rank >= 1 ? sorted.get(rank - 1) : Double.NaN;
+        }
+    }
+
+    private static void assertSameColumns(SensorDataColumns actual, SensorDataColumns expected) {
+        assertThat(actual).isNotNull();
+        assertThat(actual.getColumns()).containsExactly(expected.getColumns());
+        assertThat(actual.getTimes()).containsExactly(expected.getTimes());
+        for (int column = 0; column < expected.getColumns().length; column++) {
+            for (int row = 0; row < expected.getTimes().length; row++) {
+                double value = expected.getValues()[column][row];
+                if (Double.isNaN(value)) {
+                    assertThat(actual.getValues()[column][row]).as("%s at %d", expected.getColumns()[column], row).isNaN();
+                } else {
+                    assertThat(actual.getValues()[column][row]).as("%s at %d", expected.getColumns()[column], row)
+                            .isCloseTo(value, within(1e-9 * Math.max(1, Math.abs(value))));
+                }
+            }
+        }
+    }
+
+    private static final class Row {
+
+        private final long time;
+        private final Map<String, Double> fields;
+
+        Row(long time, Map<String, Double> fields) {
+            this.time = time;
+            this.fields = fields;
+        }
+    }
+}
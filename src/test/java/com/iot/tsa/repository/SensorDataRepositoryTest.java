@@ -0,0 +1,117 @@
+package com.iot.tsa.repository;
+
+import com.iot.tsa.config.HotWindowProperties;
+import com.iot.tsa.config.InfluxDBClientProperties;
+import com.iot.tsa.config.QueryExecutorProperties;
+import com.iot.tsa.config.QueryMetricsProperties;
+import com.iot.tsa.config.QuerySplitProperties;
+import com.iot.tsa.config.RollupProperties;
+import com.iot.tsa.config.SlowQueryProperties;
+import com.iot.tsa.model.SensorData;
+import com.iot.tsa.util.db.QueryCriteria;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.Point;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.QueryResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.influxdb.InfluxDBTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static java.time.Duration.ofSeconds;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SensorDataRepositoryTest {
+
+    private InfluxDB influxDB;
+    private QueryExecutor queryExecutor;
+    private SensorDataRepository repository;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        influxDB = mock(InfluxDB.class);
+        InfluxDBTemplate<Point> influxDBTemplate = mock(InfluxDBTemplate.class);
+        when(influxDBTemplate.getConnection()).thenReturn(influxDB);
+        when(influxDBTemplate.getDatabase()).thenReturn("tsa");
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        queryExecutor = new QueryExecutor(new QueryExecutorProperties());
+        repository = new SensorDataRepository(influxDBTemplate,
+                new RollupTiers(new RollupProperties()),
+                new QuerySplitProperties(),
+                queryExecutor,
+                new QueryMetrics(meterRegistry, new QueryMetricsProperties()),
+                new SlowQueryLog(new SlowQueryProperties()),
+                new HotWindowStore(new HotWindowProperties(), meterRegistry),
+                new InfluxDBClientProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        queryExecutor.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamCompletesAfterTheDoneResultOfTheClient() {
+        // as influxdb-java 2.15 answers a chunked query: the chunks, a "DONE" error, then onComplete,
+        // on a thread of its own
+        doAnswer(invocation -> {
+            BiConsumer<InfluxDB.Cancellable, QueryResult> onNext = invocation.getArgument(2);
+            Runnable onComplete = invocation.getArgument(3);
+            InfluxDB.Cancellable cancellable = mock(InfluxDB.Cancellable.class);
+            Thread thread = new Thread(() -> {
+                onNext.accept(cancellable, chunk("2020-01-01T00:00:00Z", 1.0));
+                onNext.accept(cancellable, chunk("2020-01-01T00:00:10Z", 2.0));
+                QueryResult done = new QueryResult();
+                done.setError("DONE");
+                onNext.accept(cancellable, done);
+                onComplete.run();
+            });
+            thread.start();
+            return null;
+        }).when(influxDB).query(any(Query.class), anyInt(), any(BiConsumer.class), any(Runnable.class),
+                any(Consumer.class));
+
+        QueryCriteria criteria = new QueryCriteria.Builder()
+                .tenantId("1")
+                .id("1")
+                .from("2020-01-01T00:00:00Z")
+                .build();
+        List<SensorData> rows = new ArrayList<>();
+
+        assertTimeoutPreemptively(ofSeconds(5),
+                () -> repository.streamAllByCriteria(criteria, 1, 1, rows::addAll));
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0).getExtraFields()).containsEntry("temperature", 1.0);
+        assertThat(rows.get(1).getExtraFields()).containsEntry("temperature", 2.0);
+    }
+
+    private static QueryResult chunk(String time, double temperature) {
+        QueryResult.Series series = new QueryResult.Series();
+        series.setName("sensorData");
+        series.setColumns(Arrays.asList("time", "id", "tenantId", "temperature"));
+        series.setValues(Collections.singletonList(Arrays.asList(time, "1", "1", temperature)));
+        QueryResult.Result result = new QueryResult.Result();
+        result.setSeries(Collections.singletonList(series));
+        QueryResult queryResult = new QueryResult();
+        queryResult.setResults(Collections.singletonList(result));
+        return queryResult;
+    }
+}
@@ -0,0 +1,63 @@
+package com.iot.tsa.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static com.iot.tsa.util.TimeFormatter.toZulu;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeFormatterTest {
+
+    // 0000-01-01T00:00:00Z and 9999-12-31T23:59:59Z
+    private static final long MIN_EPOCH_SECOND = -62_167_219_200L;
+    private static final long MAX_EPOCH_SECOND = 253_402_300_799L;
+
+    @Test
+    void randomTimesAreWrittenAsJavaTimeWritesThem() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long epochSecond = i % 2 == 0
+                    ? MIN_EPOCH_SECOND + (long) (random.nextDouble() * (MAX_EPOCH_SECOND - MIN_EPOCH_SECOND + 1))
+                    : (long) ((random.nextDouble() * 2 - 1) * 9_000_000_000L);
+            // whole seconds, millis, micros and nanos
+            int nano = random.nextInt(1_000_000_000);
+            int[] units = {1_000_000_000, 1_000_000, 1_000, 1};
+            nano -= nano % units[random.nextInt(units.length)];
+            assertSameAsJavaTime(Instant.ofEpochSecond(epochSecond, nano));
+        }
+    }
+
+    @Test
+    void leapDaysAndTheEdgesOfTheYearsAreWrittenAsJavaTimeWritesThem() {
+        for (String text : new String[]{
+                "2000-02-28T23:59:59Z", "2000-02-29T00:00:00Z", "2000-03-01T00:00:00Z",
+                "1900-02-28T23:59:59Z", "1900-03-01T00:00:00Z", "2100-02-28T23:59:59Z", "2100-03-01T00:00:00Z",
+                "2020-02-29T12:00:00Z", "1904-02-29T00:00:00Z", "1600-02-29T00:00:00Z", "2400-02-29T00:00:00Z",
+                "1970-01-01T00:00:00Z", "1969-12-31T23:59:59.999999999Z", "1969-12-31T23:59:59.9Z",
+                "0000-01-01T00:00:00Z", "0000-02-29T00:00:00Z", "0000-12-31T23:59:59.000000001Z",
+                "9999-12-31T23:59:59.999999999Z", "9999-01-01T00:00:00Z"}) {
+            Instant instant = Instant.parse(text);
+            assertSameAsJavaTime(instant);
+            assertThat(toZulu(instant)).isEqualTo(text);
+        }
+        assertThat(toZulu(Instant.ofEpochSecond(-1, 500_000_000))).isEqualTo("1969-12-31T23:59:59.5Z");
+        assertThat(toZulu(Instant.ofEpochMilli(-86_400_001L))).isEqualTo("1969-12-30T23:59:59.999Z");
+    }
+
+    @Test
+    void yearsBeyondFourDigitsAreWrittenAsJavaTimeWritesThem() {
+        assertSameAsJavaTime(Instant.ofEpochSecond(MIN_EPOCH_SECOND - 1));
+        assertSameAsJavaTime(Instant.ofEpochSecond(MAX_EPOCH_SECOND + 1));
+        assertSameAsJavaTime(Instant.parse("-0001-12-31T23:59:59.5Z"));
+        assertSameAsJavaTime(Instant.parse("+10000-01-01T00:00:00Z"));
+    }
+
+    private static void assertSameAsJavaTime(Instant instant) {
+        assertThat(toZulu(instant)).as("%s", instant)
+                .isEqualTo(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(instant.atOffset(ZoneOffset.UTC)));
+    }
+}
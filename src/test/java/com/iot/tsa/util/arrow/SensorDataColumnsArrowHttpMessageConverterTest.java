@@ -0,0 +1,243 @@
+package com.iot.tsa.util.arrow;
+
+import com.iot.tsa.model.CompactSensorsDataResource;
+import com.iot.tsa.model.SensorDataColumns;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SensorDataColumnsArrowHttpMessageConverterTest {
+
+    @Test
+    void isReadByArrowStreamReader() throws Exception {
+        byte[] bytes = write();
+
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(bytes), allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            Schema schema = root.getSchema();
+            assertThat(schema.getFields()).extracting(Field::getName).containsExactly("time", "temperature", "cpu");
+            assertThat(schema.getFields().get(0).isNullable()).isFalse();
+            assertThat(schema.getFields().get(0).getType())
+                    .isEqualTo(new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC"));
+            for (Field field : schema.getFields().subList(1, 3)) {
+                assertThat(field.isNullable()).isTrue();
+                assertThat(field.getType()).isEqualTo(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE));
+            }
+
+            assertThat(reader.loadNextBatch()).isTrue();
+            assertThat(root.getRowCount()).isEqualTo(2);
+            TimeStampMilliTZVector time = (TimeStampMilliTZVector) root.getVector("time");
+            Float8Vector temperature = (Float8Vector) root.getVector("temperature");
+            Float8Vector cpu = (Float8Vector) root.getVector("cpu");
+            assertThat(time.get(0)).isEqualTo(1_000L);
+            assertThat(time.get(1)).isEqualTo(2_000L);
+            assertThat(temperature.getNullCount()).isEqualTo(1);
+            assertThat(temperature.isNull(0)).isFalse();
+            assertThat(temperature.get(0)).isEqualTo(1.5);
+            assertThat(temperature.isNull(1)).isTrue();
+            assertThat(cpu.getNullCount()).isZero();
+            assertThat(cpu.get(0)).isEqualTo(10.0);
+            assertThat(cpu.get(1)).isEqualTo(20.0);
+
+            assertThat(reader.loadNextBatch()).isTrue();
+            assertThat(root.getRowCount()).isEqualTo(1);
+            time = (TimeStampMilliTZVector) root.getVector("time");
+            temperature = (Float8Vector) root.getVector("temperature");
+            cpu = (Float8Vector) root.getVector("cpu");
+            assertThat(time.get(0)).isEqualTo(3_000L);
+            assertThat(temperature.isNull(0)).isFalse();
+            assertThat(temperature.get(0)).isEqualTo(3.5);
+            assertThat(cpu.get(0)).isEqualTo(30.0);
+
+            assertThat(reader.loadNextBatch()).isFalse();
+        }
+    }
+
+    @Test
+    void writesTheSchemaTheRecordBatchesAndTheEndOfStream() throws Exception {
+        ByteBuffer stream = ByteBuffer.wrap(write()).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Message { version: V5, header: Schema }
+        FlatBuffer schema = message(stream);
+        int message = schema.root();
+        assertThat(schema.getShort(schema.field(message, 0))).isEqualTo((short) 4);
+        assertThat(schema.get(schema.field(message, 1))).isEqualTo((byte) 1);
+        assertThat(schema.getLong(schema.field(message, 3))).isZero();
+        int fields = schema.offset(schema.field(schema.offset(schema.field(message, 2)), 1));
+        assertThat(schema.getInt(fields)).isEqualTo(3);
+
+        // Field { name, nullable, type: Timestamp { unit: MILLISECOND, timezone } }
+        int time = schema.offset(fields + 4);
+        assertThat(schema.string(schema.field(time, 0))).isEqualTo("time");
+        assertThat(schema.get(schema.field(time, 1))).isEqualTo((byte) 0);
+        assertThat(schema.get(schema.field(time, 2))).isEqualTo((byte) 10);
+        int timestamp = schema.offset(schema.field(time, 3));
+        assertThat(schema.getShort(schema.field(timestamp, 0))).isEqualTo((short) 1);
+        assertThat(schema.string(schema.field(timestamp, 1))).isEqualTo("UTC");
+
+        // Field { name, nullable, type: FloatingPoint { precision: DOUBLE } }
+        int cpu = schema.offset(fields + 12);
+        assertThat(schema.string(schema.field(cpu, 0))).isEqualTo("cpu");
+        assertThat(schema.get(schema.field(cpu, 1))).isEqualTo((byte) 1);
+        assertThat(schema.get(schema.field(cpu, 2))).isEqualTo((byte) 3);
+        assertThat(schema.getShort(schema.field(schema.offset(schema.field(cpu, 3)), 0))).isEqualTo((short) 2);
+        assertThat(schema.getInt(schema.offset(schema.field(cpu, 5)))).isZero();
+
+        // Message { header: RecordBatch { length, nodes, buffers } } and its body
+        FlatBuffer first = message(stream);
+        int batch = first.offset(first.field(first.root(), 2));
+        assertThat(first.get(first.field(first.root(), 1))).isEqualTo((byte) 3);
+        assertThat(first.getLong(first.field(batch, 0))).isEqualTo(2L);
+        long[] nodes = first.longs(first.offset(first.field(batch, 1)), 2);
+        assertThat(nodes).containsExactly(2, 0, 2, 1, 2, 0);
+        long[] buffers = first.longs(first.offset(first.field(batch, 2)), 2);
+        assertThat(buffers).containsExactly(0, 0, 0, 16, 16, 1, 24, 16, 40, 0, 40, 16);
+        ByteBuffer body = body(stream, first.getLong(first.field(first.root(), 3)));
+        assertThat(body.capacity()).isEqualTo(56);
+        assertThat(body.getLong(0)).isEqualTo(1_000L);
+        assertThat(body.getLong(8)).isEqualTo(2_000L);
+        assertThat(body.get(16)).isEqualTo((byte) 0b01);
+        assertThat(body.getDouble(24)).isEqualTo(1.5);
+        assertThat(body.getDouble(48)).isEqualTo(20.0);
+
+        FlatBuffer second = message(stream);
+        int last = second.offset(second.field(second.root(), 2));
+        assertThat(second.getLong(second.field(last, 0))).isEqualTo(1L);
+        assertThat(second.longs(second.offset(second.field(last, 1)), 2)).containsExactly(1, 0, 1, 0, 1, 0);
+        body = body(stream, second.getLong(second.field(second.root(), 3)));
+        assertThat(body.getLong(0)).isEqualTo(3_000L);
+        assertThat(body.getDouble(8)).isEqualTo(3.5);
+        assertThat(body.getDouble(16)).isEqualTo(30.0);
+
+        assertThat(stream.getInt()).isEqualTo(0xFFFFFFFF);
+        assertThat(stream.getInt()).isZero();
+        assertThat(stream.hasRemaining()).isFalse();
+    }
+
+    /**
+     * Writes three rows, two to a batch, the second temperature missing.
+     */
+    private static byte[] write() throws Exception {
+        SensorDataColumns data = new SensorDataColumns(new String[]{"temperature", "cpu"},
+                new long[]{1_000L, 2_000L, 3_000L},
+                new double[][]{{1.5, Double.NaN, 3.5}, {10.0, 20.0, 30.0}});
+        CompactSensorsDataResource resource = mock(CompactSensorsDataResource.class);
+        when(resource.getData()).thenReturn(data);
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+
+        new SensorDataColumnsArrowHttpMessageConverter(2).write(resource,
+                SensorDataColumnsArrowHttpMessageConverter.APPLICATION_ARROW_STREAM, output);
+        return output.getBodyAsBytes();
+    }
+
+    private static FlatBuffer message(ByteBuffer stream) {
+        assertThat(stream.position() % 8).isZero();
+        assertThat(stream.getInt()).isEqualTo(0xFFFFFFFF);
+        int size = stream.getInt();
+        assertThat(size % 8).isZero();
+        return new FlatBuffer(slice(stream, size));
+    }
+
+    private static ByteBuffer body(ByteBuffer stream, long length) {
+        assertThat(length % 8).isZero();
+        return slice(stream, (int) length);
+    }
+
+    private static ByteBuffer slice(ByteBuffer stream, int length) {
+        ByteBuffer slice = stream.slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.limit(length);
+        stream.position(stream.position() + length);
+        return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads a FlatBuffers buffer as the format describes it, checking the alignment of what it reads.
+     */
+    private static final class FlatBuffer {
+
+        private final ByteBuffer buffer;
+
+        FlatBuffer(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int root() {
+            return offset(0);
+        }
+
+        /**
+         * @return the position of the field of a table in the slot
+         */
+        int field(int table, int slot) {
+            assertThat(table % 4).isZero();
+            int vtable = table - buffer.getInt(table);
+            assertThat(vtable % 2).isZero();
+            assertThat(4 + 2 * slot).isLessThan(buffer.getShort(vtable));
+            int offset = buffer.getShort(vtable + 4 + 2 * slot);
+            assertThat(offset).isPositive();
+            return table + offset;
+        }
+
+        int offset(int position) {
+            assertThat(position % 4).isZero();
+            return position + buffer.getInt(position);
+        }
+
+        byte get(int position) {
+            return buffer.get(position);
+        }
+
+        short getShort(int position) {
+            assertThat(position % 2).isZero();
+            return buffer.getShort(position);
+        }
+
+        int getInt(int position) {
+            assertThat(position % 4).isZero();
+            return buffer.getInt(position);
+        }
+
+        long getLong(int position) {
+            assertThat(position % 8).isZero();
+            return buffer.getLong(position);
+        }
+
+        String string(int position) {
+            int start = offset(position);
+            byte[] bytes = new byte[getInt(start)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + 4 + i);
+            }
+            assertThat(buffer.get(start + 4 + bytes.length)).isZero();
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long[] longs(int vector, int longsPerStruct) {
+            long[] values = new long[getInt(vector) * longsPerStruct];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = getLong(vector + 4 + 8 * i);
+            }
+            return values;
+        }
+    }
+}
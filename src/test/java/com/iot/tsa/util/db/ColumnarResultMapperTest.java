@@ -0,0 +1,59 @@
+package com.iot.tsa.util.db;
+
+import com.iot.tsa.model.SensorData;
+import com.iot.tsa.model.SensorDataColumns;
+import org.influxdb.dto.QueryResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnarResultMapperTest {
+
+    private static final List<String> COLUMNS
+            = Arrays.asList("time", "id", "tenantId", "temperature", "on", "firmware");
+
+    @Test
+    void leavesOutTagsAndStringFieldsAndMapsBooleans() {
+        SensorDataColumns columns = new ColumnarResultMapper().toColumns(result(
+                Arrays.asList(1_000L, "1", "1", 21.5, true, "v1"),
+                Arrays.asList(2_000L, "1", "1", null, false, "v2")), "sensorData", TimeUnit.MILLISECONDS);
+
+        assertThat(columns.getColumns()).containsExactly("temperature", "on");
+        assertThat(columns.getTimes()).containsExactly(1_000L, 2_000L);
+        assertThat(columns.getValues(0)).containsExactly(21.5, Double.NaN);
+        assertThat(columns.getValues(1)).containsExactly(1.0, 0.0);
+    }
+
+    @Test
+    void mappedRowsGetTheSameColumns() {
+        List<SensorData> data = new CustomInfluxDBResultMapper().toPOJO(result(
+                Arrays.asList(1_000L, "1", "1", 21.5, true, "v1"),
+                Arrays.asList(2_000L, "1", "1", null, false, "v2")), SensorData.class, TimeUnit.MILLISECONDS);
+
+        SensorDataColumns columns = SensorDataColumns.of(data);
+
+        assertThat(columns.getColumns()).containsExactly("on", "temperature");
+        assertThat(columns.getValues(0)).containsExactly(1.0, 0.0);
+        assertThat(columns.getValues(1)).containsExactly(21.5, Double.NaN);
+        assertThat(columns.getTimes()).containsExactly(1_000L, 2_000L);
+    }
+
+    @SafeVarargs
+    private static QueryResult result(List<Object>... rows) {
+        QueryResult.Series series = new QueryResult.Series();
+        series.setName("sensorData");
+        series.setColumns(COLUMNS);
+        series.setValues(new ArrayList<>(Arrays.asList(rows)));
+        QueryResult.Result result = new QueryResult.Result();
+        result.setSeries(Collections.singletonList(series));
+        QueryResult queryResult = new QueryResult();
+        queryResult.setResults(Collections.singletonList(result));
+        return queryResult;
+    }
+}
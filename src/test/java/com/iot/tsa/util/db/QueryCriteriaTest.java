@@ -0,0 +1,52 @@
+package com.iot.tsa.util.db;
+
+import com.iot.tsa.exception.InvalidQueryException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryCriteriaTest {
+
+    @Test
+    void relativeTimesAreNormalizedInTheQueryText() {
+        assertThat(query("now()-1d")).isEqualTo(query(" now() - 24h "))
+                .isEqualTo(query("now() - 1440m"))
+                .contains("time >= now() - 1d");
+        assertThat(query("now() - 90s")).contains("time >= now() - 90s");
+        assertThat(query("now() - 1500ms")).contains("time >= now() - 1500ms");
+        assertThat(query("now()")).contains("time >= now()");
+    }
+
+    @Test
+    void relativeTimesThatAreNotAnOffsetAreRejected() {
+        assertThatThrownBy(() -> query("now()-1d OR tenantId='other'"))
+                .isInstanceOf(InvalidQueryException.class);
+        assertThatThrownBy(() -> query("now() + 1d"))
+                .isInstanceOf(InvalidQueryException.class);
+        assertThatThrownBy(() -> query("now() - 1y"))
+                .isInstanceOf(InvalidQueryException.class);
+    }
+
+    @Test
+    void relativeTimesOutOfRangeAreRejected() {
+        assertThatThrownBy(() -> query("now() - 99999999999999999999d"))
+                .isInstanceOf(InvalidQueryException.class);
+        assertThatThrownBy(() -> query("now() - 9223372036854775807w"))
+                .isInstanceOf(InvalidQueryException.class);
+        assertThatThrownBy(() -> query("now() - 300000d"))
+                .isInstanceOf(InvalidQueryException.class);
+        assertThat(query("now() - 9223372036854775807ns")).contains("time >= now() - 9223372036854775807ns");
+    }
+
+    private static String query(String from) {
+        return new QueryCriteria.Builder()
+                .database("tsa")
+                .table("sensorData")
+                .tenantId("1")
+                .from(from)
+                .build()
+                .toQuery()
+                .getCommand();
+    }
+}
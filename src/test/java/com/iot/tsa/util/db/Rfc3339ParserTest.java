@@ -0,0 +1,105 @@
+package com.iot.tsa.util.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Rfc3339ParserTest {
+
+    // 0000-01-02 and 9999-12-30, so that any offset keeps the local year within four digits
+    private static final long MIN_EPOCH_SECOND = -62_167_132_800L;
+    private static final long MAX_EPOCH_SECOND = 253_402_128_000L;
+
+    @Test
+    void randomTimesAreReadAsJavaTimeReadsThem() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long epochSecond = i % 2 == 0
+                    ? MIN_EPOCH_SECOND + (long) (random.nextDouble() * (MAX_EPOCH_SECOND - MIN_EPOCH_SECOND))
+                    // within the epoch nanos of InfluxDB
+                    : (long) ((random.nextDouble() * 2 - 1) * 9_000_000_000L);
+            Instant instant = Instant.ofEpochSecond(epochSecond, random.nextInt(1_000_000_000));
+            int offsetMinutes = random.nextInt(3) == 0 ? 0 : random.nextInt(2 * 18 * 60 + 1) - 18 * 60;
+            assertSameAsJavaTime(text(instant, ZoneOffset.ofTotalSeconds(offsetMinutes * 60), random.nextInt(10)));
+        }
+    }
+
+    @Test
+    void everyFractionLengthIsRead() {
+        String fraction = "123456789";
+        for (int digits = 1; digits <= 9; digits++) {
+            for (String offset : new String[]{"Z", "+00:00", "+05:30", "-03:45"}) {
+                String text = "2020-01-01T12:34:56." + fraction.substring(0, digits) + offset;
+                assertSameAsJavaTime(text);
+                assertSameAsJavaTime("1960-06-15T01:02:03." + fraction.substring(9 - digits) + offset);
+            }
+        }
+        assertThat(Rfc3339Parser.toInstant("2020-01-01T00:00:00.000000001Z").getNano()).isEqualTo(1);
+        assertThat(Rfc3339Parser.toInstant("2020-01-01T00:00:00.1Z").getNano()).isEqualTo(100_000_000);
+    }
+
+    @Test
+    void leapDaysFollowTheGregorianCalendar() {
+        for (String text : new String[]{
+                "2000-02-28T23:59:59.999Z", "2000-02-29T00:00:00Z", "2000-02-29T23:59:59Z", "2000-03-01T00:00:00Z",
+                "1900-02-28T23:59:59Z", "1900-03-01T00:00:00Z", "2100-02-28T23:59:59Z", "2100-03-01T00:00:00Z",
+                "2020-02-29T12:00:00+14:00", "1904-02-29T00:00:00-12:00", "2096-02-29T23:00:00.5Z",
+                "1600-02-29T00:00:00Z", "2400-02-29T00:00:00Z", "1970-01-01T00:00:00Z", "1969-12-31T23:59:59.999999999Z",
+                "0000-01-01T00:00:00Z", "0000-02-29T00:00:00Z", "0000-01-01T00:00:00-01:00",
+                "9999-12-31T23:59:59.999999999Z", "9999-12-31T23:59:59+00:01",
+                "1677-09-21T00:12:43.145224192Z", "2262-04-11T23:47:16.854775807Z",
+                "1677-09-21T00:12:43.145224191Z", "2262-04-11T23:47:16.854775808Z"}) {
+            assertSameAsJavaTime(text);
+        }
+        assertThat(Rfc3339Parser.toInstant("2000-03-01T00:00:00Z").getEpochSecond()
+                - Rfc3339Parser.toInstant("2000-02-28T00:00:00Z").getEpochSecond()).isEqualTo(2 * 86_400L);
+        assertThat(Rfc3339Parser.toInstant("1900-03-01T00:00:00Z").getEpochSecond()
+                - Rfc3339Parser.toInstant("1900-02-28T00:00:00Z").getEpochSecond()).isEqualTo(86_400L);
+        assertThat(Rfc3339Parser.toInstant("2100-03-01T00:00:00Z").getEpochSecond()
+                - Rfc3339Parser.toInstant("2100-02-28T00:00:00Z").getEpochSecond()).isEqualTo(86_400L);
+    }
+
+    @Test
+    void timesJavaTimeRejectsAreRejected() {
+        for (String text : new String[]{
+                "1900-02-29T00:00:00Z", "2100-02-29T00:00:00Z", "2019-02-29T00:00:00Z", "2020-04-31T00:00:00Z",
+                "2020-13-01T00:00:00Z", "2020-01-01T24:00:00Z", "2020-01-01T00:60:00Z", "2020-01-01T00:00:00",
+                "2020-01-01T00:00:00.1234567890Z", "2020-01-01T00:00:00+18:01",
+                "2020-01-01T00:00:00+19:00", "2020-01-01T00:00:00+0100", "2020-01-01 00:00:00Z"}) {
+            assertThatThrownBy(() -> OffsetDateTime.parse(text, DateTimeFormatter.ISO_OFFSET_DATE_TIME))
+                    .as(text).isInstanceOf(DateTimeParseException.class);
+            assertThatThrownBy(() -> Rfc3339Parser.toInstant(text)).as(text).isInstanceOf(DateTimeParseException.class);
+            assertThatThrownBy(() -> Rfc3339Parser.toEpochMilli(text)).as(text).isInstanceOf(DateTimeParseException.class);
+        }
+    }
+
+    private static void assertSameAsJavaTime(String text) {
+        Instant expected = OffsetDateTime.parse(text, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant();
+        if (text.endsWith("Z")) {
+            assertThat(Instant.parse(text)).as(text).isEqualTo(expected);
+        }
+        assertThat(Rfc3339Parser.toInstant(text)).as(text).isEqualTo(expected);
+        assertThat(Rfc3339Parser.toEpochMilli(text)).as(text).isEqualTo(expected.toEpochMilli());
+    }
+
+    /**
+     * The time at the offset with <tt>digits</tt> digits of fraction, the others truncated.
+     */
+    private static String text(Instant instant, ZoneOffset offset, int digits) {
+        OffsetDateTime time = instant.atOffset(offset);
+        StringBuilder sb = new StringBuilder(String.format("%04d-%02d-%02dT%02d:%02d:%02d", time.getYear(),
+                time.getMonthValue(), time.getDayOfMonth(), time.getHour(), time.getMinute(), time.getSecond()));
+        if (digits > 0) {
+            sb.append('.').append(String.format("%09d", time.getNano()), 0, digits);
+        }
+        return sb.append(offset.getTotalSeconds() == 0 ? "Z" : offset.getId()).toString();
+    }
+}
@@ -0,0 +1,192 @@
+package com.iot.tsa.util.gorilla;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GorillaBlockTest {
+
+    @Test
+    void bitsAreReadBackAsWritten() {
+        Random random = new Random(42);
+        BitWriter writer = new BitWriter();
+        int[] counts = new int[2_000];
+        long[] values = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 1 + random.nextInt(Long.SIZE);
+            values[i] = random.nextLong();
+            writer.write(values[i], counts[i]);
+            // nothing to write takes no bits
+            writer.write(random.nextLong(), 0);
+        }
+        BitWriter copy = writer.copy();
+        writer.write(-1L, Long.SIZE);
+
+        BitReader reader = copy.reader();
+        for (int i = 0; i < counts.length; i++) {
+            long mask = counts[i] == Long.SIZE ? -1L : (1L << counts[i]) - 1;
+            assertThat(reader.read(counts[i])).as("value %d of %d bits", i, counts[i]).isEqualTo(values[i] & mask);
+        }
+        assertThatThrownBy(() -> reader.read(1)).isInstanceOf(IllegalStateException.class);
+        assertThat(writer.size()).isEqualTo(copy.size() + Long.SIZE);
+    }
+
+    @Test
+    void timesRoundTripAcrossEveryDeltaOfDeltaEncoding() {
+        List<Long> times = new ArrayList<>();
+        long time = -1_000_000L;
+        times.add(time);
+        long delta = 0;
+        // zero, the bounds of the 7, 9 and 12 bit ranges and past them, negative ones and 32 bit ones
+        long[] deltaOfDeltas = {1_000, 0, 1, 64, -63, 65, -64, 256, -255, 257, -256, 2048, -2047, 2049, -2048,
+                GorillaBlock.MAX_DELTA - 3_000, -(GorillaBlock.MAX_DELTA - 3_000), 0, 0, 5, -5};
+        for (long deltaOfDelta : deltaOfDeltas) {
+            delta += deltaOfDelta;
+            time += delta;
+            times.add(time);
+        }
+
+        GorillaBlock block = new GorillaBlock();
+        for (long t : times) {
+            assertThat(block.accepts(t)).isTrue();
+            block.append(t, Collections.singletonMap("value", 1.0));
+        }
+
+        GorillaBlock.Points points = block.decode();
+        assertThat(points.getTimes()).containsExactly(times.stream().mapToLong(Long::longValue).toArray());
+        assertThat(block.getFirstTime()).isEqualTo(times.get(0));
+        assertThat(block.getLastTime()).isEqualTo(time);
+    }
+
+    @Test
+    void timesTooFarApartOrOutOfOrderAreNotAccepted() {
+        GorillaBlock block = new GorillaBlock();
+        block.append(1_000L, Collections.singletonMap("value", 1.0));
+
+        assertThat(block.accepts(1_000L)).isFalse();
+        assertThat(block.accepts(999L)).isFalse();
+        assertThat(block.accepts(1_000L + GorillaBlock.MAX_DELTA)).isTrue();
+        assertThat(block.accepts(1_001L + GorillaBlock.MAX_DELTA)).isFalse();
+        assertThatThrownBy(() -> block.append(999L, Collections.singletonMap("value", 1.0)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void valuesRoundTripWithEveryXorEncoding() {
+        double[] values = {
+                0.0,
+                // 64 meaningful bits: the XOR with 0.0 has neither leading nor trailing zeros
+                Double.longBitsToDouble(0x8000_0000_0000_0001L),
+                // the same bits, a zero XOR
+                Double.longBitsToDouble(0x8000_0000_0000_0001L),
+                // within the previous leading and trailing zeros
+                Double.longBitsToDouble(0x8000_0000_0000_0003L),
+                -0.0, 0.0, 1.0, -1.0, 1.5, 12.5, 12.5, 12.6, Double.MAX_VALUE, -Double.MAX_VALUE,
+                Double.MIN_VALUE, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 3.0, 3.0, 1e-300, 1e300};
+
+        GorillaBlock block = new GorillaBlock();
+        for (int i = 0; i < values.length; i++) {
+            block.append(i * 1_000L, Collections.singletonMap("value", values[i]));
+        }
+
+        double[] decoded = block.decode().getValues()[0];
+        assertThat(decoded).hasSize(values.length);
+        for (int i = 0; i < values.length; i++) {
+            assertThat(Double.doubleToRawLongBits(decoded[i])).as("value %d", i)
+                    .isEqualTo(Double.doubleToRawLongBits(values[i]));
+        }
+    }
+
+    @Test
+    void fieldsShowingUpMidBlockDecodeToTheirRows() {
+        GorillaBlock block = new GorillaBlock();
+        block.append(1_000L, fields("a", 1.0));
+        block.append(2_000L, fields("a", 2.0, "b", 20.0));
+        block.append(3_000L, fields("b", 30.0));
+        block.append(4_000L, fields());
+        block.append(5_000L, fields("c", 500.0, "a", 5.0));
+
+        GorillaBlock.Points points = block.decode();
+        assertThat(points.getFields()).containsExactly("a", "b", "c");
+        assertThat(points.getTimes()).containsExactly(1_000L, 2_000L, 3_000L, 4_000L, 5_000L);
+        assertThat(points.getValues()[0]).containsExactly(1.0, 2.0, Double.NaN, Double.NaN, 5.0);
+        assertThat(points.getValues()[1]).containsExactly(Double.NaN, 20.0, 30.0, Double.NaN, Double.NaN);
+        assertThat(points.getValues()[2]).containsExactly(Double.NaN, Double.NaN, Double.NaN, Double.NaN, 500.0);
+    }
+
+    @Test
+    void aCopyKeepsThePointsAppendedSoFar() {
+        Random random = new Random(7);
+        List<Long> times = new ArrayList<>();
+        GorillaBlock block = new GorillaBlock();
+        List<Map<String, Double>> rows = new ArrayList<>();
+        List<GorillaBlock> copies = new ArrayList<>();
+        long time = 0;
+        for (int row = 0; row < 1_500; row++) {
+            time += 1 + random.nextInt(20_000);
+            Map<String, Double> fields = randomFields(random);
+            block.append(time, fields);
+            rows.add(fields);
+            times.add(time);
+            if (row % 100 == 0) {
+                copies.add(block.copy());
+            }
+        }
+
+        for (int i = 0; i < copies.size(); i++) {
+            assertSameRows(copies.get(i).decode(), times.subList(0, i * 100 + 1), rows.subList(0, i * 100 + 1));
+        }
+        // a copy taking points of its own leaves the block alone
+        GorillaBlock copy = copies.get(3);
+        copy.append(time + 1, fields("x", 1.0));
+        assertSameRows(block.decode(), times, rows);
+
+        block.seal();
+        assertSameRows(block.decode(), times, rows);
+    }
+
+    private static Map<String, Double> randomFields(Random random) {
+        Map<String, Double> fields = new LinkedHashMap<>();
+        for (String name : new String[]{"temperature", "cpu", "memory", "load"}) {
+            if (random.nextInt(10) > 0) {
+                // mostly slowly changing readings, some noise
+                fields.put(name, random.nextInt(4) == 0
+                        ? random.nextGaussian() * 1e6
+                        : Math.round(random.nextGaussian() * 100) / 10.0);
+            }
+        }
+        return fields;
+    }
+
+    private static void assertSameRows(GorillaBlock.Points points, List<Long> times, List<Map<String, Double>> rows) {
+        assertThat(points.getTimes()).hasSize(rows.size());
+        for (int row = 0; row < rows.size(); row++) {
+            assertThat(points.getTimes()[row]).isEqualTo(times.get(row));
+            Map<String, Double> decoded = new HashMap<>();
+            for (int field = 0; field < points.getFields().length; field++) {
+                double value = points.getValues()[field][row];
+                if (!Double.isNaN(value)) {
+                    decoded.put(points.getFields()[field], value);
+                }
+            }
+            assertThat(decoded).as("row %d", row).isEqualTo(rows.get(row));
+        }
+    }
+
+    private static Map<String, Double> fields(Object... namesAndValues) {
+        Map<String, Double> fields = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            fields.put((String) namesAndValues[i], (Double) namesAndValues[i + 1]);
+        }
+        return fields;
+    }
+}